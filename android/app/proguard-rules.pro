@@ -111,3 +111,9 @@
 
 -dontwarn org.spongycastle.**
 -dontwarn sun.security.x509.X509Key
+
+#------------- bouncycastle ------------------
+# NOTE: only the lightweight API is used for transaction signing (libs.security.signing), classes are
+# referenced directly and never loaded by name, so R8 can shrink the rest of bcprov (JCA provider, PQC, TLS).
+# the LDAP cert store of the (unused) JCA provider references javax.naming which is not part of android
+-dontwarn javax.naming.**
@@ -2,16 +2,30 @@ package libs.security.crypto;
 
 import androidx.test.ext.junit.runners.AndroidJUnit4;
 
+import org.junit.AfterClass;
 import org.junit.Assert;
 import org.junit.Test;
 import org.junit.runner.RunWith;
 
 import java.nio.charset.StandardCharsets;
 import java.security.InvalidKeyException;
+import java.security.MessageDigest;
 import java.security.NoSuchAlgorithmException;
+import java.security.spec.InvalidKeySpecException;
+
+import javax.crypto.Mac;
+import javax.crypto.SecretKeyFactory;
+import javax.crypto.spec.PBEKeySpec;
+import javax.crypto.spec.SecretKeySpec;
+
+import extentions.PerformanceLogger;
 
 @RunWith(AndroidJUnit4.class)
 public class CryptoTest {
+    private static final PerformanceLogger performanceLogger = new PerformanceLogger(
+            "CryptoTestReport"
+    );
+
     @Test
     public void BytesToHexTest() {
         Assert.assertEquals("0000000000000000", Crypto.BytesToHex(new byte[8]));
@@ -85,13 +99,165 @@ public class CryptoTest {
 
 
     @Test
-    public void PBKDF2Test() throws NoSuchAlgorithmException, java.security.spec.InvalidKeySpecException {
+    public void HashReuseTest() throws Exception {
+        final byte[] BYTES = "Hello World".getBytes(StandardCharsets.UTF_8);
+        final byte[] BYTE_SHA256 = Crypto.HexToBytes("a591a6d40bf420404a011733cfb7b190d62c65bf0bcda32b57b277d9ad9f146e");
+        final byte[] BYTES_KEY = "Secret Key".getBytes(StandardCharsets.UTF_8);
+        final byte[] BYTE_HMAC256 = Crypto.HexToBytes("ba4f7d6c4547be22bd697e0610575ad7068ba7086e17dea752a97476fc2be9ba");
+
+        // reused instances should not carry any state between calls
+        for (int i = 0; i < 3; i++) {
+            Assert.assertArrayEquals(BYTE_SHA256, Crypto.SHA256Hash(BYTES));
+            Assert.assertArrayEquals(BYTE_HMAC256, Crypto.HMAC256(BYTES, BYTES_KEY));
+            Crypto.HMAC256(BYTES, new byte[16]);
+        }
+
+        // other threads should get the same results
+        final byte[][] results = new byte[2][];
+        final Thread thread = new Thread(() -> {
+            try {
+                results[0] = Crypto.SHA256Hash(BYTES);
+                results[1] = Crypto.HMAC256(BYTES, BYTES_KEY);
+            } catch (Exception ignored) {
+            }
+        });
+        thread.start();
+        thread.join();
+
+        Assert.assertArrayEquals(BYTE_SHA256, results[0]);
+        Assert.assertArrayEquals(BYTE_HMAC256, results[1]);
+    }
+
+    @Test
+    public void HashBenchmarkTest() throws Exception {
+        final int ROUNDS = 10000;
+        final byte[] BYTES = Crypto.RandomBytes(64);
+        final byte[] BYTES_KEY = Crypto.RandomBytes(32);
+
+        // warm up
+        for (int i = 0; i < 100; i++) {
+            MessageDigest.getInstance("SHA-512").digest(BYTES);
+            Crypto.SHA512Hash(BYTES);
+        }
+
+        performanceLogger.start("SHA512_GET_INSTANCE_PER_CALL");
+        for (int i = 0; i < ROUNDS; i++) {
+            MessageDigest.getInstance("SHA-512").digest(BYTES);
+        }
+        performanceLogger.end("SHA512_GET_INSTANCE_PER_CALL");
+
+        performanceLogger.start("SHA512_THREAD_LOCAL");
+        for (int i = 0; i < ROUNDS; i++) {
+            Crypto.SHA512Hash(BYTES);
+        }
+        performanceLogger.end("SHA512_THREAD_LOCAL");
+
+        performanceLogger.start("HMAC256_GET_INSTANCE_PER_CALL");
+        for (int i = 0; i < ROUNDS; i++) {
+            final Mac mac = Mac.getInstance("HmacSHA256");
+            mac.init(new SecretKeySpec(BYTES_KEY, "HmacSHA256"));
+            mac.doFinal(BYTES);
+        }
+        performanceLogger.end("HMAC256_GET_INSTANCE_PER_CALL");
+
+        performanceLogger.start("HMAC256_THREAD_LOCAL");
+        for (int i = 0; i < ROUNDS; i++) {
+            Crypto.HMAC256(BYTES, BYTES_KEY);
+        }
+        performanceLogger.end("HMAC256_THREAD_LOCAL");
+    }
+
+
+    @Test
+    public void PBKDF2Test() throws NoSuchAlgorithmException, InvalidKeyException {
         final char[] CHARS = "Hello World".toCharArray();
         final byte[] BYTES_SALT = Crypto.HexToBytes("e263d5ca3f8664326a453b6f6f34c67551ed9ea9e67e4fb1bfe51010f3dc5354");
         final byte[] BYTE_PBKDF2 = Crypto.HexToBytes("3f6baa35c545b1815761d32e26fe381d53a1673518f9880e9258280c5e25b632");
         Assert.assertArrayEquals(BYTE_PBKDF2, Crypto.PBKDF2(CHARS, BYTES_SALT, 91337));
     }
 
+    @Test
+    public void PBKDF2EngineTest() throws Exception {
+        // should produce the same result as SecretKeyFactory for different password/salt/iteration/length
+        final String[] PASSWORDS = {"Hello World", "123456", "p\u00e4ssw\u00f6rd-\u2713", "a"};
+
+        for (String password : PASSWORDS) {
+            for (int iteration : new int[]{1, 2, 33, 1000}) {
+                for (int keyLength : new int[]{16, 32, 64, 100}) {
+                    final byte[] salt = Crypto.RandomBytes(32);
+
+                    Assert.assertArrayEquals(
+                            PBKDF2Reference(password.toCharArray(), salt, iteration, keyLength),
+                            PBKDF2Engine.derive(password.getBytes(StandardCharsets.UTF_8), salt, iteration, keyLength)
+                    );
+                }
+            }
+        }
+    }
+
+    @Test
+    public void PBKDF2BenchmarkTest() throws Exception {
+        final char[] CHARS = "Hello World".toCharArray();
+        final byte[] BYTES_SALT = Crypto.HexToBytes("e263d5ca3f8664326a453b6f6f34c67551ed9ea9e67e4fb1bfe51010f3dc5354");
+        final int ROUNDS = 5;
+
+        // warm up
+        PBKDF2Reference(CHARS, BYTES_SALT, 91337, 32);
+        Crypto.PBKDF2(CHARS, BYTES_SALT, 91337);
+
+        performanceLogger.start("PBKDF2_SECRET_KEY_FACTORY");
+        for (int i = 0; i < ROUNDS; i++) {
+            PBKDF2Reference(CHARS, BYTES_SALT, 91337, 32);
+        }
+        performanceLogger.end("PBKDF2_SECRET_KEY_FACTORY");
+
+        performanceLogger.start("PBKDF2_ENGINE");
+        for (int i = 0; i < ROUNDS; i++) {
+            Crypto.PBKDF2(CHARS, BYTES_SALT, 91337);
+        }
+        performanceLogger.end("PBKDF2_ENGINE");
+    }
+
+    @Test
+    public void ScryptTest() throws Exception {
+        // RFC 7914 test vectors
+        Assert.assertArrayEquals(
+                Crypto.HexToBytes("77d6576238657b203b19ca42c18a0497f16b4844e3074ae8dfdffa3fede21442fcd0069ded0948f8326a753a0fc81f17e8d3e0fb2e0d3628cf35e20c38d18906"),
+                ScryptEngine.derive(new byte[0], new byte[0], 16, 1, 1, 64)
+        );
+        Assert.assertArrayEquals(
+                Crypto.HexToBytes("fdbabe1c9d3472007856e7190d01e9fe7c6ad7cbc8237830e77376634b3731622eaf30d92e22a3886ff109279d9830dac727afb94a83ee6d8360cbdfa2cc0640"),
+                ScryptEngine.derive("password".getBytes(StandardCharsets.UTF_8), "NaCl".getBytes(StandardCharsets.UTF_8), 1024, 8, 16, 64)
+        );
+
+        // Crypto.Scrypt should return the first 32 bytes
+        final byte[] PASSWORD = "pleaseletmein".getBytes(StandardCharsets.UTF_8);
+        final byte[] SALT = "SodiumChloride".getBytes(StandardCharsets.UTF_8);
+
+        performanceLogger.start("SCRYPT_N16384_R8_P1");
+        final byte[] RESULT = Crypto.Scrypt(PASSWORD, SALT, 16384, 8, 1);
+        performanceLogger.end("SCRYPT_N16384_R8_P1");
+
+        Assert.assertArrayEquals(
+                Crypto.HexToBytes("7023bdcb3afd7348461c06cd81fd38ebfda8fbba904f8e3ea9b543f6545da1f2"),
+                RESULT
+        );
+
+        // invalid cost parameters
+        try {
+            Crypto.Scrypt(PASSWORD, SALT, 1000, 8, 1);
+            Assert.fail("should not accept N which is not power of 2");
+        } catch (IllegalArgumentException ignored) {
+        }
+    }
+
+    private static byte[] PBKDF2Reference(final char[] password, final byte[] salt, final int iteration, final int keyLength)
+            throws NoSuchAlgorithmException, InvalidKeySpecException {
+        SecretKeyFactory factory = SecretKeyFactory.getInstance("PBKDF2WithHmacSHA512");
+        PBEKeySpec keySpec = new PBEKeySpec(password, salt, iteration, keyLength * 8);
+        return factory.generateSecret(keySpec).getEncoded();
+    }
+
     @Test
     public void RandomBytesTest() {
         final int BYTES_LENGTH = 64;
@@ -192,4 +358,9 @@ public class CryptoTest {
                 )
         );
     }
+
+    @AfterClass
+    public static void afterAll() {
+        performanceLogger.log();
+    }
 }
@@ -0,0 +1,233 @@
+package libs.security.signing;
+
+import androidx.test.ext.junit.runners.AndroidJUnit4;
+import androidx.test.platform.app.InstrumentationRegistry;
+
+import com.facebook.react.bridge.ReactApplicationContext;
+
+import org.junit.AfterClass;
+import org.junit.Assert;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.nio.charset.StandardCharsets;
+
+import extentions.PerformanceLogger;
+import libs.security.crypto.Crypto;
+import libs.security.providers.UniqueIdProvider;
+import libs.security.vault.VaultManagerModule;
+import libs.security.vault.cipher.PasscodeHashCache;
+
+@RunWith(AndroidJUnit4.class)
+public class SigningTest {
+    private static final PerformanceLogger performanceLogger = new PerformanceLogger(
+            "SigningTestReport"
+    );
+
+    private static final String SECP256K1_PRIVATE_KEY = "00D78B9735C3F26501C7337B8A5727FD53A6EFDBC6AA55984F098488561F985E23";
+    private static final String SECP256K1_PUBLIC_KEY = "030D58EB48B4420B1F7B9DF55087E0E29FEF0E8468F9A6825B01CA2C361042D435";
+    private static final String ED25519_PRIVATE_KEY = "EDB4C4E046826BD26190D09715FC31F4E6A728204EADD112905B08B14B7F15C4F3";
+    private static final String ED25519_PUBLIC_KEY = "ED01FA53FA5A7E77798F882ECE20B1ABC00BB358A9E55A202D0D0676BD0CE37A63";
+
+    private static final byte[] TEST_MESSAGE = "test message".getBytes(StandardCharsets.UTF_8);
+
+    @Test
+    public void Secp256k1Test() throws Exception {
+        // RFC 6979 deterministic nonce, private key 1 and sha256("Satoshi Nakamoto")
+        final byte[] privateKey = new byte[32];
+        privateKey[31] = 1;
+
+        Assert.assertEquals(
+                "3045022100934b1ea10a4b3c1757e2b0c017d0b6143ce3c9a7e6a4a49860d7a6ab210ee3d8" +
+                        "02202442ce9d2b916064108014783e923ec36b49743e2ffa1c4496f01a512aafd9e5",
+                Crypto.BytesToHex(Secp256k1.sign(
+                        Crypto.SHA256Hash("Satoshi Nakamoto".getBytes(StandardCharsets.UTF_8)),
+                        privateKey
+                ))
+        );
+
+        // generator point
+        Assert.assertEquals(
+                "0279be667ef9dcbbac55a06295ce870b07029bfcdb2dce28d959f2815b16f81798",
+                Crypto.BytesToHex(Secp256k1.publicKey(privateKey))
+        );
+
+        // invalid private keys
+        try {
+            Secp256k1.publicKey(new byte[32]);
+            Assert.fail("zero private key should be rejected");
+        } catch (IllegalArgumentException ignored) {
+        }
+
+        try {
+            Secp256k1.publicKey(Crypto.HexToBytes(Secp256k1.N.toString(16)));
+            Assert.fail("private key out of range should be rejected");
+        } catch (IllegalArgumentException ignored) {
+        }
+    }
+
+    @Test
+    public void Ed25519Test() throws Exception {
+        // RFC 8032 test 1
+        final byte[] seed = Crypto.HexToBytes("9d61b19deffd5a60ba844af492ec2cc44449c5697b326919703bac031cae7f60");
+
+        Assert.assertEquals(
+                "d75a980182b10ab7d54bfed3c964073a0ee172f3daa62325af021a68f707511a",
+                Crypto.BytesToHex(Ed25519.publicKey(seed))
+        );
+
+        Assert.assertEquals(
+                "e5564300c360ac729086e2cc806e828a84877f1eb8e5d974d873e065224901555fb8821590a33bacc61e39701cf9b46bd25bf5f0595bbe24655141438e7a100b",
+                Crypto.BytesToHex(Ed25519.sign(new byte[0], seed))
+        );
+    }
+
+    @Test
+    public void TransactionSignerTest() throws Exception {
+        // public keys
+        Assert.assertEquals(SECP256K1_PUBLIC_KEY, TransactionSigner.derivePublicKey(SECP256K1_PRIVATE_KEY));
+        Assert.assertEquals(SECP256K1_PUBLIC_KEY, TransactionSigner.derivePublicKey(SECP256K1_PRIVATE_KEY.substring(2)));
+        Assert.assertEquals(ED25519_PUBLIC_KEY, TransactionSigner.derivePublicKey(ED25519_PRIVATE_KEY));
+        Assert.assertEquals(ED25519_PUBLIC_KEY, TransactionSigner.derivePublicKey(ED25519_PRIVATE_KEY.toLowerCase()));
+
+        // secp256k1 signs the SHA-512Half of the data
+        TransactionSigner.SignResult result = TransactionSigner.signData(SECP256K1_PRIVATE_KEY, TEST_MESSAGE);
+        Assert.assertEquals(
+                "30440220583A91C95E54E6A651C47BEC22744E0B101E2C4060E7B08F6341657DAD9BC3EE" +
+                        "02207D1489C7395DB0188D3A56A977ECBA54B36FA9371B40319655B1B4429E33EF2D",
+                result.signature
+        );
+        Assert.assertEquals(SECP256K1_PUBLIC_KEY, result.publicKey);
+
+        // ed25519 signs the data as is
+        result = TransactionSigner.signData(ED25519_PRIVATE_KEY, TEST_MESSAGE);
+        Assert.assertEquals(
+                "CB199E1BFD4E3DAA105E4832EEDFA36413E1F44205E4EFB9E27E826044C21E3E" +
+                        "2E848BBC8195E8959BADF887599B7310AD1B7047EF11B682E0D068F73749750E",
+                result.signature
+        );
+        Assert.assertEquals(ED25519_PUBLIC_KEY, result.publicKey);
+
+        // single and multi sign prefixes
+        final byte[] encodedTransaction = Crypto.HexToBytes("120000228000000024000000016140000000000F424068400000000000000A");
+        final String account = "rHb9CJAWyB4rj91VRWn96DkukG4bwdtyTh";
+        final byte[] accountId = Crypto.HexToBytes("b5f762798a53d543a014caf8b297cff8f2f937e8");
+
+        Assert.assertArrayEquals(accountId, TransactionSigner.decodeAccountID(account));
+
+        for (String privateKey : new String[]{SECP256K1_PRIVATE_KEY, ED25519_PRIVATE_KEY}) {
+            Assert.assertEquals(
+                    TransactionSigner.signData(privateKey, concat(TransactionSigner.HASH_PREFIX_TRANSACTION_SIGN, encodedTransaction)).signature,
+                    TransactionSigner.sign(privateKey, encodedTransaction, null).signature
+            );
+            Assert.assertEquals(
+                    TransactionSigner.signData(privateKey, concat(TransactionSigner.HASH_PREFIX_TRANSACTION_MULTISIGN, encodedTransaction, accountId)).signature,
+                    TransactionSigner.sign(privateKey, encodedTransaction, account).signature
+            );
+        }
+
+        // invalid account checksum
+        try {
+            TransactionSigner.sign(SECP256K1_PRIVATE_KEY, encodedTransaction, "rHb9CJAWyB4rj91VRWn96DkukG4bwdtyTj");
+            Assert.fail("invalid account should be rejected");
+        } catch (IllegalArgumentException ignored) {
+        }
+
+        // invalid private key
+        try {
+            TransactionSigner.sign("FF" + SECP256K1_PRIVATE_KEY.substring(2), encodedTransaction, null);
+            Assert.fail("invalid private key should be rejected");
+        } catch (IllegalArgumentException ignored) {
+        }
+    }
+
+    @Test
+    public void SignBenchmarkTest() throws Exception {
+        final byte[] encodedTransaction = new byte[256];
+
+        // warm up, base point tables are created on first use
+        TransactionSigner.sign(SECP256K1_PRIVATE_KEY, encodedTransaction, null);
+        TransactionSigner.sign(ED25519_PRIVATE_KEY, encodedTransaction, null);
+
+        performanceLogger.start("SIGN_SECP256K1");
+        TransactionSigner.sign(SECP256K1_PRIVATE_KEY, encodedTransaction, null);
+        performanceLogger.end("SIGN_SECP256K1");
+
+        performanceLogger.start("SIGN_ED25519");
+        TransactionSigner.sign(ED25519_PRIVATE_KEY, encodedTransaction, null);
+        performanceLogger.end("SIGN_ED25519");
+    }
+
+    @Test
+    public void TransactionHashTest() throws Exception {
+        final byte[] signedTransaction = Crypto.HexToBytes("120000228000000024000000016140000000000F424068400000000000000A");
+
+        final String id = TransactionSigner.hashSignedTransaction(signedTransaction);
+
+        Assert.assertEquals(64, id.length());
+        Assert.assertEquals(
+                Crypto.BytesToHex(Crypto.SHA512Half(concat(TransactionSigner.HASH_PREFIX_TRANSACTION_ID, signedTransaction))).toUpperCase(),
+                id
+        );
+    }
+
+    @Test
+    public void SignAfterUnlockBenchmarkTest() throws Exception {
+        final ReactApplicationContext context = new ReactApplicationContext(
+                InstrumentationRegistry.getInstrumentation().getTargetContext()
+        );
+        UniqueIdProvider.sharedInstance().init(context);
+
+        final VaultManagerModule vaultManager = new VaultManagerModule(context);
+        final String vaultName = "SIGNING_TEST_VAULT";
+        final String key = "SIGNING_TEST_KEY";
+        final byte[] encodedTransaction = new byte[256];
+
+        try {
+            vaultManager.createVault(vaultName, SECP256K1_PRIVATE_KEY, key);
+
+            // NOTE: this is what SigningModule.signTransaction does on the vault queue
+            // right after unlock the derived passcode hash is still cached
+            performanceLogger.start("SIGN_AFTER_UNLOCK");
+            final TransactionSigner.SignResult warm = TransactionSigner.sign(
+                    vaultManager.openVault(vaultName, key, true), encodedTransaction, null
+            );
+            performanceLogger.end("SIGN_AFTER_UNLOCK");
+
+            // without the cached hash every sign pays the vault key derivation
+            PasscodeHashCache.sharedInstance().clear();
+
+            performanceLogger.start("SIGN_COLD_VAULT");
+            final TransactionSigner.SignResult cold = TransactionSigner.sign(
+                    vaultManager.openVault(vaultName, key, true), encodedTransaction, null
+            );
+            performanceLogger.end("SIGN_COLD_VAULT");
+
+            Assert.assertEquals(warm.signature, cold.signature);
+            Assert.assertEquals(SECP256K1_PUBLIC_KEY, warm.publicKey);
+        } finally {
+            vaultManager.purgeVault(vaultName);
+            vaultManager.invalidate();
+        }
+    }
+
+    private static byte[] concat(byte[]... parts) {
+        int length = 0;
+        for (byte[] part : parts) {
+            length += part.length;
+        }
+
+        final byte[] result = new byte[length];
+        int offset = 0;
+        for (byte[] part : parts) {
+            System.arraycopy(part, 0, result, offset, part.length);
+            offset += part.length;
+        }
+        return result;
+    }
+
+    @AfterClass
+    public static void afterAll() {
+        performanceLogger.log();
+    }
+}
@@ -1,5 +1,7 @@
 package libs.security.vault;
 
+import android.util.Base64;
+
 import androidx.test.ext.junit.runners.AndroidJUnit4;
 import androidx.test.platform.app.InstrumentationRegistry;
 
@@ -12,10 +14,21 @@ import org.junit.BeforeClass;
 import org.junit.Test;
 import org.junit.runner.RunWith;
 
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
 import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
 
+import libs.security.crypto.Crypto;
 import libs.security.providers.UniqueIdProvider;
 import libs.security.vault.cipher.Cipher;
+import libs.security.vault.cipher.CipherStreamAesGcm;
+import libs.security.vault.cipher.CipherV2AesGcm;
+import libs.security.vault.cipher.CipherV3AesGcm;
+import libs.security.vault.cipher.KdfCalibrator;
+import libs.security.vault.cipher.PasscodeHashCache;
 import libs.security.vault.exceptions.CryptoFailedException;
 
 import extentions.PerformanceLogger;
@@ -55,6 +68,13 @@ public class CipherTest {
 
         // should correctly turn the derived key object to string
         Assert.assertEquals(derivedKeysStringV2, derivedKeysV2.toJSONString());
+
+        // v4
+        final String derivedKeysStringV4 = "{\"version\":4}";
+        Cipher.DerivedKeys derivedKeysV4 = Cipher.getDerivedKeys(derivedKeysStringV4);
+        Assert.assertEquals(4, derivedKeysV4.version);
+        Assert.assertNull(derivedKeysV4.iv);
+        Assert.assertEquals(derivedKeysStringV4, derivedKeysV4.toJSONString());
     }
 
 
@@ -66,7 +86,7 @@ public class CipherTest {
         final String clearKeyLong = "jaefmsxpTq11C*V8PMoG1d80k3lje6EO$JW*QP8OK^X3ida&cFffSmp5WMB#olb2*aMhHWojYN90Ung5ZwnU36*awQ3Q&ztJ18jH";
 
         performanceLogger.start("CIPHER_ENCRYPT_V2");
-        Map<String, Object> cipherResult = Cipher.encrypt(clearText, clearKey);
+        Map<String, Object> cipherResult = CipherV2AesGcm.encrypt(clearText, clearKey);
         performanceLogger.end("CIPHER_ENCRYPT_V2");
 
         // should return right values
@@ -93,7 +113,7 @@ public class CipherTest {
 
         // try to encrypt/decrypt with long key
         performanceLogger.start("CIPHER_ENCRYPT_V2_LONG_KEY");
-        Map<String, Object> cipherResultLong = Cipher.encrypt(clearText, clearKeyLong);
+        Map<String, Object> cipherResultLong = CipherV2AesGcm.encrypt(clearText, clearKeyLong);
         performanceLogger.end("CIPHER_ENCRYPT_V2_LONG_KEY");
 
         performanceLogger.start("CIPHER_DECRYPT_V2_LONG_KEY");
@@ -102,6 +122,195 @@ public class CipherTest {
         Assert.assertEquals(clearText, decryptResultLongKey);
     }
 
+    @Test
+    public void DecryptV3Test() throws CryptoFailedException, JSONException {
+        // should still be able to decrypt vaults written with cipher v3
+        final String clearText = "Hello World";
+        final String clearKey = "Secret Key";
+
+        Map<String, Object> cipherResult = CipherV3AesGcm.encrypt(clearText, clearKey);
+
+        Cipher.DerivedKeys derivedKeys = (Cipher.DerivedKeys) cipherResult.get("derived_keys");
+        String cipher = (String) cipherResult.get("cipher");
+        byte[] envelope = (byte[]) cipherResult.get("envelope");
+
+        Assert.assertEquals(3, derivedKeys.version);
+
+        // envelope = version | 3 * salt (32) | iv (12) | ciphertext | tag (16)
+        Assert.assertEquals(1 + 32 * 3 + 12 + clearText.length() + 16, envelope.length);
+        Assert.assertEquals(3, envelope[0]);
+        Assert.assertArrayEquals(envelope, Base64.decode(cipher, Base64.NO_WRAP));
+
+        // should decrypt both the raw envelope and the legacy base64 text
+        Assert.assertEquals(clearText, Cipher.decrypt(envelope, clearKey, derivedKeys.toJSONString()));
+        Assert.assertEquals(clearText, Cipher.decrypt(cipher, clearKey, derivedKeys.toJSONString()));
+        Assert.assertEquals(clearText, Cipher.decrypt(cipher.getBytes(StandardCharsets.UTF_8), clearKey, derivedKeys.toJSONString()));
+
+        // tampered envelope should fail to decrypt
+        final byte[] tampered = envelope.clone();
+        tampered[tampered.length - 1] ^= 1;
+        try {
+            Cipher.decrypt(tampered, clearKey, derivedKeys.toJSONString());
+            Assert.fail("should not decrypt tampered envelope");
+        } catch (CryptoFailedException ignored) {
+        }
+
+        // wrong key should fail to decrypt
+        try {
+            Cipher.decrypt(envelope, "Wrong Key", derivedKeys.toJSONString());
+            Assert.fail("should not decrypt with wrong key");
+        } catch (CryptoFailedException ignored) {
+        }
+    }
+
+    @Test
+    public void EncryptDecryptV4Test() throws CryptoFailedException, JSONException {
+        // should be able to encrypt with latest cipher (v4)
+        final String clearText = "Hello World";
+        final String clearKey = "Secret Key";
+
+        performanceLogger.start("CIPHER_ENCRYPT_V4");
+        Map<String, Object> cipherResult = Cipher.encrypt(clearText, clearKey);
+        performanceLogger.end("CIPHER_ENCRYPT_V4");
+
+        Cipher.DerivedKeys derivedKeys = (Cipher.DerivedKeys) cipherResult.get("derived_keys");
+        String cipher = (String) cipherResult.get("cipher");
+
+        Assert.assertNotNull("cipherResult cipher is null", cipher);
+        Assert.assertEquals(4, derivedKeys.version);
+        Assert.assertEquals("{\"version\":4}", derivedKeys.toJSONString());
+
+        // envelope = version | log2(N) | r | p | 3 * salt (32) | iv (12) | ciphertext | tag (16)
+        final byte[] envelope = Base64.decode(cipher, Base64.NO_WRAP);
+        Assert.assertEquals(4 + 32 * 3 + 12 + clearText.length() + 16, envelope.length);
+        Assert.assertEquals(4, envelope[0]);
+
+        // kdf parameters should be the calibrated profile of this device
+        KdfCalibrator.Profile profile = KdfCalibrator.sharedInstance().getProfile();
+        Assert.assertTrue(profile.isValid());
+        Assert.assertEquals(profile.log2N, envelope[1]);
+        Assert.assertEquals(profile.r, envelope[2]);
+        Assert.assertEquals(profile.p, envelope[3]);
+
+        // try to decrypt the same values
+        // NOTE: clear the hash cache so we measure the full derivation
+        PasscodeHashCache.sharedInstance().clear();
+        performanceLogger.start("CIPHER_DECRYPT_V4");
+        String decryptResult = Cipher.decrypt(cipher, clearKey, derivedKeys.toJSONString());
+        performanceLogger.end("CIPHER_DECRYPT_V4");
+        Assert.assertEquals(clearText, decryptResult);
+
+        // tampered kdf parameters should fail to decrypt
+        final byte[] tampered = envelope.clone();
+        tampered[1] = 31;
+        try {
+            Cipher.decrypt(Base64.encodeToString(tampered, Base64.NO_WRAP), clearKey, derivedKeys.toJSONString());
+            Assert.fail("should not decrypt envelope with invalid kdf parameters");
+        } catch (CryptoFailedException ignored) {
+        }
+
+        // kdf cost below the minimum we write should be rejected
+        tampered[1] = 10;
+        try {
+            Cipher.decrypt(Base64.encodeToString(tampered, Base64.NO_WRAP), clearKey, derivedKeys.toJSONString());
+            Assert.fail("should not decrypt envelope with a lower kdf cost");
+        } catch (CryptoFailedException ignored) {
+        }
+
+        // tampered envelope header should fail to decrypt
+        envelope[4] ^= 1;
+        try {
+            Cipher.decrypt(Base64.encodeToString(envelope, Base64.NO_WRAP), clearKey, derivedKeys.toJSONString());
+            Assert.fail("should not decrypt tampered envelope");
+        } catch (CryptoFailedException ignored) {
+        }
+
+        // wrong key should fail to decrypt
+        try {
+            Cipher.decrypt(cipher, "Wrong Key", derivedKeys.toJSONString());
+            Assert.fail("should not decrypt with wrong key");
+        } catch (CryptoFailedException ignored) {
+        }
+    }
+
+    @Test
+    public void EncryptDecryptStreamTest() throws Exception {
+        final String clearKey = "Secret Key";
+
+        // should round trip payloads around the chunk boundaries
+        for (int size : new int[]{0, 1, 1024, 1024 * 3, 1024 * 3 + 1, 256 * 1024}) {
+            final byte[] clearBytes = Crypto.RandomBytes(Math.max(1, size));
+            final byte[] payload = Arrays.copyOf(clearBytes, size);
+
+            final ByteArrayOutputStream encrypted = new ByteArrayOutputStream();
+            performanceLogger.start("CIPHER_STREAM_ENCRYPT_" + size);
+            CipherStreamAesGcm.encrypt(new ByteArrayInputStream(payload), encrypted, clearKey, 1024);
+            performanceLogger.end("CIPHER_STREAM_ENCRYPT_" + size);
+
+            final ByteArrayOutputStream decrypted = new ByteArrayOutputStream();
+            performanceLogger.start("CIPHER_STREAM_DECRYPT_" + size);
+            CipherStreamAesGcm.decrypt(new ByteArrayInputStream(encrypted.toByteArray()), decrypted, clearKey);
+            performanceLogger.end("CIPHER_STREAM_DECRYPT_" + size);
+
+            Assert.assertArrayEquals(payload, decrypted.toByteArray());
+        }
+
+        final byte[] payload = Crypto.RandomBytes(1024 * 4);
+        final ByteArrayOutputStream encrypted = new ByteArrayOutputStream();
+        CipherStreamAesGcm.encrypt(new ByteArrayInputStream(payload), encrypted, clearKey, 1024);
+        final byte[] stream = encrypted.toByteArray();
+
+        // should use the fixed export kdf cost, not the device profile
+        Assert.assertEquals(16, stream[5]);
+        Assert.assertEquals(8, stream[6]);
+        Assert.assertEquals(8, stream[7]);
+
+        // kdf cost above the export cost should be rejected before deriving anything
+        for (int[] params : new int[][]{{17, 8, 8}, {16, 16, 8}, {16, 8, 64}}) {
+            final byte[] expensive = stream.clone();
+            expensive[5] = (byte) params[0];
+            expensive[6] = (byte) params[1];
+            expensive[7] = (byte) params[2];
+            try {
+                CipherStreamAesGcm.decrypt(new ByteArrayInputStream(expensive), new ByteArrayOutputStream(), clearKey);
+                Assert.fail("should not decrypt stream with a higher kdf cost");
+            } catch (CryptoFailedException ignored) {
+            }
+        }
+
+        // kdf cost below the export cost should be rejected
+        final byte[] weakened = stream.clone();
+        weakened[5] = 14;
+        try {
+            CipherStreamAesGcm.decrypt(new ByteArrayInputStream(weakened), new ByteArrayOutputStream(), clearKey);
+            Assert.fail("should not decrypt stream with a lower kdf cost");
+        } catch (CryptoFailedException ignored) {
+        }
+
+        // truncated on a chunk boundary should fail
+        try {
+            CipherStreamAesGcm.decrypt(new ByteArrayInputStream(Arrays.copyOf(stream, stream.length - 16)), new ByteArrayOutputStream(), clearKey);
+            Assert.fail("should not decrypt truncated stream");
+        } catch (CryptoFailedException ignored) {
+        }
+
+        // tampered chunk should fail
+        final byte[] tampered = stream.clone();
+        tampered[tampered.length / 2] ^= 1;
+        try {
+            CipherStreamAesGcm.decrypt(new ByteArrayInputStream(tampered), new ByteArrayOutputStream(), clearKey);
+            Assert.fail("should not decrypt tampered stream");
+        } catch (CryptoFailedException ignored) {
+        }
+
+        // wrong key should fail
+        try {
+            CipherStreamAesGcm.decrypt(new ByteArrayInputStream(stream), new ByteArrayOutputStream(), "Wrong Key");
+            Assert.fail("should not decrypt with wrong key");
+        } catch (CryptoFailedException ignored) {
+        }
+    }
+
     @Test
     public void DecryptV1Test() throws CryptoFailedException {
         final String clearText = "Hello World";
@@ -115,6 +324,75 @@ public class CipherTest {
         Assert.assertEquals(clearText, decryptResult);
     }
 
+    @Test
+    public void PasscodeHashCacheTest() throws Exception {
+        final PasscodeHashCache cache = PasscodeHashCache.sharedInstance();
+        final byte[] salt = Crypto.RandomBytes(32);
+        final AtomicInteger derivations = new AtomicInteger(0);
+
+        cache.clear();
+
+        // should only derive once for the same passcode and salt
+        final byte[] first = cache.getOrDerive("Secret Key", salt, "TEST", () -> {
+            derivations.incrementAndGet();
+            return Crypto.PBKDF2("Secret Key".toCharArray(), salt, 91337);
+        });
+        final byte[] second = cache.getOrDerive("Secret Key", salt, "TEST", () -> {
+            derivations.incrementAndGet();
+            return Crypto.PBKDF2("Secret Key".toCharArray(), salt, 91337);
+        });
+        Assert.assertEquals(1, derivations.get());
+        Assert.assertArrayEquals(first, second);
+
+        // different passcode should not hit the cache
+        cache.getOrDerive("Another Key", salt, "TEST", () -> {
+            derivations.incrementAndGet();
+            return Crypto.PBKDF2("Another Key".toCharArray(), salt, 91337);
+        });
+        Assert.assertEquals(2, derivations.get());
+
+        // returned bytes should be a copy
+        first[0] ^= 1;
+        Assert.assertArrayEquals(second, cache.getOrDerive("Secret Key", salt, "TEST", () -> {
+            throw new Exception("should not derive");
+        }));
+
+        // after clear we should derive again
+        cache.clear();
+        cache.getOrDerive("Secret Key", salt, "TEST", () -> {
+            derivations.incrementAndGet();
+            return Crypto.PBKDF2("Secret Key".toCharArray(), salt, 91337);
+        });
+        Assert.assertEquals(3, derivations.get());
+
+        // concurrent requests for the same hash should share a single derivation
+        cache.clear();
+        final byte[] concurrentSalt = Crypto.RandomBytes(32);
+        final AtomicInteger concurrentDerivations = new AtomicInteger(0);
+        final byte[][] concurrentResults = new byte[4][];
+        final Thread[] threads = new Thread[concurrentResults.length];
+        for (int i = 0; i < threads.length; i++) {
+            final int index = i;
+            threads[i] = new Thread(() -> {
+                try {
+                    concurrentResults[index] = cache.getOrDerive("Secret Key", concurrentSalt, "TEST", () -> {
+                        concurrentDerivations.incrementAndGet();
+                        return Crypto.PBKDF2("Secret Key".toCharArray(), concurrentSalt, 91337);
+                    });
+                } catch (Exception ignored) {
+                }
+            });
+            threads[i].start();
+        }
+        for (Thread thread : threads) {
+            thread.join();
+        }
+        Assert.assertEquals(1, concurrentDerivations.get());
+        for (byte[] result : concurrentResults) {
+            Assert.assertArrayEquals(concurrentResults[0], result);
+        }
+    }
+
     @AfterClass
     public static void afterAll() {
         performanceLogger.log();
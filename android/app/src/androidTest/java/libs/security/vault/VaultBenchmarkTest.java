@@ -0,0 +1,200 @@
+package libs.security.vault;
+
+import android.content.Context;
+
+import androidx.test.ext.junit.runners.AndroidJUnit4;
+import androidx.test.platform.app.InstrumentationRegistry;
+
+import com.facebook.react.bridge.ReactApplicationContext;
+
+import org.junit.After;
+import org.junit.AfterClass;
+import org.junit.Assert;
+import org.junit.Assume;
+import org.junit.Before;
+import org.junit.BeforeClass;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import extentions.PerformanceLogger;
+import libs.security.providers.UniqueIdProvider;
+import libs.security.vault.storage.FileKeychainStore;
+import libs.security.vault.storage.Keychain;
+import libs.security.vault.storage.cipherStorage.CipherStorageKeystoreAesGcm;
+
+/*
+  Timings of the vault and keychain hot paths, behaviour is covered by VaultMangerTest.
+  NOTE: skipped unless enabled, run with -Pandroid.testInstrumentationRunnerArguments.benchmark=true
+ */
+@RunWith(AndroidJUnit4.class)
+public class VaultBenchmarkTest {
+    static final String VAULT_NAME = "VAULT_BENCHMARK";
+    static final String VAULT_DATA = "VAULT_BENCHMARK_DATA";
+    static final String VAULT_KEY = "VAULT_BENCHMARK_KEY";
+
+    static final int ITEMS_COUNT = 50;
+
+    private VaultManagerModule vaultManager = null;
+
+    private final static PerformanceLogger performanceLogger = new PerformanceLogger(
+            "VaultBenchmarkTestReport"
+    );
+
+    @BeforeClass
+    public static void setUp() {
+        Assume.assumeTrue(
+                "benchmarks are not enabled",
+                Boolean.parseBoolean(InstrumentationRegistry.getArguments().getString("benchmark"))
+        );
+
+        UniqueIdProvider.sharedInstance().init(
+                new ReactApplicationContext(
+                        InstrumentationRegistry.getInstrumentation().getTargetContext()
+                )
+        );
+    }
+
+    @Before
+    public void beforeEach() throws Exception {
+        vaultManager = new VaultManagerModule(new ReactApplicationContext(
+                InstrumentationRegistry.getInstrumentation().getTargetContext()
+        ));
+        vaultManager.clearStorage();
+    }
+
+    @After
+    public void afterEach() throws Exception {
+        vaultManager.clearStorage();
+        vaultManager.invalidate();
+        vaultManager = null;
+    }
+
+    @Test
+    public void benchmarkKeychain() throws Exception {
+        final Context context = InstrumentationRegistry.getInstrumentation().getTargetContext();
+
+        // per alias policy generates a keystore key for every entry, envelope only wraps a data key
+        final Keychain perAliasKeychain = new Keychain(context);
+        final Keychain envelopeKeychain = Keychain.sharedInstance(context);
+
+        // first entry may need to generate the master key
+        envelopeKeychain.setItem(VAULT_NAME, "username", "password");
+
+        performanceLogger.start("PER_ALIAS_SET_ITEM");
+        for (int i = 0; i < ITEMS_COUNT; i++) {
+            perAliasKeychain.setItem(VAULT_NAME + "_PER_ALIAS" + i, "username", "password");
+        }
+        performanceLogger.end("PER_ALIAS_SET_ITEM");
+
+        performanceLogger.start("ENVELOPE_SET_ITEM");
+        for (int i = 0; i < ITEMS_COUNT; i++) {
+            envelopeKeychain.setItem(VAULT_NAME + "_ENVELOPE" + i, "username", "password");
+        }
+        performanceLogger.end("ENVELOPE_SET_ITEM");
+
+        // repeated reads should be served by the cached key handle
+        performanceLogger.start("GET_ITEM_CACHED_KEY");
+        for (int i = 0; i < ITEMS_COUNT; i++) {
+            Assert.assertNotNull(perAliasKeychain.getItem(VAULT_NAME + "_PER_ALIAS0"));
+        }
+        performanceLogger.end("GET_ITEM_CACHED_KEY");
+
+        final Map<String, Map<String, String>> items = new HashMap<>();
+        for (int i = 0; i < ITEMS_COUNT; i++) {
+            final Map<String, String> item = new HashMap<>();
+            item.put("username", "username");
+            item.put("password", "password");
+            items.put(VAULT_NAME + "_BATCH" + i, item);
+        }
+
+        performanceLogger.start("KEYCHAIN_SET_ITEMS");
+        envelopeKeychain.setItems(items);
+        performanceLogger.end("KEYCHAIN_SET_ITEMS");
+
+        performanceLogger.start("KEYCHAIN_GET_ITEMS");
+        Assert.assertEquals(ITEMS_COUNT, envelopeKeychain.getItems(new ArrayList<>(items.keySet())).size());
+        performanceLogger.end("KEYCHAIN_GET_ITEMS");
+
+        performanceLogger.start("KEYCHAIN_CLEAR");
+        envelopeKeychain.clear();
+        performanceLogger.end("KEYCHAIN_CLEAR");
+    }
+
+    @Test
+    public void benchmarkFileKeychainStore() throws Exception {
+        final Context context = InstrumentationRegistry.getInstrumentation().getTargetContext();
+        final File logFile = new File(context.getCacheDir(), "RN_KEYCHAIN_BENCHMARK.log");
+        logFile.delete();
+
+        final Keychain fileKeychain = new Keychain(new ReactApplicationContext(context), new FileKeychainStore(logFile));
+
+        // group the writes, should be synced once on commit
+        performanceLogger.start("FILE_STORE_BATCH_WRITE");
+        fileKeychain.beginBatch();
+        for (int i = 0; i < ITEMS_COUNT * 10; i++) {
+            fileKeychain.setItem(VAULT_NAME + i, "username", "password" + i);
+        }
+        fileKeychain.commitBatch();
+        performanceLogger.end("FILE_STORE_BATCH_WRITE");
+
+        performanceLogger.start("FILE_STORE_LOAD");
+        final FileKeychainStore store = new FileKeychainStore(logFile);
+        performanceLogger.end("FILE_STORE_LOAD");
+
+        Assert.assertEquals(ITEMS_COUNT * 10, store.getAllEntries().size());
+
+        fileKeychain.clear();
+        logFile.delete();
+    }
+
+    @Test
+    public void benchmarkOpenVaults() throws Exception {
+        final List<String> vaults = new ArrayList<>();
+        for (int i = 0; i < 5; i++) {
+            vaults.add(VAULT_NAME + i);
+            Assert.assertTrue(vaultManager.createVault(VAULT_NAME + i, VAULT_DATA, VAULT_KEY));
+        }
+
+        performanceLogger.start("OPEN_VAULT_SEQUENTIAL");
+        for (String vaultName : vaults) {
+            Assert.assertEquals(VAULT_DATA, vaultManager.openVault(vaultName, VAULT_KEY, false));
+        }
+        performanceLogger.end("OPEN_VAULT_SEQUENTIAL");
+
+        final CountDownLatch done = new CountDownLatch(1);
+        performanceLogger.start("OPEN_VAULTS");
+        vaultManager.openVaults(vaults, VAULT_KEY, (results, errors) -> done.countDown());
+        Assert.assertTrue(done.await(60, TimeUnit.SECONDS));
+        performanceLogger.end("OPEN_VAULTS");
+    }
+
+    @Test
+    public void benchmarkKeyProviders() throws Exception {
+        performanceLogger.start("STRONGBOX_PROBE");
+        new CipherStorageKeystoreAesGcm().probeStrongbox();
+        performanceLogger.end("STRONGBOX_PROBE");
+
+        final UniqueIdProvider uniqueIdProvider = UniqueIdProvider.sharedInstance();
+        Assert.assertNotNull(uniqueIdProvider.getDeviceUniqueIdBytes());
+
+        performanceLogger.start("GET_DEVICE_UNIQUE_ID_BYTES_CACHED");
+        for (int i = 0; i < 100; i++) {
+            uniqueIdProvider.getDeviceUniqueIdBytes();
+        }
+        performanceLogger.end("GET_DEVICE_UNIQUE_ID_BYTES_CACHED");
+    }
+
+    @AfterClass
+    public static void afterAll() {
+        performanceLogger.log();
+    }
+
+}
@@ -1,5 +1,8 @@
 package libs.security.vault;
 
+import android.content.Context;
+import android.content.SharedPreferences;
+
 import androidx.test.ext.junit.runners.AndroidJUnit4;
 import androidx.test.platform.app.InstrumentationRegistry;
 
@@ -14,13 +17,33 @@ import org.junit.BeforeClass;
 import org.junit.Test;
 import org.junit.runner.RunWith;
 
+import java.io.File;
+import java.io.FileOutputStream;
+import java.nio.charset.StandardCharsets;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
 import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import extentions.PerformanceLogger;
 import libs.security.providers.UniqueIdProvider;
 import libs.security.vault.cipher.Cipher;
+import libs.security.vault.cipher.CipherV2AesGcm;
+import libs.security.vault.exceptions.CryptoFailedException;
+import libs.security.vault.storage.FileKeychainStore;
 import libs.security.vault.storage.Keychain;
+import libs.security.vault.storage.cipherStorage.CipherStorage;
+import libs.security.vault.storage.cipherStorage.CipherStorageBase;
+import libs.security.vault.storage.cipherStorage.CipherStorageKeystoreAesGcm;
+import libs.security.vault.storage.cipherStorage.CipherStorageKeystoreEnvelope;
+import libs.security.vault.storage.PrefsStorage;
 
 @RunWith(AndroidJUnit4.class)
 public class VaultMangerTest {
@@ -62,6 +85,8 @@ public class VaultMangerTest {
 
     @After
     public void afterEach() {
+        // stop the vault workers of this module, every test creates a new one
+        vaultManager.invalidate();
         vaultManager = null;
     }
 
@@ -113,7 +138,7 @@ public class VaultMangerTest {
         ));
         performanceLogger.end("OPEN_VAULT");
 
-        // should return false for migration required as vault has been created with latest cipher
+        // should return false for migration required as vault has been created with the default cipher
         performanceLogger.start("IS_MIGRATION_REQUIRED");
         final WritableMap migrationRequiredResult = vaultManager.isMigrationRequired(
                 VAULT_NAME
@@ -121,7 +146,7 @@ public class VaultMangerTest {
         performanceLogger.end("IS_MIGRATION_REQUIRED");
 
         Assert.assertEquals(VAULT_NAME, migrationRequiredResult.getString("vault"));
-        Assert.assertEquals(Cipher.getLatestCipherVersion(), migrationRequiredResult.getInt("current_cipher_version"));
+        Assert.assertEquals(Cipher.getDefaultCipherVersion(), migrationRequiredResult.getInt("current_cipher_version"));
         Assert.assertEquals(Cipher.getLatestCipherVersion(), migrationRequiredResult.getInt("latest_cipher_version"));
         Assert.assertFalse(migrationRequiredResult.getBoolean("migration_required"));
 
@@ -161,6 +186,9 @@ public class VaultMangerTest {
         // check if the actual vault is there
         Assert.assertNotNull(keychain.getItem(VAULT_NAME));
         Assert.assertNull(keychain.getItem(VAULT_NAME_RECOVERY));
+
+        // vault envelope should be stored as raw bytes, not as base64 text
+        Assert.assertEquals(4, keychain.getBinaryItem(VAULT_NAME).password[0]);
     }
 
     @Test
@@ -237,6 +265,616 @@ public class VaultMangerTest {
     }
 
 
+    @Test
+    public void testVaultReKeyFailures() throws Exception {
+        final ReKeyJournal journal = new ReKeyJournal(
+                InstrumentationRegistry.getInstrumentation().getTargetContext()
+        );
+
+        ArrayList<String> vaults = new ArrayList<>();
+        vaults.add(String.format("%s%s", VAULT_NAME, "1"));
+        vaults.add(String.format("%s%s", VAULT_NAME, "2"));
+
+        // create the vaults, second vault with a different key
+        Assert.assertTrue(vaultManager.createVault(vaults.get(0), VAULT_DATA, VAULT_KEY));
+        Assert.assertTrue(vaultManager.createVault(vaults.get(1), VAULT_DATA, VAULT_NEW_KEY));
+
+        // should fail as we are not able to open all vaults with the old key
+        try {
+            vaultManager.reKeyBatchVaults(vaults, VAULT_KEY, VAULT_NEW_KEY);
+            Assert.fail("reKeyBatchVaults should fail");
+        } catch (Exception ignored) {
+        }
+
+        // vaults should not be touched, and nothing should be left in the journal
+        Assert.assertEquals(VAULT_DATA, vaultManager.openVault(vaults.get(0), VAULT_KEY, false));
+        Assert.assertEquals(VAULT_DATA, vaultManager.openVault(vaults.get(1), VAULT_NEW_KEY, false));
+        Assert.assertTrue(journal.getPending().isEmpty());
+        vaultManager.clearStorage();
+
+        // interrupted after purging the vault, should roll back from recovery vault
+        Assert.assertTrue(vaultManager.createVault(VAULT_NAME_RECOVERY, VAULT_DATA, VAULT_KEY));
+        journal.record(VAULT_NAME, ReKeyJournal.Phase.VAULT_PURGED);
+
+        vaultManager.recoverInterruptedReKeys();
+
+        Assert.assertTrue(journal.getPending().isEmpty());
+        Assert.assertFalse(vaultManager.vaultExist(VAULT_NAME_RECOVERY));
+        Assert.assertEquals(VAULT_DATA, vaultManager.openVault(VAULT_NAME, VAULT_KEY, false));
+        vaultManager.clearStorage();
+
+        // interrupted after creating the new vault, should only purge the recovery vault
+        Assert.assertTrue(vaultManager.createVault(VAULT_NAME_RECOVERY, VAULT_DATA, VAULT_KEY));
+        Assert.assertTrue(vaultManager.createVault(VAULT_NAME, VAULT_DATA, VAULT_NEW_KEY));
+        journal.record(VAULT_NAME, ReKeyJournal.Phase.VAULT_CREATED);
+
+        vaultManager.recoverInterruptedReKeys();
+
+        Assert.assertTrue(journal.getPending().isEmpty());
+        Assert.assertFalse(vaultManager.vaultExist(VAULT_NAME_RECOVERY));
+        Assert.assertEquals(VAULT_DATA, vaultManager.openVault(VAULT_NAME, VAULT_NEW_KEY, false));
+    }
+
+
+    @Test
+    public void testVaultFileExportImport() throws Exception {
+        final Context context = InstrumentationRegistry.getInstrumentation().getTargetContext();
+        final File clearFile = new File(context.getCacheDir(), "VAULT_TEST_CLEAR");
+        final File exportFile = new File(context.getCacheDir(), "VAULT_TEST_EXPORT");
+
+        try (FileOutputStream output = new FileOutputStream(clearFile)) {
+            output.write(VAULT_DATA.getBytes(StandardCharsets.UTF_8));
+        }
+
+        Assert.assertTrue(vaultManager.exportVaultFile(clearFile.getPath(), exportFile.getPath(), VAULT_KEY));
+        clearFile.delete();
+
+        // should import the file content as a vault with the same key
+        Assert.assertTrue(vaultManager.importVaultFile(exportFile.getPath(), VAULT_NAME, VAULT_KEY));
+        Assert.assertEquals(VAULT_DATA, vaultManager.openVault(VAULT_NAME, VAULT_KEY, false));
+
+        // should not overwrite an existing vault
+        try {
+            vaultManager.importVaultFile(exportFile.getPath(), VAULT_NAME, VAULT_KEY);
+            Assert.fail("should not import over an existing vault");
+        } catch (Exception e) {
+            Assert.assertEquals("VAULT_ALREADY_EXIST", e.getMessage());
+        }
+
+        // wrong key should not create a vault
+        try {
+            vaultManager.importVaultFile(exportFile.getPath(), VAULT_NAME + "2", "Wrong Key");
+            Assert.fail("should not import with wrong key");
+        } catch (Exception ignored) {
+        }
+        Assert.assertFalse(vaultManager.vaultExist(VAULT_NAME + "2"));
+
+        // paths outside of the app directories should be rejected
+        try {
+            vaultManager.importVaultFile(context.getCacheDir() + "/../../" + exportFile.getName(), VAULT_NAME + "2", VAULT_KEY);
+            Assert.fail("should not import from outside of the app directories");
+        } catch (Exception e) {
+            Assert.assertEquals("INVALID_FILE_PATH", e.getMessage());
+        }
+
+        exportFile.delete();
+    }
+
+    @Test
+    public void testVaultMigration() throws Exception {
+        // v1 vaults stored before we had the version header
+        final String V1_KEY = "Secret Key";
+        final String V1_DATA = "Hello World";
+        for (String vaultName : new String[]{VAULT_NAME, VAULT_NAME + "3", VAULT_NAME + "4"}) {
+            keychain.setItem(vaultName, "281dbfaeacea835d338ef73a840203a9", "Shq6UW2DphA9x/PLxnlCjA==");
+        }
+        Assert.assertNull(keychain.getItemVersion(VAULT_NAME));
+
+        // v2 vault is on the latest cipher version and should not be migrated
+        final String V2_KEY = "Other Key";
+        Map<String, Object> cipherResult = CipherV2AesGcm.encrypt(VAULT_DATA, V2_KEY);
+        keychain.setItem(
+                VAULT_NAME + "5",
+                ((Cipher.DerivedKeys) cipherResult.get("derived_keys")).toJSONString(),
+                (String) cipherResult.get("cipher")
+        );
+
+        // vault with the default cipher
+        Assert.assertTrue(vaultManager.createVault(VAULT_NAME + "2", VAULT_DATA, VAULT_KEY));
+
+        // should read the version from the entry, the header is filled by the migration scan
+        WritableMap result = vaultManager.isMigrationRequired(VAULT_NAME);
+        Assert.assertTrue(result.getBoolean("migration_required"));
+        Assert.assertNull(keychain.getItemVersion(VAULT_NAME));
+
+        // entry which is marked as not a vault should be skipped by the scan
+        keychain.setItem(VAULT_NAME + "6", "username", "password");
+        keychain.setItemVersion(VAULT_NAME + "6", VaultManagerModule.NOT_A_VAULT_VERSION);
+
+        final VaultTaskExecutor taskExecutor = new VaultTaskExecutor();
+        final VaultMigrationService migrationService = new VaultMigrationService(
+                vaultManager, keychain, taskExecutor, null
+        );
+
+        // only the v1 vaults should be pending
+        Assert.assertEquals(
+                new HashSet<>(Arrays.asList(VAULT_NAME, VAULT_NAME + "3", VAULT_NAME + "4")),
+                new HashSet<>(migrationService.getPendingVaults())
+        );
+        Assert.assertEquals(Integer.valueOf(1), keychain.getItemVersion(VAULT_NAME));
+
+        // migrate with the key of every vault, the last v1 vault has no key
+        final Map<String, String> keys = new HashMap<>();
+        keys.put(VAULT_NAME, V1_KEY);
+        keys.put(VAULT_NAME + "3", V1_KEY);
+
+        final CountDownLatch done = new CountDownLatch(1);
+        final List<VaultMigrationService.Status> statuses = new ArrayList<>();
+        Assert.assertTrue(migrationService.start(keys, status -> {
+            statuses.add(status);
+            done.countDown();
+        }));
+        Assert.assertTrue(done.await(60, TimeUnit.SECONDS));
+
+        Assert.assertEquals(2, statuses.get(0).total);
+        Assert.assertEquals(2, statuses.get(0).migrated);
+        Assert.assertEquals(0, statuses.get(0).failed);
+        Assert.assertEquals(
+                new HashSet<>(Arrays.asList(VAULT_NAME, VAULT_NAME + "3")),
+                new HashSet<>(statuses.get(0).migratedVaults)
+        );
+
+        // vault without a key should stay pending
+        Assert.assertEquals(1, statuses.get(0).pending);
+        Assert.assertEquals(Collections.singletonList(VAULT_NAME + "4"), migrationService.getPendingVaults());
+        Assert.assertEquals(V1_DATA, vaultManager.openVault(VAULT_NAME + "3", V1_KEY, false));
+        Assert.assertEquals(VAULT_DATA, vaultManager.openVault(VAULT_NAME + "5", V2_KEY, false));
+
+        // vault should be migrated to the default cipher
+        Assert.assertEquals(Integer.valueOf(Cipher.getDefaultCipherVersion()), keychain.getItemVersion(VAULT_NAME));
+        Assert.assertFalse(vaultManager.isMigrationRequired(VAULT_NAME).getBoolean("migration_required"));
+        Assert.assertEquals(V1_DATA, vaultManager.openVault(VAULT_NAME, V1_KEY, false));
+
+        taskExecutor.shutdown();
+    }
+
+
+    @Test
+    public void testOpenVaults() throws Exception {
+        ArrayList<String> vaults = new ArrayList<>();
+        vaults.add(String.format("%s%s", VAULT_NAME, "1"));
+        vaults.add(String.format("%s%s", VAULT_NAME, "2"));
+        vaults.add(String.format("%s%s", VAULT_NAME, "3"));
+
+        // create the vaults, third vault with a different key
+        Assert.assertTrue(vaultManager.createVault(vaults.get(0), VAULT_DATA + "1", VAULT_KEY));
+        Assert.assertTrue(vaultManager.createVault(vaults.get(1), VAULT_DATA + "2", VAULT_KEY));
+        Assert.assertTrue(vaultManager.createVault(vaults.get(2), VAULT_DATA + "3", VAULT_NEW_KEY));
+
+        // not existing vault and duplicate should be handled
+        vaults.add(String.format("%s%s", VAULT_NAME, "4"));
+        vaults.add(vaults.get(0));
+
+        final CountDownLatch done = new CountDownLatch(1);
+        final List<Map<String, String>> openResults = new ArrayList<>();
+        final List<Map<String, Exception>> openErrors = new ArrayList<>();
+
+        vaultManager.openVaults(vaults, VAULT_KEY, (results, errors) -> {
+            openResults.add(results);
+            openErrors.add(errors);
+            done.countDown();
+        });
+        Assert.assertTrue(done.await(60, TimeUnit.SECONDS));
+
+        final Map<String, String> results = openResults.get(0);
+        final Map<String, Exception> errors = openErrors.get(0);
+
+        Assert.assertEquals(2, results.size());
+        Assert.assertEquals(VAULT_DATA + "1", results.get(vaults.get(0)));
+        Assert.assertEquals(VAULT_DATA + "2", results.get(vaults.get(1)));
+
+        Assert.assertEquals(2, errors.size());
+        Assert.assertTrue(errors.containsKey(vaults.get(2)));
+        Assert.assertEquals("VAULT_NOT_EXIST", errors.get(vaults.get(3)).getMessage());
+    }
+
+
+    @Test
+    public void testVaultTaskExecutor() throws Exception {
+        final VaultTaskExecutor taskExecutor = new VaultTaskExecutor();
+        final List<Exception> errors = Collections.synchronizedList(new ArrayList<>());
+
+        // vault and recovery vault should share the same queue
+        Assert.assertEquals(VAULT_NAME, VaultTaskExecutor.getQueueName(VAULT_NAME_RECOVERY));
+
+        // tasks on different vaults should overlap
+        final CountDownLatch bothStarted = new CountDownLatch(2);
+        final CountDownLatch done = new CountDownLatch(2);
+        for (String vaultName : new String[]{VAULT_NAME + "1", VAULT_NAME + "2"}) {
+            taskExecutor.execute(vaultName, () -> {
+                bothStarted.countDown();
+                Assert.assertTrue(bothStarted.await(5, TimeUnit.SECONDS));
+                done.countDown();
+            }, errors::add);
+        }
+        Assert.assertTrue(done.await(10, TimeUnit.SECONDS));
+
+        // tasks on the same vault should run one by one in order
+        final List<Integer> order = Collections.synchronizedList(new ArrayList<>());
+        final AtomicInteger running = new AtomicInteger(0);
+        final CountDownLatch serialDone = new CountDownLatch(10);
+        for (int i = 0; i < 10; i++) {
+            final int index = i;
+            taskExecutor.execute(i % 2 == 0 ? VAULT_NAME : VAULT_NAME_RECOVERY, () -> {
+                Assert.assertEquals(1, running.incrementAndGet());
+                Thread.sleep(5);
+                order.add(index);
+                running.decrementAndGet();
+                serialDone.countDown();
+            }, errors::add);
+        }
+        Assert.assertTrue(serialDone.await(10, TimeUnit.SECONDS));
+        Assert.assertEquals(Arrays.asList(0, 1, 2, 3, 4, 5, 6, 7, 8, 9), order);
+
+        // global task should not run together with vault tasks
+        final AtomicInteger vaultTasks = new AtomicInteger(0);
+        final CountDownLatch globalDone = new CountDownLatch(5);
+        for (int i = 0; i < 4; i++) {
+            taskExecutor.execute(VAULT_NAME + i, () -> {
+                vaultTasks.incrementAndGet();
+                Thread.sleep(20);
+                vaultTasks.decrementAndGet();
+                globalDone.countDown();
+            }, errors::add);
+        }
+        taskExecutor.executeGlobal(() -> {
+            Assert.assertEquals(0, vaultTasks.get());
+            globalDone.countDown();
+        }, errors::add);
+        Assert.assertTrue(globalDone.await(10, TimeUnit.SECONDS));
+
+        Assert.assertTrue(errors.toString(), errors.isEmpty());
+
+        // errors should be passed to the error handler
+        final CountDownLatch errorHandled = new CountDownLatch(1);
+        taskExecutor.execute(VAULT_NAME, () -> {
+            throw new Exception("VAULT_NOT_EXIST");
+        }, e -> {
+            Assert.assertEquals("VAULT_NOT_EXIST", e.getMessage());
+            errorHandled.countDown();
+        });
+        Assert.assertTrue(errorHandled.await(5, TimeUnit.SECONDS));
+
+        // errors which are not exceptions should be passed to the error handler as well
+        final CountDownLatch throwableHandled = new CountDownLatch(1);
+        taskExecutor.execute(VAULT_NAME, () -> {
+            throw new NoClassDefFoundError("MISSING_CLASS");
+        }, e -> {
+            Assert.assertTrue(e.getCause() instanceof NoClassDefFoundError);
+            throwableHandled.countDown();
+        });
+        Assert.assertTrue(throwableHandled.await(5, TimeUnit.SECONDS));
+
+        // the queue of the vault should still run the next tasks
+        final CountDownLatch nextDone = new CountDownLatch(1);
+        taskExecutor.execute(VAULT_NAME, nextDone::countDown, errors::add);
+        Assert.assertTrue(nextDone.await(5, TimeUnit.SECONDS));
+        Assert.assertTrue(errors.toString(), errors.isEmpty());
+
+        // tasks queued before shutdown should still run, workers should exit after them
+        final CountDownLatch queuedDone = new CountDownLatch(3);
+        for (int i = 0; i < 3; i++) {
+            taskExecutor.execute(VAULT_NAME, () -> {
+                Thread.sleep(5);
+                queuedDone.countDown();
+            }, errors::add);
+        }
+        taskExecutor.shutdown();
+        Assert.assertTrue(taskExecutor.awaitTermination(5, TimeUnit.SECONDS));
+        Assert.assertEquals(0, queuedDone.getCount());
+        Assert.assertTrue(errors.toString(), errors.isEmpty());
+    }
+
+
+    @Test
+    public void testKeychain() throws Exception {
+        final int itemsCount = 10;
+
+        // another keychain instance should share the same index
+        final Keychain otherKeychain = new Keychain(new ReactApplicationContext(
+                InstrumentationRegistry.getInstrumentation().getTargetContext()
+        ));
+
+        final Map<String, Map<String, String>> items = new HashMap<>();
+        for (int i = 0; i < itemsCount; i++) {
+            final Map<String, String> item = new HashMap<>();
+            item.put("username", "username" + i);
+            item.put("password", "password" + i);
+            items.put(VAULT_NAME + i, item);
+        }
+        keychain.setItems(items);
+
+        final List<String> aliases = new ArrayList<>(items.keySet());
+        aliases.add(VAULT_NAME + "_MISSING");
+
+        // missing items should not be included
+        final Map<String, Map<String, String>> result = otherKeychain.getItems(aliases);
+        Assert.assertEquals(itemsCount, result.size());
+        Assert.assertEquals(itemsCount, otherKeychain.getAllItems().size());
+        for (int i = 0; i < itemsCount; i++) {
+            Assert.assertEquals("password" + i, result.get(VAULT_NAME + i).get("password"));
+            Assert.assertEquals("username" + i, otherKeychain.getItem(VAULT_NAME + i).get("username"));
+        }
+
+        otherKeychain.deleteItems(aliases);
+        for (String alias : aliases) {
+            Assert.assertFalse(keychain.itemExist(alias));
+        }
+        Assert.assertTrue(keychain.getItems(aliases).isEmpty());
+
+        // every thread works on its own alias, all of them share the cipher storages
+        final int threadsCount = 8;
+        final List<Throwable> errors = Collections.synchronizedList(new ArrayList<>());
+        final CountDownLatch start = new CountDownLatch(1);
+        final CountDownLatch done = new CountDownLatch(threadsCount);
+        for (int t = 0; t < threadsCount; t++) {
+            final String alias = VAULT_NAME + t;
+            new Thread(() -> {
+                try {
+                    start.await();
+                    for (int i = 0; i < 20; i++) {
+                        keychain.setItem(alias, "username", alias + i);
+                        Assert.assertEquals(alias + i, keychain.getItem(alias).get("password"));
+                    }
+                } catch (Throwable e) {
+                    errors.add(e);
+                } finally {
+                    done.countDown();
+                }
+            }).start();
+        }
+        start.countDown();
+        Assert.assertTrue(done.await(60, TimeUnit.SECONDS));
+        Assert.assertTrue(errors.toString(), errors.isEmpty());
+        Assert.assertEquals(VAULT_NAME + 0 + 19, otherKeychain.getItem(VAULT_NAME + 0).get("password"));
+
+        // clear should remove everything
+        keychain.clear();
+        Assert.assertFalse(otherKeychain.itemExist(VAULT_NAME + 0));
+        Assert.assertTrue(otherKeychain.getAllItems().isEmpty());
+    }
+
+    @Test
+    public void testKeyHandleCache() throws Exception {
+        // NOTE: the probe result should be used by all cipher storages
+        final boolean strongboxAvailable = new CipherStorageKeystoreAesGcm().probeStrongbox();
+        Assert.assertEquals(strongboxAvailable, CipherStorageBase.getStrongboxAvailable());
+        Assert.assertFalse(new CipherStorageKeystoreAesGcm().getAllKeys().contains("RN_KEYCHAIN_STRONGBOX_PROBE"));
+
+        // test keychain uses the per alias key policy, every item has its own keystore key
+        keychain.setItem(VAULT_NAME, "username", "password");
+
+        final CipherStorageBase.KeyCacheStats before = CipherStorageBase.getKeyCacheStats();
+
+        // repeated reads should not lookup the key from keystore again
+        for (int i = 0; i < 10; i++) {
+            Assert.assertEquals("password", keychain.getItem(VAULT_NAME).get("password"));
+        }
+
+        final CipherStorageBase.KeyCacheStats after = CipherStorageBase.getKeyCacheStats();
+        Assert.assertTrue(after.hits - before.hits >= 10);
+        Assert.assertEquals(before.misses, after.misses);
+
+        // a damaged entry says nothing about the key, the cached handle should be kept
+        final CipherStorageKeystoreAesGcm storage = new CipherStorageKeystoreAesGcm();
+        final CipherStorage.EncryptionResult result = storage.encrypt(VAULT_NAME, "username", "password");
+        result.password[result.password.length - 1] ^= 1;
+        try {
+            storage.decryptToBytes(VAULT_NAME, result.username, result.password);
+            Assert.fail("damaged entry should not decrypt");
+        } catch (CryptoFailedException ignored) {
+        }
+        Assert.assertEquals(after.evictions, CipherStorageBase.getKeyCacheStats().evictions);
+        Assert.assertEquals("password", keychain.getItem(VAULT_NAME).get("password"));
+
+        // removing the key should drop the cached handle, new item should use the new key
+        keychain.deleteItem(VAULT_NAME);
+        Assert.assertTrue(CipherStorageBase.getKeyCacheStats().evictions > after.evictions);
+
+        keychain.setItem(VAULT_NAME, "username", "new_password");
+        Assert.assertEquals("new_password", keychain.getItem(VAULT_NAME).get("password"));
+        Assert.assertTrue(CipherStorageBase.getKeyCacheStats().misses > after.misses);
+    }
+
+    @Test
+    public void testSharedKeychain() throws Exception {
+        final Context context = InstrumentationRegistry.getInstrumentation().getTargetContext();
+        final UniqueIdProvider uniqueIdProvider = UniqueIdProvider.sharedInstance();
+
+        // all modules should get the same keychain
+        final Keychain sharedKeychain = Keychain.sharedInstance(context);
+        Assert.assertSame(sharedKeychain, Keychain.sharedInstance(new ReactApplicationContext(context)));
+
+        // vault manager and unique id provider should share the entries through the shared keychain
+        vaultManager.createVault(VAULT_NAME, VAULT_DATA, VAULT_KEY);
+        Assert.assertNotNull(vaultManager.getStorageEncryptionKey());
+        final byte[] uniqueIdBytes = uniqueIdProvider.getDeviceUniqueIdBytes();
+        Assert.assertEquals(8, uniqueIdBytes.length);
+        Assert.assertTrue(sharedKeychain.itemExist(VAULT_NAME));
+        Assert.assertTrue(keychain.itemExist(UniqueIdProvider.UNIQUE_DEVICE_ID_KEY));
+
+        // vaults use the envelope master key, realm key and device id keep their own keystore keys
+        final Set<String> keystoreKeys = new CipherStorageKeystoreAesGcm().getAllKeys();
+        Assert.assertTrue(keystoreKeys.contains(CipherStorageKeystoreEnvelope.MASTER_KEY_ALIAS));
+        Assert.assertFalse(keystoreKeys.contains(VAULT_NAME));
+        Assert.assertTrue(keystoreKeys.contains(VaultManagerModule.STORAGE_ENCRYPTION_KEY));
+        Assert.assertTrue(keystoreKeys.contains(UniqueIdProvider.UNIQUE_DEVICE_ID_KEY));
+
+        // device id should be served from memory, changing the returned bytes should not change the cached value
+        uniqueIdProvider.getDeviceUniqueIdBytes()[0] ^= 1;
+        Assert.assertArrayEquals(uniqueIdBytes, uniqueIdProvider.getDeviceUniqueIdBytes());
+        Assert.assertEquals(uniqueIdProvider.getDeviceUniqueId(), uniqueIdProvider.getDeviceUniqueId());
+
+        // clearing the storage should store the same id in the keychain again on next use
+        vaultManager.clearStorage();
+        Assert.assertFalse(keychain.itemExist(UniqueIdProvider.UNIQUE_DEVICE_ID_KEY));
+        Assert.assertArrayEquals(uniqueIdBytes, uniqueIdProvider.getDeviceUniqueIdBytes());
+        Assert.assertTrue(keychain.itemExist(UniqueIdProvider.UNIQUE_DEVICE_ID_KEY));
+    }
+
+    @Test
+    public void testEnvelopeKeyPolicy() throws Exception {
+        // NOTE: the shared keychain uses the envelope policy, the test keychain the per alias policy
+        final Keychain envelopeKeychain = Keychain.sharedInstance(
+                InstrumentationRegistry.getInstrumentation().getTargetContext()
+        );
+
+        keychain.setItem(VAULT_NAME_RECOVERY, "username", "per_alias");
+        for (int i = 0; i < 10; i++) {
+            envelopeKeychain.setItem(VAULT_NAME + i, "username", "password" + i);
+        }
+
+        // should not create keystore keys for the entries
+        final Set<String> keystoreKeys = new CipherStorageKeystoreEnvelope().getAllKeys();
+        Assert.assertTrue(keystoreKeys.contains(CipherStorageKeystoreEnvelope.MASTER_KEY_ALIAS));
+        Assert.assertTrue(keystoreKeys.contains(VAULT_NAME_RECOVERY));
+        Assert.assertFalse(keystoreKeys.contains(VAULT_NAME + 1));
+
+        for (int i = 0; i < 10; i++) {
+            Assert.assertEquals("password" + i, envelopeKeychain.getItem(VAULT_NAME + i).get("password"));
+        }
+
+        // entries stored with the per alias policy should still be readable
+        Assert.assertEquals("per_alias", envelopeKeychain.getItem(VAULT_NAME_RECOVERY).get("password"));
+
+        // evicted data keys should be unwrapped again with the master key
+        CipherStorageKeystoreEnvelope.clearDataKeys();
+        Assert.assertEquals("password3", envelopeKeychain.getItem(VAULT_NAME + 3).get("password"));
+
+        // another keychain instance should unwrap the data keys with the master key
+        Assert.assertEquals("password5", keychain.getItem(VAULT_NAME + 5).get("password"));
+
+        // clearing the keychain should remove the master key as well
+        envelopeKeychain.clear();
+        Assert.assertFalse(new CipherStorageKeystoreEnvelope().getAllKeys().contains(CipherStorageKeystoreEnvelope.MASTER_KEY_ALIAS));
+
+        // a new master key is generated for the next vault
+        vaultManager.createVault(VAULT_NAME, VAULT_DATA, VAULT_KEY);
+        Assert.assertEquals(VAULT_DATA, vaultManager.openVault(VAULT_NAME, VAULT_KEY, false));
+        Assert.assertTrue(new CipherStorageKeystoreEnvelope().getAllKeys().contains(CipherStorageKeystoreEnvelope.MASTER_KEY_ALIAS));
+    }
+
+    @Test
+    public void testKeychainStores() throws Exception {
+        final Context context = InstrumentationRegistry.getInstrumentation().getTargetContext();
+
+        // shared preferences, entry should be stored as a single record
+        final PrefsStorage prefsStorage = new PrefsStorage(context);
+        final Keychain prefsKeychain = new Keychain(new ReactApplicationContext(context), prefsStorage);
+        prefsKeychain.setItem(VAULT_NAME, "username", "password");
+
+        final SharedPreferences prefs = context.getSharedPreferences(PrefsStorage.KEYCHAIN_DATA, Context.MODE_PRIVATE);
+        Assert.assertTrue(prefs.contains(PrefsStorage.getKeyForRecord(VAULT_NAME)));
+        Assert.assertFalse(prefs.contains(PrefsStorage.getKeyForUsername(VAULT_NAME)));
+        Assert.assertFalse(prefs.contains(PrefsStorage.getKeyForPassword(VAULT_NAME)));
+        Assert.assertEquals("password", prefsKeychain.getItem(VAULT_NAME).get("password"));
+
+        // damaged record should be dropped from the index, so the entry does not exist anymore
+        prefs.edit().putString(PrefsStorage.getKeyForRecord(VAULT_NAME), "damaged").commit();
+        Assert.assertTrue(prefsStorage.hasEntry(VAULT_NAME));
+        Assert.assertNull(prefsStorage.getEncryptedEntry(VAULT_NAME));
+        Assert.assertFalse(prefsStorage.hasEntry(VAULT_NAME));
+
+        prefsKeychain.clear();
+        Assert.assertFalse(prefs.contains(PrefsStorage.getKeyForRecord(VAULT_NAME)));
+
+        // log file, group the writes, should be synced once on commit
+        final File logFile = new File(context.getCacheDir(), "RN_KEYCHAIN_TEST.log");
+        logFile.delete();
+
+        FileKeychainStore store = new FileKeychainStore(logFile);
+        Keychain fileKeychain = new Keychain(new ReactApplicationContext(context), store);
+
+        fileKeychain.beginBatch();
+        for (int i = 0; i < 3; i++) {
+            fileKeychain.setItem(VAULT_NAME + i, "username", "password" + i);
+            fileKeychain.setItemVersion(VAULT_NAME + i, Cipher.getLatestCipherVersion());
+        }
+        fileKeychain.commitBatch();
+
+        // overwrite and remove some entries
+        fileKeychain.setItem(VAULT_NAME + 0, "username", "updated");
+        fileKeychain.deleteItem(VAULT_NAME + 1);
+
+        // append a torn record, should be dropped on load
+        try (FileOutputStream output = new FileOutputStream(logFile, true)) {
+            output.write(new byte[]{0, 0, 0, 100, 1, 2, 3});
+        }
+
+        // reload from the disk
+        fileKeychain = new Keychain(new ReactApplicationContext(context), new FileKeychainStore(logFile));
+
+        Assert.assertEquals(2, fileKeychain.getAllItems().size());
+        Assert.assertEquals("updated", fileKeychain.getItem(VAULT_NAME + 0).get("password"));
+        Assert.assertFalse(fileKeychain.itemExist(VAULT_NAME + 1));
+        Assert.assertEquals("password2", fileKeychain.getItem(VAULT_NAME + 2).get("password"));
+        Assert.assertEquals(Integer.valueOf(Cipher.getLatestCipherVersion()), fileKeychain.getItemVersion(VAULT_NAME + 2));
+
+        // new records should be appended after the last valid record
+        fileKeychain.setItem(VAULT_NAME + 1, "username", "password1");
+        store = new FileKeychainStore(logFile);
+        Assert.assertTrue(store.hasEntry(VAULT_NAME + 1));
+
+        // removing everything should compact the log
+        fileKeychain = new Keychain(new ReactApplicationContext(context), store);
+        fileKeychain.clear();
+        Assert.assertTrue(logFile.length() < 64 * 1024);
+        Assert.assertTrue(new FileKeychainStore(logFile).getAllEntries().isEmpty());
+
+        logFile.delete();
+    }
+
+    @Test
+    public void testFileKeychainStoreImport() throws Exception {
+        final Context context = InstrumentationRegistry.getInstrumentation().getTargetContext();
+        final File logFile = new File(context.getCacheDir(), "RN_KEYCHAIN_TEST.log");
+        final File legacyFile = new File(context.getCacheDir(), "RN_KEYCHAIN_TEST_LEGACY.log");
+        logFile.delete();
+        legacyFile.delete();
+
+        // NOTE: any store can be the legacy store, a second log keeps the shared preferences untouched
+        final Keychain legacyKeychain = new Keychain(new ReactApplicationContext(context), new FileKeychainStore(legacyFile));
+        legacyKeychain.setItem(VAULT_NAME, "username", "password");
+        legacyKeychain.setItemVersion(VAULT_NAME, Cipher.getLatestCipherVersion());
+
+        // left over temp file of an interrupted import should not count as an import
+        try (FileOutputStream output = new FileOutputStream(new File(logFile.getPath() + ".tmp"))) {
+            output.write(new byte[]{0, 0, 0, 100, 1, 2, 3});
+        }
+        Assert.assertFalse(logFile.exists());
+
+        // should move the entries to the log and remove them from the legacy store
+        FileKeychainStore store = FileKeychainStore.open(logFile, new FileKeychainStore(legacyFile));
+        Keychain fileKeychain = new Keychain(new ReactApplicationContext(context), store);
+        Assert.assertEquals("password", fileKeychain.getItem(VAULT_NAME).get("password"));
+        Assert.assertEquals(Integer.valueOf(Cipher.getLatestCipherVersion()), fileKeychain.getItemVersion(VAULT_NAME));
+        Assert.assertTrue(new FileKeychainStore(legacyFile).getAllEntries().isEmpty());
+
+        // import is committed when the log exists, legacy entries left by a crash before the cleanup
+        // should only be removed and never overwrite newer entries of the log
+        fileKeychain.setItem(VAULT_NAME, "username", "updated");
+        legacyKeychain.setItem(VAULT_NAME, "username", "password");
+        store = FileKeychainStore.open(logFile, new FileKeychainStore(legacyFile));
+        fileKeychain = new Keychain(new ReactApplicationContext(context), store);
+        Assert.assertEquals("updated", fileKeychain.getItem(VAULT_NAME).get("password"));
+        Assert.assertTrue(new FileKeychainStore(legacyFile).getAllEntries().isEmpty());
+
+        fileKeychain.clear();
+        logFile.delete();
+        legacyFile.delete();
+    }
+
+
     @Test
     public void StorageEncryptionKeyTest() throws Exception {
         // check if the key is not exist
@@ -7,7 +7,9 @@ import com.facebook.react.modules.network.OkHttpClientProvider;
 
 // Local Libs
 import libs.security.SecurityPackage;
+import libs.security.SecurityWarmUp;
 import libs.notification.LocalNotificationPackage;
+import libs.codec.CodecPackage;
 import libs.common.CommonPackage;
 import libs.common.HTTPClientFactory;
 import libs.webview.WebViewPackage;
@@ -49,6 +51,7 @@ public class MainApplication extends NavigationApplication {
                     packages.add(new LocalNotificationPackage());
                     packages.add(new CommonPackage());
                     packages.add(new SecurityPackage());
+                    packages.add(new CodecPackage());
                     packages.add(new WebViewPackage());
                     return packages;
                 }
@@ -64,6 +67,8 @@ public class MainApplication extends NavigationApplication {
         super.onCreate();
         // Update security provider
         upgradeSecurityProvider();
+        // Warm up keystore and crypto providers in background
+        SecurityWarmUp.sharedInstance().start(this);
         // Replace default http client
         OkHttpClientProvider.setOkHttpClientFactory(new HTTPClientFactory());
     }
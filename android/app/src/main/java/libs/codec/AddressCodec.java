@@ -0,0 +1,157 @@
+package libs.codec;
+
+import androidx.annotation.NonNull;
+
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Arrays;
+
+/*
+ Classic address encoding of account ids
+ NOTE: base58 with the ripple alphabet, version byte 0 and a double SHA-256 checksum
+*/
+public class AddressCodec {
+    private static final char[] ALPHABET = "rpshnaf39wBUDNEGHJKLM4PQRST7VWXYZ2bcdeCg65jkm8oFqi1tuvAxyz".toCharArray();
+    private static final int[] INDEXES = new int[128];
+
+    static final int ACCOUNT_ID_LENGTH = 20;
+    private static final byte ACCOUNT_ID_VERSION = 0;
+    private static final int CHECKSUM_LENGTH = 4;
+
+    static {
+        Arrays.fill(INDEXES, -1);
+        for (int i = 0; i < ALPHABET.length; i++) {
+            INDEXES[ALPHABET[i]] = i;
+        }
+    }
+
+    /*
+     Encode the 20 bytes account id to the classic address
+    */
+    @NonNull
+    public static String encodeAccountID(@NonNull final byte[] accountId) {
+        if (accountId.length != ACCOUNT_ID_LENGTH) {
+            throw new IllegalArgumentException("Invalid account id length!");
+        }
+
+        final byte[] payload = new byte[1 + ACCOUNT_ID_LENGTH + CHECKSUM_LENGTH];
+        payload[0] = ACCOUNT_ID_VERSION;
+        System.arraycopy(accountId, 0, payload, 1, ACCOUNT_ID_LENGTH);
+        System.arraycopy(checksum(payload, 1 + ACCOUNT_ID_LENGTH), 0, payload, 1 + ACCOUNT_ID_LENGTH, CHECKSUM_LENGTH);
+
+        return encodeBase58(payload);
+    }
+
+    /*
+     Decode the classic address to the 20 bytes account id
+    */
+    @NonNull
+    public static byte[] decodeAccountID(@NonNull final String address) {
+        final byte[] payload = decodeBase58(address);
+
+        if (payload.length != 1 + ACCOUNT_ID_LENGTH + CHECKSUM_LENGTH || payload[0] != ACCOUNT_ID_VERSION) {
+            throw new IllegalArgumentException("Invalid account address: " + address);
+        }
+
+        final byte[] checksum = checksum(payload, 1 + ACCOUNT_ID_LENGTH);
+        for (int i = 0; i < CHECKSUM_LENGTH; i++) {
+            if (checksum[i] != payload[1 + ACCOUNT_ID_LENGTH + i]) {
+                throw new IllegalArgumentException("Invalid account address checksum: " + address);
+            }
+        }
+
+        return Arrays.copyOfRange(payload, 1, 1 + ACCOUNT_ID_LENGTH);
+    }
+
+    //region Implementation
+
+    @NonNull
+    private static byte[] checksum(@NonNull final byte[] data, final int length) {
+        try {
+            final MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            digest.update(data, 0, length);
+            return digest.digest(digest.digest());
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    @NonNull
+    private static String encodeBase58(@NonNull final byte[] input) {
+        int zeros = 0;
+        while (zeros < input.length && input[zeros] == 0) {
+            zeros++;
+        }
+
+        // NOTE: repeated division of the big endian number by 58, working on a copy
+        final byte[] number = Arrays.copyOf(input, input.length);
+        final char[] encoded = new char[input.length * 2];
+        int outputStart = encoded.length;
+
+        for (int inputStart = zeros; inputStart < number.length; ) {
+            encoded[--outputStart] = ALPHABET[divmod(number, inputStart, 256, 58)];
+            if (number[inputStart] == 0) {
+                inputStart++;
+            }
+        }
+
+        while (outputStart < encoded.length && encoded[outputStart] == ALPHABET[0]) {
+            outputStart++;
+        }
+        while (--zeros >= 0) {
+            encoded[--outputStart] = ALPHABET[0];
+        }
+
+        return new String(encoded, outputStart, encoded.length - outputStart);
+    }
+
+    @NonNull
+    private static byte[] decodeBase58(@NonNull final String input) {
+        final byte[] number = new byte[input.length()];
+
+        for (int i = 0; i < input.length(); i++) {
+            final char c = input.charAt(i);
+            final int digit = c < 128 ? INDEXES[c] : -1;
+            if (digit < 0) {
+                throw new IllegalArgumentException("Invalid account address: " + input);
+            }
+            number[i] = (byte) digit;
+        }
+
+        int zeros = 0;
+        while (zeros < number.length && number[zeros] == 0) {
+            zeros++;
+        }
+
+        final byte[] decoded = new byte[input.length()];
+        int outputStart = decoded.length;
+
+        for (int inputStart = zeros; inputStart < number.length; ) {
+            decoded[--outputStart] = divmod(number, inputStart, 58, 256);
+            if (number[inputStart] == 0) {
+                inputStart++;
+            }
+        }
+
+        while (outputStart < decoded.length && decoded[outputStart] == 0) {
+            outputStart++;
+        }
+
+        return Arrays.copyOfRange(decoded, outputStart - zeros, decoded.length);
+    }
+
+    /*
+     Divide the number in place, returns the remainder
+    */
+    private static byte divmod(@NonNull final byte[] number, final int firstDigit, final int base, final int divisor) {
+        int remainder = 0;
+        for (int i = firstDigit; i < number.length; i++) {
+            final int digit = number[i] & 0xFF;
+            final int temp = remainder * base + digit;
+            number[i] = (byte) (temp / divisor);
+            remainder = temp % divisor;
+        }
+        return (byte) remainder;
+    }
+    //endregion
+}
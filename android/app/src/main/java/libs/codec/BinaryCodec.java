@@ -0,0 +1,80 @@
+package libs.codec;
+
+import androidx.annotation.NonNull;
+
+import org.json.JSONException;
+import org.json.JSONObject;
+
+import java.nio.ByteBuffer;
+
+/*
+ Encode and decode ledger objects in the binary format
+ NOTE: decoding returns a lazy view on the given buffer, encoding writes into the reusable
+ buffer of the calling thread
+
+ encodeForSigning and encodeForMultisigning include the hash prefix, same as the JS codec
+*/
+public class BinaryCodec {
+    private static final byte[] HASH_PREFIX_TRANSACTION_SIGN = {0x53, 0x54, 0x58, 0x00};
+    private static final byte[] HASH_PREFIX_TRANSACTION_MULTISIGN = {0x53, 0x4D, 0x54, 0x00};
+
+    private final Definitions definitions;
+
+    public BinaryCodec(@NonNull final Definitions definitions) {
+        this.definitions = definitions;
+    }
+
+    @NonNull
+    public Definitions getDefinitions() {
+        return definitions;
+    }
+
+    /*
+     Lazy view of the serialized object in the remaining bytes of the buffer
+     NOTE: the buffer content must not change while the view is used
+    */
+    @NonNull
+    public STObjectView decode(@NonNull final ByteBuffer buffer) {
+        return new STObjectView(definitions, buffer, buffer.position(), buffer.limit());
+    }
+
+    @NonNull
+    public STObjectView decode(@NonNull final byte[] bytes) {
+        return decode(ByteBuffer.wrap(bytes));
+    }
+
+    @NonNull
+    public byte[] encode(@NonNull final JSONObject json) throws JSONException {
+        final BinarySerializer serializer = BinarySerializer.obtain();
+        TypeCodec.encodeObject(definitions, json, serializer, false);
+        return serializer.toByteArray();
+    }
+
+    /*
+     Single signing data, prefix and signing fields
+    */
+    @NonNull
+    public byte[] encodeForSigning(@NonNull final JSONObject json) throws JSONException {
+        final BinarySerializer serializer = BinarySerializer.obtain();
+        serializer.put(HASH_PREFIX_TRANSACTION_SIGN);
+        TypeCodec.encodeObject(definitions, json, serializer, true);
+        return serializer.toByteArray();
+    }
+
+    /*
+     Multi signing data, prefix, signing fields and the account id of the signer
+     NOTE: same as the JS codec the SigningPubKey of the transaction must be empty
+    */
+    @NonNull
+    public byte[] encodeForMultisigning(@NonNull final JSONObject json, @NonNull final String signer) throws JSONException {
+        if (!"".equals(json.optString("SigningPubKey", null))) {
+            throw new IllegalArgumentException("SigningPubKey must be empty for multi signing");
+        }
+
+        final BinarySerializer serializer = BinarySerializer.obtain();
+        serializer.put(HASH_PREFIX_TRANSACTION_MULTISIGN);
+        TypeCodec.encodeObject(definitions, json, serializer, true);
+        serializer.put(AddressCodec.decodeAccountID(signer));
+        return serializer.toByteArray();
+    }
+}
@@ -0,0 +1,151 @@
+package libs.codec;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+import com.facebook.react.bridge.Promise;
+import com.facebook.react.bridge.ReactApplicationContext;
+import com.facebook.react.bridge.ReactContextBaseJavaModule;
+import com.facebook.react.bridge.ReactMethod;
+import com.facebook.react.bridge.ReadableArray;
+import com.facebook.react.module.annotations.ReactModule;
+
+import org.json.JSONArray;
+import org.json.JSONObject;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+
+/*
+ Binary codec for JS
+ NOTE: the definitions.json of ripple-binary-codec is passed once from JS with loadDefinitions,
+ results are passed as JSON strings, which is cheaper over the bridge than nested maps
+*/
+@ReactModule(name = BinaryCodecModule.NAME)
+public class BinaryCodecModule extends ReactContextBaseJavaModule {
+    static final String NAME = "BinaryCodecModule";
+
+    private volatile BinaryCodec codec;
+
+    public BinaryCodecModule(ReactApplicationContext reactContext) {
+        super(reactContext);
+    }
+
+    @NonNull
+    @Override
+    public String getName() {
+        return NAME;
+    }
+
+    @NonNull
+    private BinaryCodec getCodec() {
+        final BinaryCodec current = codec;
+        if (current == null) {
+            throw new IllegalStateException("DEFINITIONS_NOT_LOADED");
+        }
+        return current;
+    }
+
+    @NonNull
+    private static byte[] hexToBytes(@NonNull final String hex) {
+        if ((hex.length() & 1) != 0) {
+            throw new IllegalArgumentException("Invalid hex string");
+        }
+
+        final byte[] bytes = new byte[hex.length() / 2];
+        for (int i = 0; i < bytes.length; i++) {
+            final int high = Character.digit(hex.charAt(i * 2), 16);
+            final int low = Character.digit(hex.charAt(i * 2 + 1), 16);
+            if (high < 0 || low < 0) {
+                throw new IllegalArgumentException("Invalid hex string");
+            }
+            bytes[i] = (byte) ((high << 4) | low);
+        }
+        return bytes;
+    }
+
+    @NonNull
+    private static String bytesToHex(@NonNull final byte[] bytes) {
+        return TypeCodec.toHex(ByteBuffer.wrap(bytes), 0, bytes.length);
+    }
+
+    @ReactMethod
+    public void loadDefinitions(String definitions, Promise promise) {
+        try {
+            codec = new BinaryCodec(new Definitions(definitions));
+            promise.resolve(true);
+        } catch (Exception e) {
+            promise.reject("-1", e.getMessage());
+        }
+    }
+
+    @ReactMethod
+    public void decode(String binary, Promise promise) {
+        try {
+            promise.resolve(getCodec().decode(hexToBytes(binary)).toJSON().toString());
+        } catch (Exception e) {
+            promise.reject("-1", e.getMessage());
+        }
+    }
+
+    /*
+     Decode many objects at once, with fields provided only those fields are decoded
+     NOTE: objects which cannot be decoded are returned as null
+    */
+    @ReactMethod
+    public void decodeBatch(ReadableArray binaries, @Nullable ReadableArray fields, Promise promise) {
+        try {
+            final BinaryCodec binaryCodec = getCodec();
+
+            List<String> fieldNames = null;
+            if (fields != null) {
+                fieldNames = new ArrayList<>(fields.size());
+                for (int i = 0; i < fields.size(); i++) {
+                    fieldNames.add(fields.getString(i));
+                }
+            }
+
+            final JSONArray results = new JSONArray();
+            for (int i = 0; i < binaries.size(); i++) {
+                try {
+                    final STObjectView view = binaryCodec.decode(hexToBytes(binaries.getString(i)));
+                    results.put(fieldNames == null ? view.toJSON() : view.toJSON(fieldNames));
+                } catch (Exception e) {
+                    results.put(JSONObject.NULL);
+                }
+            }
+
+            promise.resolve(results.toString());
+        } catch (Exception e) {
+            promise.reject("-1", e.getMessage());
+        }
+    }
+
+    @ReactMethod
+    public void encode(String json, Promise promise) {
+        try {
+            promise.resolve(bytesToHex(getCodec().encode(new JSONObject(json))));
+        } catch (Exception e) {
+            promise.reject("-1", e.getMessage());
+        }
+    }
+
+    @ReactMethod
+    public void encodeForSigning(String json, Promise promise) {
+        try {
+            promise.resolve(bytesToHex(getCodec().encodeForSigning(new JSONObject(json))));
+        } catch (Exception e) {
+            promise.reject("-1", e.getMessage());
+        }
+    }
+
+    @ReactMethod
+    public void encodeForMultisigning(String json, String signer, Promise promise) {
+        try {
+            promise.resolve(bytesToHex(getCodec().encodeForMultisigning(new JSONObject(json), signer)));
+        } catch (Exception e) {
+            promise.reject("-1", e.getMessage());
+        }
+    }
+}
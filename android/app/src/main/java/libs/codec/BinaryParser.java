@@ -0,0 +1,203 @@
+package libs.codec;
+
+import androidx.annotation.NonNull;
+
+import java.nio.ByteBuffer;
+
+/*
+ Read fields from the binary format
+ NOTE: works on absolute positions of the shared buffer, nothing is copied while walking the fields
+*/
+class BinaryParser {
+    static final int OBJECT_END_MARKER = 0xE1;
+    static final int ARRAY_END_MARKER = 0xF1;
+
+    // path set
+    static final int PATH_SEPARATOR = 0xFF;
+    static final int PATH_SET_END = 0x00;
+    static final int HOP_ACCOUNT = 0x01;
+    static final int HOP_CURRENCY = 0x10;
+    static final int HOP_ISSUER = 0x20;
+
+    static final int HASH_LENGTH = 20;
+
+    private final Definitions definitions;
+    private final ByteBuffer buffer;
+    private int position;
+    private final int limit;
+
+    BinaryParser(@NonNull final Definitions definitions, @NonNull final ByteBuffer buffer, final int position, final int limit) {
+        this.definitions = definitions;
+        this.buffer = buffer;
+        this.position = position;
+        this.limit = limit;
+    }
+
+    boolean end() {
+        return position >= limit;
+    }
+
+    int position() {
+        return position;
+    }
+
+    int readUInt8() {
+        ensureAvailable(1);
+        return buffer.get(position++) & 0xFF;
+    }
+
+    void skip(final int length) {
+        ensureAvailable(length);
+        position += length;
+    }
+
+    /*
+     Length prefix of variable length values
+    */
+    int readVLLength() {
+        final int b1 = readUInt8();
+        if (b1 <= 192) {
+            return b1;
+        }
+        if (b1 <= 240) {
+            final int b2 = readUInt8();
+            return 193 + (b1 - 193) * 256 + b2;
+        }
+        if (b1 <= 254) {
+            final int b2 = readUInt8();
+            final int b3 = readUInt8();
+            return 12481 + (b1 - 241) * 65536 + b2 * 256 + b3;
+        }
+        throw new IllegalStateException("Invalid variable length indicator");
+    }
+
+    @NonNull
+    Definitions.Field readField() {
+        int typeCode = readUInt8();
+        int nth = typeCode & 15;
+        typeCode >>= 4;
+
+        if (typeCode == 0) {
+            typeCode = readUInt8();
+            if (typeCode < 16) {
+                throw new IllegalStateException("Cannot read field ordinal, type code out of range");
+            }
+        }
+
+        if (nth == 0) {
+            nth = readUInt8();
+            if (nth < 16) {
+                throw new IllegalStateException("Cannot read field ordinal, field code out of range");
+            }
+        }
+
+        final Definitions.Field field = definitions.getField((typeCode << 16) | nth);
+        if (field == null) {
+            throw new IllegalStateException("Unknown field with type code " + typeCode + " and nth " + nth);
+        }
+        return field;
+    }
+
+    /*
+     Skip the value of the field, returns the end of the value content
+     NOTE: for objects and arrays the content ends before the end marker, the marker itself is skipped
+    */
+    int skipValue(@NonNull final Definitions.Field field) {
+        if (field.isVLEncoded) {
+            skip(readVLLength());
+            return position;
+        }
+
+        switch (field.type) {
+            case Definitions.UINT8:
+                skip(1);
+                break;
+            case Definitions.UINT16:
+                skip(2);
+                break;
+            case Definitions.UINT32:
+                skip(4);
+                break;
+            case Definitions.UINT64:
+                skip(8);
+                break;
+            case Definitions.HASH128:
+                skip(16);
+                break;
+            case Definitions.HASH160:
+                skip(20);
+                break;
+            case Definitions.HASH256:
+                skip(32);
+                break;
+            case Definitions.AMOUNT:
+                ensureAvailable(1);
+                // NOTE: the first bit is set for issued currencies, followed by currency and issuer
+                skip((buffer.get(position) & 0x80) != 0 ? 48 : 8);
+                break;
+            case Definitions.PATH_SET:
+                skipPathSet();
+                break;
+            case Definitions.ST_OBJECT:
+                return skipObject();
+            case Definitions.ST_ARRAY:
+                return skipArray();
+            default:
+                throw new IllegalStateException("Unsupported field type " + field.type + " for " + field.name);
+        }
+
+        return position;
+    }
+
+    private int skipObject() {
+        while (!end()) {
+            final int start = position;
+            final Definitions.Field field = readField();
+            if (Definitions.OBJECT_END_MARKER.equals(field.name)) {
+                return start;
+            }
+            skipValue(field);
+        }
+        // NOTE: the top level object has no end marker
+        return position;
+    }
+
+    private int skipArray() {
+        while (!end()) {
+            final int start = position;
+            final Definitions.Field field = readField();
+            if (Definitions.ARRAY_END_MARKER.equals(field.name)) {
+                return start;
+            }
+            skipValue(field);
+        }
+        throw new IllegalStateException("Missing array end marker");
+    }
+
+    private void skipPathSet() {
+        while (true) {
+            final int type = readUInt8();
+            if (type == PATH_SET_END) {
+                return;
+            }
+            if (type == PATH_SEPARATOR) {
+                continue;
+            }
+            if ((type & HOP_ACCOUNT) != 0) {
+                skip(HASH_LENGTH);
+            }
+            if ((type & HOP_CURRENCY) != 0) {
+                skip(HASH_LENGTH);
+            }
+            if ((type & HOP_ISSUER) != 0) {
+                skip(HASH_LENGTH);
+            }
+        }
+    }
+
+    private void ensureAvailable(final int length) {
+        if (length < 0 || position + length > limit) {
+            throw new IllegalStateException("Unexpected end of data");
+        }
+    }
+}
@@ -0,0 +1,127 @@
+package libs.codec;
+
+import androidx.annotation.NonNull;
+
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+
+/*
+ Write the binary format into a reusable buffer
+ NOTE: every thread keeps its own serializer, the buffer only grows and is reused by the next encode,
+ so encoding does not allocate apart from the final copy of the result
+*/
+class BinarySerializer {
+    private static final int INITIAL_CAPACITY = 4 * 1024;
+
+    private static final ThreadLocal<BinarySerializer> cachedSerializer = new ThreadLocal<>();
+
+    private ByteBuffer buffer = ByteBuffer.allocate(INITIAL_CAPACITY);
+
+    /*
+     Serializer of the calling thread, reset for a new encoding
+    */
+    @NonNull
+    static BinarySerializer obtain() {
+        BinarySerializer serializer = cachedSerializer.get();
+
+        if (null == serializer) {
+            serializer = new BinarySerializer();
+            cachedSerializer.set(serializer);
+        }
+
+        serializer.buffer.clear();
+        return serializer;
+    }
+
+    void put(final int value) {
+        ensureCapacity(1);
+        buffer.put((byte) value);
+    }
+
+    void put(@NonNull final byte[] bytes) {
+        ensureCapacity(bytes.length);
+        buffer.put(bytes);
+    }
+
+    void putUInt16(final int value) {
+        ensureCapacity(2);
+        buffer.putShort((short) value);
+    }
+
+    void putUInt32(final long value) {
+        ensureCapacity(4);
+        buffer.putInt((int) value);
+    }
+
+    void putUInt64(final long value) {
+        ensureCapacity(8);
+        buffer.putLong(value);
+    }
+
+    /*
+     Write the hex string as bytes, without intermediate array
+    */
+    void putHex(@NonNull final String hex) {
+        final int length = hex.length();
+        if ((length & 1) != 0) {
+            throw new IllegalArgumentException("Invalid hex string: " + hex);
+        }
+
+        ensureCapacity(length >> 1);
+        for (int i = 0; i < length; i += 2) {
+            final int high = Character.digit(hex.charAt(i), 16);
+            final int low = Character.digit(hex.charAt(i + 1), 16);
+            if (high < 0 || low < 0) {
+                throw new IllegalArgumentException("Invalid hex string: " + hex);
+            }
+            buffer.put((byte) ((high << 4) | low));
+        }
+    }
+
+    /*
+     Length prefix of variable length values
+    */
+    void putVLLength(int length) {
+        if (length < 0) {
+            throw new IllegalArgumentException("Invalid variable length: " + length);
+        } else if (length <= 192) {
+            put(length);
+        } else if (length <= 12480) {
+            length -= 193;
+            put(193 + (length >>> 8));
+            put(length & 0xFF);
+        } else if (length <= 918744) {
+            length -= 12481;
+            put(241 + (length >>> 16));
+            put((length >>> 8) & 0xFF);
+            put(length & 0xFF);
+        } else {
+            throw new IllegalArgumentException("Variable length overflow: " + length);
+        }
+    }
+
+    int size() {
+        return buffer.position();
+    }
+
+    @NonNull
+    byte[] toByteArray() {
+        return Arrays.copyOf(buffer.array(), buffer.position());
+    }
+
+    private void ensureCapacity(final int length) {
+        if (buffer.remaining() >= length) {
+            return;
+        }
+
+        int capacity = buffer.capacity() * 2;
+        while (capacity - buffer.position() < length) {
+            capacity *= 2;
+        }
+
+        final ByteBuffer grown = ByteBuffer.allocate(capacity);
+        buffer.flip();
+        grown.put(buffer);
+        buffer = grown;
+    }
+}
@@ -0,0 +1,185 @@
+package libs.codec;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+import org.json.JSONArray;
+import org.json.JSONException;
+import org.json.JSONObject;
+
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+
+/*
+ Field and type definitions of the binary format
+ NOTE: created from the definitions.json shipped with ripple-binary-codec, so the native codec
+ always follows the same definitions as the JS codec
+
+ fields are looked up by name when encoding and by ordinal (type code << 16 | nth) when decoding
+*/
+public class Definitions {
+    // type names
+    static final String UINT8 = "UInt8";
+    static final String UINT16 = "UInt16";
+    static final String UINT32 = "UInt32";
+    static final String UINT64 = "UInt64";
+    static final String HASH128 = "Hash128";
+    static final String HASH160 = "Hash160";
+    static final String HASH256 = "Hash256";
+    static final String AMOUNT = "Amount";
+    static final String BLOB = "Blob";
+    static final String ACCOUNT_ID = "AccountID";
+    static final String ST_OBJECT = "STObject";
+    static final String ST_ARRAY = "STArray";
+    static final String PATH_SET = "PathSet";
+    static final String VECTOR256 = "Vector256";
+
+    // fields with an enum value
+    static final String TRANSACTION_TYPE = "TransactionType";
+    static final String TRANSACTION_RESULT = "TransactionResult";
+    static final String LEDGER_ENTRY_TYPE = "LedgerEntryType";
+
+    static final String OBJECT_END_MARKER = "ObjectEndMarker";
+    static final String ARRAY_END_MARKER = "ArrayEndMarker";
+
+    public static class Field {
+        @NonNull
+        public final String name;
+        @NonNull
+        public final String type;
+        public final int typeCode;
+        public final int nth;
+        public final boolean isVLEncoded;
+        public final boolean isSerialized;
+        public final boolean isSigningField;
+        final int ordinal;
+        final byte[] header;
+
+        Field(@NonNull final String name, @NonNull final String type, final int typeCode, final int nth,
+              final boolean isVLEncoded, final boolean isSerialized, final boolean isSigningField) {
+            this.name = name;
+            this.type = type;
+            this.typeCode = typeCode;
+            this.nth = nth;
+            this.isVLEncoded = isVLEncoded;
+            this.isSerialized = isSerialized;
+            this.isSigningField = isSigningField;
+            this.ordinal = (typeCode << 16) | nth;
+            this.header = isSerialized ? encodeHeader(typeCode, nth) : null;
+        }
+    }
+
+    private final Map<String, Field> fieldsByName = new HashMap<>();
+    private final Map<Integer, Field> fieldsByOrdinal = new HashMap<>();
+
+    private final EnumValues transactionTypes;
+    private final EnumValues transactionResults;
+    private final EnumValues ledgerEntryTypes;
+
+    /*
+     Two way mapping between names and codes of an enum
+    */
+    static class EnumValues {
+        private final Map<String, Integer> codes = new HashMap<>();
+        private final Map<Integer, String> names = new HashMap<>();
+
+        EnumValues(@NonNull final JSONObject values) throws JSONException {
+            final Iterator<String> keys = values.keys();
+            while (keys.hasNext()) {
+                final String name = keys.next();
+                final int code = values.getInt(name);
+                codes.put(name, code);
+                names.put(code, name);
+            }
+        }
+
+        @Nullable
+        Integer getCode(@NonNull final String name) {
+            return codes.get(name);
+        }
+
+        @Nullable
+        String getName(final int code) {
+            return names.get(code);
+        }
+    }
+
+    public Definitions(@NonNull final String json) throws JSONException {
+        final JSONObject definitions = new JSONObject(json);
+        final JSONObject types = definitions.getJSONObject("TYPES");
+        final JSONArray fields = definitions.getJSONArray("FIELDS");
+
+        for (int i = 0; i < fields.length(); i++) {
+            final JSONArray entry = fields.getJSONArray(i);
+            final String name = entry.getString(0);
+            final JSONObject info = entry.getJSONObject(1);
+            final String type = info.getString("type");
+
+            final Field field = new Field(
+                    name,
+                    type,
+                    types.optInt(type, -1),
+                    info.getInt("nth"),
+                    info.getBoolean("isVLEncoded"),
+                    info.getBoolean("isSerialized"),
+                    info.getBoolean("isSigningField")
+            );
+
+            fieldsByName.put(name, field);
+
+            // NOTE: same as the JS codec, the last definition wins for a duplicate ordinal
+            if (field.isSerialized) {
+                fieldsByOrdinal.put(field.ordinal, field);
+            }
+        }
+
+        transactionTypes = new EnumValues(definitions.getJSONObject("TRANSACTION_TYPES"));
+        transactionResults = new EnumValues(definitions.getJSONObject("TRANSACTION_RESULTS"));
+        ledgerEntryTypes = new EnumValues(definitions.getJSONObject("LEDGER_ENTRY_TYPES"));
+    }
+
+    @Nullable
+    public Field getField(@NonNull final String name) {
+        return fieldsByName.get(name);
+    }
+
+    @Nullable
+    Field getField(final int ordinal) {
+        return fieldsByOrdinal.get(ordinal);
+    }
+
+    /*
+     Enum values of the field, null if the field is not an enum
+    */
+    @Nullable
+    EnumValues getEnumValues(@NonNull final Field field) {
+        switch (field.name) {
+            case TRANSACTION_TYPE:
+                return transactionTypes;
+            case TRANSACTION_RESULT:
+                return transactionResults;
+            case LEDGER_ENTRY_TYPE:
+                return ledgerEntryTypes;
+            default:
+                return null;
+        }
+    }
+
+    /*
+     1 to 3 bytes field header, type code and nth below 16 are packed in the first byte
+    */
+    @NonNull
+    private static byte[] encodeHeader(final int typeCode, final int nth) {
+        if (typeCode < 16) {
+            if (nth < 16) {
+                return new byte[]{(byte) ((typeCode << 4) | nth)};
+            }
+            return new byte[]{(byte) (typeCode << 4), (byte) nth};
+        }
+        if (nth < 16) {
+            return new byte[]{(byte) nth, (byte) typeCode};
+        }
+        return new byte[]{0, (byte) typeCode, (byte) nth};
+    }
+}
@@ -0,0 +1,184 @@
+package libs.codec;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+import org.json.JSONException;
+import org.json.JSONObject;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/*
+ Lazy view of a serialized object
+ NOTE: the view only keeps the range of the object in the shared buffer, on first access the field
+ headers are walked once to index where every value starts and ends, values are decoded only when requested
+
+ nested objects are views on the same buffer, nothing is copied
+*/
+public class STObjectView {
+    private final Definitions definitions;
+    private final ByteBuffer buffer;
+    private final int start;
+    private final int end;
+
+    // field index, created on first access
+    private Definitions.Field[] fields;
+    private int[] valueStarts;
+    private int[] valueEnds;
+    private int count = -1;
+
+    STObjectView(@NonNull final Definitions definitions, @NonNull final ByteBuffer buffer, final int start, final int end) {
+        this.definitions = definitions;
+        this.buffer = buffer;
+        this.start = start;
+        this.end = end;
+    }
+
+    /*
+     Number of fields in the object
+    */
+    public int size() {
+        ensureIndexed();
+        return count;
+    }
+
+    public boolean has(@NonNull final String name) {
+        return indexOf(name) >= 0;
+    }
+
+    @NonNull
+    public List<String> getFieldNames() {
+        ensureIndexed();
+
+        final List<String> names = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            names.add(fields[i].name);
+        }
+        return names;
+    }
+
+    /*
+     JSON value of the field, null if the object does not contain the field
+    */
+    @Nullable
+    public Object get(@NonNull final String name) throws JSONException {
+        final int index = indexOf(name);
+        if (index < 0) {
+            return null;
+        }
+        return TypeCodec.decode(definitions, fields[index], buffer, valueStarts[index], valueEnds[index]);
+    }
+
+    /*
+     Lazy view of the nested object, null if the object does not contain the field
+    */
+    @Nullable
+    public STObjectView getObject(@NonNull final String name) {
+        final int index = indexOf(name);
+        if (index < 0) {
+            return null;
+        }
+
+        if (!Definitions.ST_OBJECT.equals(fields[index].type)) {
+            throw new IllegalArgumentException(name + " is not an object");
+        }
+        return new STObjectView(definitions, buffer, valueStarts[index], valueEnds[index]);
+    }
+
+    /*
+     Decode the whole object
+    */
+    @NonNull
+    public JSONObject toJSON() throws JSONException {
+        ensureIndexed();
+
+        final JSONObject json = new JSONObject();
+        for (int i = 0; i < count; i++) {
+            json.put(fields[i].name, TypeCodec.decode(definitions, fields[i], buffer, valueStarts[i], valueEnds[i]));
+        }
+        return json;
+    }
+
+    /*
+     Decode only the given fields, missing fields are left out
+    */
+    @NonNull
+    public JSONObject toJSON(@NonNull final Iterable<String> names) throws JSONException {
+        final JSONObject json = new JSONObject();
+        for (String name : names) {
+            final Object value = get(name);
+            if (value != null) {
+                json.put(name, value);
+            }
+        }
+        return json;
+    }
+
+    //region Implementation
+
+    private int indexOf(@NonNull final String name) {
+        ensureIndexed();
+
+        for (int i = 0; i < count; i++) {
+            if (fields[i].name.equals(name)) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    private void ensureIndexed() {
+        if (count >= 0) {
+            return;
+        }
+
+        int capacity = 16;
+        Definitions.Field[] indexFields = new Definitions.Field[capacity];
+        int[] indexStarts = new int[capacity];
+        int[] indexEnds = new int[capacity];
+        int indexCount = 0;
+
+        final BinaryParser parser = new BinaryParser(definitions, buffer, start, end);
+
+        while (!parser.end()) {
+            final Definitions.Field field = parser.readField();
+            if (Definitions.OBJECT_END_MARKER.equals(field.name)) {
+                break;
+            }
+
+            // NOTE: variable length values start after their length prefix
+            final int valueStart;
+            final int valueEnd;
+            if (field.isVLEncoded) {
+                final int length = parser.readVLLength();
+                valueStart = parser.position();
+                parser.skip(length);
+                valueEnd = parser.position();
+            } else {
+                valueStart = parser.position();
+                valueEnd = parser.skipValue(field);
+            }
+
+            if (indexCount == capacity) {
+                capacity *= 2;
+                indexFields = Arrays.copyOf(indexFields, capacity);
+                indexStarts = Arrays.copyOf(indexStarts, capacity);
+                indexEnds = Arrays.copyOf(indexEnds, capacity);
+            }
+
+            indexFields[indexCount] = field;
+            indexStarts[indexCount] = valueStart;
+            indexEnds[indexCount] = valueEnd;
+            indexCount++;
+        }
+
+        fields = indexFields;
+        valueStarts = indexStarts;
+        valueEnds = indexEnds;
+        count = indexCount;
+    }
+    //endregion
+}
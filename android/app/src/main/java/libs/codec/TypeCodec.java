@@ -0,0 +1,622 @@
+package libs.codec;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+import org.json.JSONArray;
+import org.json.JSONException;
+import org.json.JSONObject;
+
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.regex.Pattern;
+
+/*
+ JSON representation of the serialized types, same output as the JS codec
+ NOTE: values are decoded straight from the absolute position of the shared buffer
+
+ UInt8/16/32      number, or the enum name for TransactionType, TransactionResult and LedgerEntryType
+ UInt64           hex string
+ Hash/Blob        hex string
+ AccountID        classic address
+ Amount           drops string, or { currency, issuer, value } for issued currencies
+ PathSet          [[{ account, currency, issuer }]]
+ Vector256        [hex string]
+*/
+class TypeCodec {
+    private static final char[] HEX_DIGITS = "0123456789ABCDEF".toCharArray();
+
+    // amounts
+    private static final long NOT_XRP_BIT = 0x8000000000000000L;
+    private static final long POSITIVE_BIT = 0x4000000000000000L;
+    private static final long MAX_DROPS = 100000000000000000L;
+    private static final int MAX_IOU_PRECISION = 16;
+    private static final int MIN_IOU_EXPONENT = -96;
+    private static final int MAX_IOU_EXPONENT = 80;
+    private static final int IOU_EXPONENT_BIAS = 97;
+
+    // NOTE: same as decimal.js toString, exponential notation at and below 1e-7 and from 1e21
+    private static final int TO_EXP_NEG = -7;
+    private static final int TO_EXP_POS = 21;
+
+    private static final int CURRENCY_LENGTH = 20;
+    private static final String XRP_CURRENCY = "XRP";
+    private static final Pattern ISO_CODE = Pattern.compile("^[A-Z0-9a-z?!@#$%^&*(){}\\[\\]|]{3}$");
+
+    private TypeCodec() {
+    }
+
+    //region Decode
+
+    /*
+     Decode the field value in [start, end) of the buffer
+    */
+    @NonNull
+    static Object decode(@NonNull final Definitions definitions,
+                         @NonNull final Definitions.Field field,
+                         @NonNull final ByteBuffer buffer,
+                         final int start,
+                         final int end) throws JSONException {
+        switch (field.type) {
+            case Definitions.UINT8:
+                return decodeEnum(definitions, field, buffer.get(start) & 0xFF);
+            case Definitions.UINT16:
+                return decodeEnum(definitions, field, buffer.getShort(start) & 0xFFFF);
+            case Definitions.UINT32:
+                final long value = buffer.getInt(start) & 0xFFFFFFFFL;
+                return value <= Integer.MAX_VALUE ? (Object) (int) value : (Object) value;
+            case Definitions.UINT64:
+            case Definitions.HASH128:
+            case Definitions.HASH160:
+            case Definitions.HASH256:
+            case Definitions.BLOB:
+                return toHex(buffer, start, end - start);
+            case Definitions.ACCOUNT_ID:
+                return decodeAccountID(buffer, start);
+            case Definitions.AMOUNT:
+                return decodeAmount(buffer, start);
+            case Definitions.PATH_SET:
+                return decodePathSet(buffer, start);
+            case Definitions.VECTOR256:
+                final JSONArray hashes = new JSONArray();
+                for (int offset = start; offset < end; offset += 32) {
+                    hashes.put(toHex(buffer, offset, 32));
+                }
+                return hashes;
+            case Definitions.ST_OBJECT:
+                return new STObjectView(definitions, buffer, start, end).toJSON();
+            case Definitions.ST_ARRAY:
+                return decodeArray(definitions, buffer, start, end);
+            default:
+                throw new IllegalStateException("Unsupported field type " + field.type + " for " + field.name);
+        }
+    }
+
+    @NonNull
+    private static Object decodeEnum(@NonNull final Definitions definitions, @NonNull final Definitions.Field field, final int code) {
+        final Definitions.EnumValues values = definitions.getEnumValues(field);
+        if (values != null) {
+            final String name = values.getName(code);
+            if (name != null) {
+                return name;
+            }
+        }
+        return code;
+    }
+
+    @NonNull
+    private static String decodeAccountID(@NonNull final ByteBuffer buffer, final int start) {
+        final byte[] accountId = new byte[AddressCodec.ACCOUNT_ID_LENGTH];
+        for (int i = 0; i < accountId.length; i++) {
+            accountId[i] = buffer.get(start + i);
+        }
+        return AddressCodec.encodeAccountID(accountId);
+    }
+
+    @NonNull
+    private static Object decodeAmount(@NonNull final ByteBuffer buffer, final int start) throws JSONException {
+        final long bits = buffer.getLong(start);
+        final boolean isPositive = (bits & POSITIVE_BIT) != 0;
+
+        // native amount in drops
+        if ((bits & NOT_XRP_BIT) == 0) {
+            final long drops = bits & ~(NOT_XRP_BIT | POSITIVE_BIT);
+            return isPositive ? Long.toString(drops) : "-" + drops;
+        }
+
+        final int exponent = (int) ((bits >>> 54) & 0xFF) - IOU_EXPONENT_BIAS;
+        final long mantissa = bits & 0x003FFFFFFFFFFFFFL;
+
+        final JSONObject amount = new JSONObject();
+        amount.put("currency", decodeCurrency(buffer, start + 8));
+        amount.put("issuer", decodeAccountID(buffer, start + 8 + CURRENCY_LENGTH));
+        amount.put("value", formatIouValue(isPositive, mantissa, exponent));
+        return amount;
+    }
+
+    @NonNull
+    private static String formatIouValue(final boolean isPositive, final long mantissa, final int exponent) {
+        if (mantissa == 0) {
+            return "0";
+        }
+
+        final BigDecimal value = BigDecimal.valueOf(mantissa, -exponent).stripTrailingZeros();
+        final int scientificExponent = value.precision() - value.scale() - 1;
+
+        final String formatted;
+        if (scientificExponent <= TO_EXP_NEG || scientificExponent >= TO_EXP_POS) {
+            final String digits = value.unscaledValue().toString();
+            final StringBuilder builder = new StringBuilder(digits.length() + 6);
+            builder.append(digits.charAt(0));
+            if (digits.length() > 1) {
+                builder.append('.').append(digits, 1, digits.length());
+            }
+            builder.append('e').append(scientificExponent < 0 ? '-' : '+').append(Math.abs(scientificExponent));
+            formatted = builder.toString();
+        } else {
+            formatted = value.toPlainString();
+        }
+
+        return isPositive ? formatted : "-" + formatted;
+    }
+
+    /*
+     ISO code for the standard currency format, hex for everything else
+    */
+    @NonNull
+    private static String decodeCurrency(@NonNull final ByteBuffer buffer, final int start) {
+        boolean isZero = true;
+        boolean isStandard = true;
+
+        for (int i = 0; i < CURRENCY_LENGTH; i++) {
+            if (buffer.get(start + i) != 0) {
+                isZero = false;
+                if (i < 12 || i > 14) {
+                    isStandard = false;
+                }
+            }
+        }
+
+        if (isZero) {
+            return XRP_CURRENCY;
+        }
+
+        if (isStandard) {
+            final String iso = new String(new char[]{
+                    (char) (buffer.get(start + 12) & 0xFF),
+                    (char) (buffer.get(start + 13) & 0xFF),
+                    (char) (buffer.get(start + 14) & 0xFF)
+            });
+
+            if (!XRP_CURRENCY.equals(iso) && ISO_CODE.matcher(iso).matches()) {
+                return iso;
+            }
+        }
+
+        return toHex(buffer, start, CURRENCY_LENGTH);
+    }
+
+    @NonNull
+    private static JSONArray decodePathSet(@NonNull final ByteBuffer buffer, final int start) throws JSONException {
+        final JSONArray paths = new JSONArray();
+        JSONArray path = new JSONArray();
+        int position = start;
+
+        while (true) {
+            final int type = buffer.get(position++) & 0xFF;
+
+            if (type == BinaryParser.PATH_SET_END || type == BinaryParser.PATH_SEPARATOR) {
+                paths.put(path);
+                if (type == BinaryParser.PATH_SET_END) {
+                    return paths;
+                }
+                path = new JSONArray();
+                continue;
+            }
+
+            final JSONObject hop = new JSONObject();
+            if ((type & BinaryParser.HOP_ACCOUNT) != 0) {
+                hop.put("account", decodeAccountID(buffer, position));
+                position += BinaryParser.HASH_LENGTH;
+            }
+            if ((type & BinaryParser.HOP_CURRENCY) != 0) {
+                hop.put("currency", decodeCurrency(buffer, position));
+                position += BinaryParser.HASH_LENGTH;
+            }
+            if ((type & BinaryParser.HOP_ISSUER) != 0) {
+                hop.put("issuer", decodeAccountID(buffer, position));
+                position += BinaryParser.HASH_LENGTH;
+            }
+            path.put(hop);
+        }
+    }
+
+    /*
+     [{ FieldName: { ... } }]
+    */
+    @NonNull
+    private static JSONArray decodeArray(@NonNull final Definitions definitions,
+                                         @NonNull final ByteBuffer buffer,
+                                         final int start,
+                                         final int end) throws JSONException {
+        final JSONArray array = new JSONArray();
+        final BinaryParser parser = new BinaryParser(definitions, buffer, start, end);
+
+        while (!parser.end()) {
+            final Definitions.Field field = parser.readField();
+            final int valueStart = parser.position();
+            final int valueEnd = parser.skipValue(field);
+
+            final JSONObject element = new JSONObject();
+            element.put(field.name, decode(definitions, field, buffer, valueStart, valueEnd));
+            array.put(element);
+        }
+
+        return array;
+    }
+
+    @NonNull
+    static String toHex(@NonNull final ByteBuffer buffer, final int start, final int length) {
+        final char[] hex = new char[length * 2];
+        for (int i = 0; i < length; i++) {
+            final int value = buffer.get(start + i) & 0xFF;
+            hex[i * 2] = HEX_DIGITS[value >>> 4];
+            hex[i * 2 + 1] = HEX_DIGITS[value & 0x0F];
+        }
+        return new String(hex);
+    }
+    //endregion
+
+    //region Encode
+
+    /*
+     Write the object fields sorted by ordinal
+     NOTE: only the top level object is filtered for signing, nested objects are always complete
+    */
+    static void encodeObject(@NonNull final Definitions definitions,
+                             @NonNull final JSONObject json,
+                             @NonNull final BinarySerializer serializer,
+                             final boolean signingFieldsOnly) throws JSONException {
+        final List<Definitions.Field> fields = new ArrayList<>(json.length());
+
+        final Iterator<String> keys = json.keys();
+        while (keys.hasNext()) {
+            final Definitions.Field field = definitions.getField(keys.next());
+
+            // NOTE: same as the JS codec, unknown and not serialized fields are ignored
+            if (field == null || !field.isSerialized || json.isNull(field.name)) {
+                continue;
+            }
+            if (signingFieldsOnly && !field.isSigningField) {
+                continue;
+            }
+            fields.add(field);
+        }
+
+        Collections.sort(fields, (a, b) -> Integer.compare(a.ordinal, b.ordinal));
+
+        for (Definitions.Field field : fields) {
+            serializer.put(field.header);
+            encodeValue(definitions, field, json.get(field.name), serializer);
+
+            if (Definitions.ST_OBJECT.equals(field.type)) {
+                serializer.put(BinaryParser.OBJECT_END_MARKER);
+            }
+        }
+    }
+
+    private static void encodeValue(@NonNull final Definitions definitions,
+                                    @NonNull final Definitions.Field field,
+                                    @NonNull final Object value,
+                                    @NonNull final BinarySerializer serializer) throws JSONException {
+        switch (field.type) {
+            case Definitions.UINT8:
+                serializer.put((int) encodeUInt(definitions, field, value, 0xFFL));
+                break;
+            case Definitions.UINT16:
+                serializer.putUInt16((int) encodeUInt(definitions, field, value, 0xFFFFL));
+                break;
+            case Definitions.UINT32:
+                serializer.putUInt32(encodeUInt(definitions, field, value, 0xFFFFFFFFL));
+                break;
+            case Definitions.UINT64:
+                if (value instanceof Number) {
+                    serializer.putUInt64(((Number) value).longValue());
+                } else {
+                    encodeFixedHex(field, padHex(asString(field, value), 16), 8, serializer);
+                }
+                break;
+            case Definitions.HASH128:
+                encodeFixedHex(field, asString(field, value), 16, serializer);
+                break;
+            case Definitions.HASH160:
+                encodeFixedHex(field, asString(field, value), 20, serializer);
+                break;
+            case Definitions.HASH256:
+                encodeFixedHex(field, asString(field, value), 32, serializer);
+                break;
+            case Definitions.BLOB:
+                final String blob = asString(field, value);
+                serializer.putVLLength(blob.length() / 2);
+                serializer.putHex(blob);
+                break;
+            case Definitions.ACCOUNT_ID:
+                serializer.putVLLength(AddressCodec.ACCOUNT_ID_LENGTH);
+                encodeAccountID(asString(field, value), serializer);
+                break;
+            case Definitions.AMOUNT:
+                encodeAmount(field, value, serializer);
+                break;
+            case Definitions.PATH_SET:
+                encodePathSet(field, value, serializer);
+                break;
+            case Definitions.VECTOR256:
+                final JSONArray hashes = asArray(field, value);
+                serializer.putVLLength(hashes.length() * 32);
+                for (int i = 0; i < hashes.length(); i++) {
+                    encodeFixedHex(field, hashes.getString(i), 32, serializer);
+                }
+                break;
+            case Definitions.ST_OBJECT:
+                if (!(value instanceof JSONObject)) {
+                    throw new IllegalArgumentException("Expected object for " + field.name);
+                }
+                encodeObject(definitions, (JSONObject) value, serializer, false);
+                break;
+            case Definitions.ST_ARRAY:
+                encodeArray(definitions, field, value, serializer);
+                break;
+            default:
+                throw new IllegalArgumentException("Unsupported field type " + field.type + " for " + field.name);
+        }
+    }
+
+    private static long encodeUInt(@NonNull final Definitions definitions,
+                                   @NonNull final Definitions.Field field,
+                                   @NonNull final Object value,
+                                   final long max) {
+        final long number;
+
+        if (value instanceof Number) {
+            number = ((Number) value).longValue();
+        } else if (value instanceof String) {
+            final Definitions.EnumValues values = definitions.getEnumValues(field);
+            final Integer code = values != null ? values.getCode((String) value) : null;
+
+            if (code != null) {
+                number = code;
+            } else {
+                try {
+                    number = Long.parseLong((String) value);
+                } catch (NumberFormatException e) {
+                    throw new IllegalArgumentException("Invalid value " + value + " for " + field.name);
+                }
+            }
+        } else {
+            throw new IllegalArgumentException("Invalid value " + value + " for " + field.name);
+        }
+
+        if (number < 0 || number > max) {
+            throw new IllegalArgumentException("Value " + value + " out of range for " + field.name);
+        }
+        return number;
+    }
+
+    private static void encodeFixedHex(@NonNull final Definitions.Field field,
+                                       @NonNull final String hex,
+                                       final int length,
+                                       @NonNull final BinarySerializer serializer) {
+        if (hex.length() != length * 2) {
+            throw new IllegalArgumentException("Invalid length of " + hex + " for " + field.name);
+        }
+        serializer.putHex(hex);
+    }
+
+    @NonNull
+    private static String padHex(@NonNull final String hex, final int length) {
+        if (hex.length() >= length) {
+            return hex;
+        }
+
+        final StringBuilder padded = new StringBuilder(length);
+        for (int i = hex.length(); i < length; i++) {
+            padded.append('0');
+        }
+        return padded.append(hex).toString();
+    }
+
+    /*
+     Classic address or 40 chars hex
+    */
+    private static void encodeAccountID(@NonNull final String value, @NonNull final BinarySerializer serializer) {
+        if (value.length() == AddressCodec.ACCOUNT_ID_LENGTH * 2 && isHex(value)) {
+            serializer.putHex(value);
+            return;
+        }
+        serializer.put(AddressCodec.decodeAccountID(value));
+    }
+
+    private static void encodeAmount(@NonNull final Definitions.Field field,
+                                     @NonNull final Object value,
+                                     @NonNull final BinarySerializer serializer) throws JSONException {
+        // native amount in drops
+        if (value instanceof String || value instanceof Number) {
+            final String drops = value.toString();
+            final long amount;
+
+            try {
+                amount = Long.parseLong(drops);
+            } catch (NumberFormatException e) {
+                throw new IllegalArgumentException(drops + " is an illegal amount for " + field.name);
+            }
+
+            if (amount < 0 || amount > MAX_DROPS) {
+                throw new IllegalArgumentException(drops + " is an illegal amount for " + field.name);
+            }
+
+            serializer.putUInt64(amount | POSITIVE_BIT);
+            return;
+        }
+
+        if (!(value instanceof JSONObject)) {
+            throw new IllegalArgumentException("Invalid amount for " + field.name);
+        }
+
+        final JSONObject amount = (JSONObject) value;
+        final BigDecimal number;
+
+        try {
+            number = new BigDecimal(amount.getString("value")).stripTrailingZeros();
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("Invalid amount value for " + field.name);
+        }
+
+        if (number.signum() == 0) {
+            serializer.putUInt64(NOT_XRP_BIT);
+        } else {
+            final int precision = number.precision();
+            final int exponent = precision - number.scale() - 1 - (MAX_IOU_PRECISION - 1);
+
+            if (precision > MAX_IOU_PRECISION) {
+                throw new IllegalArgumentException("Decimal precision out of range for " + field.name);
+            }
+            if (exponent < MIN_IOU_EXPONENT || exponent > MAX_IOU_EXPONENT) {
+                throw new IllegalArgumentException("Exponent out of range for " + field.name);
+            }
+
+            // mantissa normalized to 16 digits
+            final long mantissa = number.unscaledValue().abs()
+                    .multiply(BigInteger.TEN.pow(MAX_IOU_PRECISION - precision))
+                    .longValue();
+
+            long bits = NOT_XRP_BIT | mantissa | ((long) (exponent + IOU_EXPONENT_BIAS) << 54);
+            if (number.signum() > 0) {
+                bits |= POSITIVE_BIT;
+            }
+            serializer.putUInt64(bits);
+        }
+
+        encodeCurrency(field, amount.getString("currency"), serializer);
+        encodeAccountID(amount.getString("issuer"), serializer);
+    }
+
+    /*
+     ISO code in the standard format, XRP as all zero, or 40 chars hex
+    */
+    private static void encodeCurrency(@NonNull final Definitions.Field field,
+                                       @NonNull final String currency,
+                                       @NonNull final BinarySerializer serializer) {
+        if (ISO_CODE.matcher(currency).matches()) {
+            final byte[] bytes = new byte[CURRENCY_LENGTH];
+            if (!XRP_CURRENCY.equals(currency)) {
+                bytes[12] = (byte) currency.charAt(0);
+                bytes[13] = (byte) currency.charAt(1);
+                bytes[14] = (byte) currency.charAt(2);
+            }
+            serializer.put(bytes);
+            return;
+        }
+
+        if (currency.length() == CURRENCY_LENGTH * 2 && isHex(currency)) {
+            serializer.putHex(currency);
+            return;
+        }
+
+        throw new IllegalArgumentException("Invalid currency " + currency + " for " + field.name);
+    }
+
+    private static void encodePathSet(@NonNull final Definitions.Field field,
+                                      @NonNull final Object value,
+                                      @NonNull final BinarySerializer serializer) throws JSONException {
+        final JSONArray paths = asArray(field, value);
+
+        for (int i = 0; i < paths.length(); i++) {
+            if (i > 0) {
+                serializer.put(BinaryParser.PATH_SEPARATOR);
+            }
+
+            final JSONArray path = paths.getJSONArray(i);
+            for (int j = 0; j < path.length(); j++) {
+                final JSONObject hop = path.getJSONObject(j);
+                final String account = optString(hop, "account");
+                final String currency = optString(hop, "currency");
+                final String issuer = optString(hop, "issuer");
+
+                int type = 0;
+                if (account != null) {
+                    type |= BinaryParser.HOP_ACCOUNT;
+                }
+                if (currency != null) {
+                    type |= BinaryParser.HOP_CURRENCY;
+                }
+                if (issuer != null) {
+                    type |= BinaryParser.HOP_ISSUER;
+                }
+
+                serializer.put(type);
+                if (account != null) {
+                    encodeAccountID(account, serializer);
+                }
+                if (currency != null) {
+                    encodeCurrency(field, currency, serializer);
+                }
+                if (issuer != null) {
+                    encodeAccountID(issuer, serializer);
+                }
+            }
+        }
+
+        serializer.put(BinaryParser.PATH_SET_END);
+    }
+
+    private static void encodeArray(@NonNull final Definitions definitions,
+                                    @NonNull final Definitions.Field field,
+                                    @NonNull final Object value,
+                                    @NonNull final BinarySerializer serializer) throws JSONException {
+        final JSONArray array = asArray(field, value);
+
+        for (int i = 0; i < array.length(); i++) {
+            // NOTE: every element is an object with a single field, { Memo: { ... } }
+            final JSONObject element = array.getJSONObject(i);
+            encodeObject(definitions, element, serializer, false);
+        }
+
+        serializer.put(BinaryParser.ARRAY_END_MARKER);
+    }
+
+    @Nullable
+    private static String optString(@NonNull final JSONObject json, @NonNull final String name) throws JSONException {
+        return json.isNull(name) ? null : json.getString(name);
+    }
+
+    @NonNull
+    private static String asString(@NonNull final Definitions.Field field, @NonNull final Object value) {
+        if (!(value instanceof String)) {
+            throw new IllegalArgumentException("Expected string for " + field.name);
+        }
+        return (String) value;
+    }
+
+    @NonNull
+    private static JSONArray asArray(@NonNull final Definitions.Field field, @NonNull final Object value) {
+        if (!(value instanceof JSONArray)) {
+            throw new IllegalArgumentException("Expected array for " + field.name);
+        }
+        return (JSONArray) value;
+    }
+
+    private static boolean isHex(@NonNull final String value) {
+        for (int i = 0; i < value.length(); i++) {
+            if (Character.digit(value.charAt(i), 16) < 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+    //endregion
+}
@@ -13,16 +13,20 @@ import java.util.List;
 import libs.security.crypto.CryptoModule;
 import libs.security.authentication.Biometric.BiometricModule;
 import libs.security.providers.UniqueIdProviderModule;
+import libs.security.signing.SigningModule;
 import libs.security.vault.VaultManagerModule;
 
 public class SecurityPackage implements ReactPackage {
     @Override
     public List<NativeModule> createNativeModules(ReactApplicationContext reactContext) {
+        final VaultManagerModule vaultManager = new VaultManagerModule(reactContext);
+
         return Arrays.<NativeModule>asList(
                 new CryptoModule(reactContext),
                 new BiometricModule(reactContext),
                 new UniqueIdProviderModule(reactContext),
-                new VaultManagerModule(reactContext)
+                vaultManager,
+                new SigningModule(reactContext, vaultManager)
         );
     }
 
@@ -0,0 +1,123 @@
+package libs.security;
+
+import android.content.Context;
+import android.content.SharedPreferences;
+import android.content.pm.PackageManager;
+import android.os.Build;
+import android.util.Log;
+
+import androidx.annotation.NonNull;
+
+import java.security.MessageDigest;
+
+import javax.crypto.Cipher;
+import javax.crypto.Mac;
+import javax.crypto.spec.GCMParameterSpec;
+import javax.crypto.spec.SecretKeySpec;
+
+import libs.security.vault.cipher.KdfCalibrator;
+import libs.security.vault.storage.cipherStorage.CipherStorageBase;
+import libs.security.vault.storage.cipherStorage.CipherStorageKeystoreAesGcm;
+
+/*
+ Warm up the security stack in background at application start
+ NOTE: the first vault operation after a cold start would otherwise pay for loading the keystore,
+ the StrongBox probe and the crypto providers lookup
+
+ - keystore is loaded once and shared by all cipher storages
+ - StrongBox availability is probed once per install and persisted
+ - providers of the used Cipher/Mac/MessageDigest algorithms are resolved
+ - kdf calibration is started if the device is not calibrated yet
+*/
+public class SecurityWarmUp {
+    private static final String LOG_TAG = SecurityWarmUp.class.getSimpleName();
+    private static final String CAPABILITIES_DATA = "RN_KEYCHAIN_CAPABILITIES";
+    private static final String STRONGBOX_AVAILABLE = "strongbox";
+
+    private boolean started = false;
+
+    public static SecurityWarmUp sharedInstance() {
+        return SingletonHolder.instance;
+    }
+
+    private static class SingletonHolder {
+        static final SecurityWarmUp instance = new SecurityWarmUp();
+    }
+
+    /*
+     Start the warm up on a background thread, only the first call has effect
+    */
+    public synchronized void start(@NonNull final Context context) {
+        if (started) {
+            return;
+        }
+
+        started = true;
+
+        final Context applicationContext = context.getApplicationContext();
+
+        Thread thread = new Thread(() -> warmUp(applicationContext), "SecurityWarmUp");
+        thread.setDaemon(true);
+        thread.setPriority(Thread.NORM_PRIORITY - 1);
+        thread.start();
+    }
+
+    private void warmUp(@NonNull final Context context) {
+        final CipherStorageKeystoreAesGcm cipherStorage = new CipherStorageKeystoreAesGcm();
+
+        // load the keystore
+        try {
+            cipherStorage.getKeyStoreAndLoad();
+        } catch (Exception e) {
+            Log.w(LOG_TAG, "Unable to load keystore", e);
+        }
+
+        // probe StrongBox once and persist the result
+        try {
+            final SharedPreferences prefs = context.getSharedPreferences(CAPABILITIES_DATA, Context.MODE_PRIVATE);
+
+            if (prefs.contains(STRONGBOX_AVAILABLE)) {
+                CipherStorageBase.setStrongboxAvailable(prefs.getBoolean(STRONGBOX_AVAILABLE, false));
+            } else {
+                final boolean available;
+
+                // NOTE: no need for a probe key if the device does not declare StrongBox at all
+                if (Build.VERSION.SDK_INT < Build.VERSION_CODES.P
+                        || !context.getPackageManager().hasSystemFeature(PackageManager.FEATURE_STRONGBOX_KEYSTORE)) {
+                    CipherStorageBase.setStrongboxAvailable(false);
+                    available = false;
+                } else {
+                    available = cipherStorage.probeStrongbox();
+                }
+
+                prefs.edit().putBoolean(STRONGBOX_AVAILABLE, available).apply();
+            }
+        } catch (Exception e) {
+            Log.w(LOG_TAG, "Unable to probe StrongBox", e);
+        }
+
+        // resolve the providers and load their classes
+        try {
+            final Cipher gcm = Cipher.getInstance("AES/GCM/NoPadding");
+            gcm.init(Cipher.ENCRYPT_MODE, new SecretKeySpec(new byte[32], "AES"), new GCMParameterSpec(128, new byte[12]));
+            gcm.doFinal(new byte[16]);
+
+            Cipher.getInstance("AES/CBC/PKCS7Padding");
+
+            for (String algorithm : new String[]{"HmacSHA256", "HmacSHA512"}) {
+                final Mac mac = Mac.getInstance(algorithm);
+                mac.init(new SecretKeySpec(new byte[32], algorithm));
+                mac.doFinal(new byte[16]);
+            }
+
+            for (String algorithm : new String[]{"SHA-256", "SHA-512"}) {
+                MessageDigest.getInstance(algorithm).digest(new byte[16]);
+            }
+        } catch (Exception e) {
+            Log.w(LOG_TAG, "Unable to preload crypto providers", e);
+        }
+
+        // calibrate kdf in background if needed
+        KdfCalibrator.sharedInstance().init(context);
+    }
+}
@@ -2,18 +2,20 @@ package libs.security.crypto;
 
 import androidx.annotation.NonNull;
 
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
 import java.security.InvalidKeyException;
 import java.security.MessageDigest;
 import java.security.NoSuchAlgorithmException;
 import java.security.SecureRandom;
-import java.security.spec.InvalidKeySpecException;
+import java.util.Arrays;
 
 import javax.crypto.Cipher;
 import javax.crypto.Mac;
 import javax.crypto.SecretKey;
-import javax.crypto.SecretKeyFactory;
 import javax.crypto.spec.IvParameterSpec;
-import javax.crypto.spec.PBEKeySpec;
 import javax.crypto.spec.SecretKeySpec;
 
 public class Crypto {
@@ -61,9 +63,33 @@ public class Crypto {
         return out;
     }
 
+    /*
+     Digest and Mac instances are not thread-safe, keep one per thread and skip the provider lookup on every call
+     NOTE: instances are reset before every use, so a call which failed halfway cannot leak state in the next one
+    */
+    private static final ThreadLocal<MessageDigest> SHA1_DIGEST = new ThreadLocal<>();
+    private static final ThreadLocal<MessageDigest> SHA256_DIGEST = new ThreadLocal<>();
+    private static final ThreadLocal<MessageDigest> SHA512_DIGEST = new ThreadLocal<>();
+    private static final ThreadLocal<Mac> HMAC256_MAC = new ThreadLocal<>();
+
+    @NonNull
+    private static MessageDigest getDigest(@NonNull final ThreadLocal<MessageDigest> instance,
+                                           @NonNull final String algorithm) throws NoSuchAlgorithmException {
+        MessageDigest digest = instance.get();
+
+        if (digest == null) {
+            digest = MessageDigest.getInstance(algorithm);
+            instance.set(digest);
+        } else {
+            digest.reset();
+        }
+
+        return digest;
+    }
+
     @NonNull
     public static byte[] SHA1Hash(@NonNull final byte[] data) throws NoSuchAlgorithmException {
-        MessageDigest digest = MessageDigest.getInstance("SHA-1");
+        MessageDigest digest = getDigest(SHA1_DIGEST, "SHA-1");
         digest.update(data);
         return digest.digest();
     }
@@ -71,36 +97,72 @@ public class Crypto {
 
     @NonNull
     public static byte[] SHA256Hash(@NonNull final byte[] data) throws NoSuchAlgorithmException {
-        MessageDigest digest = MessageDigest.getInstance("SHA-256");
+        MessageDigest digest = getDigest(SHA256_DIGEST, "SHA-256");
         digest.update(data);
         return digest.digest();
     }
 
     @NonNull
     public static byte[] SHA512Hash(@NonNull final byte[] data) throws NoSuchAlgorithmException {
-        MessageDigest digest = MessageDigest.getInstance("SHA-512");
+        MessageDigest digest = getDigest(SHA512_DIGEST, "SHA-512");
         digest.update(data);
         return digest.digest();
     }
 
+    /*
+     First 32 bytes of SHA-512, the hash used all over the XRP ledger
+    */
+    @NonNull
+    public static byte[] SHA512Half(@NonNull final byte[] data) throws NoSuchAlgorithmException {
+        return Arrays.copyOf(SHA512Hash(data), 32);
+    }
+
     @NonNull
     public static byte[] HMAC256(@NonNull final byte[] data, @NonNull final byte[] key) throws NoSuchAlgorithmException, InvalidKeyException {
-        Mac HmacSha256 = Mac.getInstance("HmacSHA256");
+        Mac HmacSha256 = HMAC256_MAC.get();
+
+        if (HmacSha256 == null) {
+            HmacSha256 = Mac.getInstance("HmacSHA256");
+            HMAC256_MAC.set(HmacSha256);
+        }
+
+        // NOTE: init resets the instance
         SecretKey secretKey = new SecretKeySpec(key, "HmacSHA256");
         HmacSha256.init(secretKey);
         return HmacSha256.doFinal(data);
     }
 
     @NonNull
-    public static byte[] PBKDF2(@NonNull final char[] password, @NonNull final byte[] salt, @NonNull final int iteration) throws NoSuchAlgorithmException, InvalidKeySpecException {
+    public static byte[] PBKDF2(@NonNull final char[] password, @NonNull final byte[] salt, @NonNull final int iteration) throws NoSuchAlgorithmException, InvalidKeyException {
+        // encode password as UTF-8, same as PBEKeySpec does for "PBKDF2WithHmacSHA512"
+        final ByteBuffer passwordBuffer = StandardCharsets.UTF_8.encode(CharBuffer.wrap(password));
+        final byte[] passwordBytes = new byte[passwordBuffer.remaining()];
+        passwordBuffer.get(passwordBytes);
+
+        try {
+            return PBKDF2(passwordBytes, salt, iteration);
+        } finally {
+            Arrays.fill(passwordBytes, (byte) 0);
+            if (passwordBuffer.hasArray()) {
+                Arrays.fill(passwordBuffer.array(), (byte) 0);
+            }
+        }
+    }
+
+    @NonNull
+    public static byte[] PBKDF2(@NonNull final byte[] password, @NonNull final byte[] salt, @NonNull final int iteration) throws NoSuchAlgorithmException, InvalidKeyException {
+        // constants
+        final int KEY_LENGTH = 32; // 256 bits = 32 bytes
+
+        return PBKDF2Engine.derive(password, salt, iteration, KEY_LENGTH);
+    }
+
+    @NonNull
+    public static byte[] Scrypt(@NonNull final byte[] password, @NonNull final byte[] salt, final int N, final int r, final int p) throws GeneralSecurityException, InterruptedException {
         // constants
-        final String HMAC_HASH_ALGO = "PBKDF2WithHmacSHA512";
-        final int KEY_LENGTH = 32 * 8; // 256 bits = 32 bytes
+        final int KEY_LENGTH = 32; // 256 bits = 32 bytes
 
-        SecretKeyFactory factory = SecretKeyFactory.getInstance(HMAC_HASH_ALGO);
-        PBEKeySpec keySpec = new PBEKeySpec(password, salt, iteration, KEY_LENGTH);
-        SecretKey hash = factory.generateSecret(keySpec);
-        return hash.getEncoded();
+        return ScryptEngine.derive(password, salt, N, r, p, KEY_LENGTH);
     }
 
     @NonNull
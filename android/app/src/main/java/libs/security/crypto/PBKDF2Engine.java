@@ -0,0 +1,124 @@
+package libs.security.crypto;
+
+import androidx.annotation.NonNull;
+
+import java.security.InvalidKeyException;
+import java.security.NoSuchAlgorithmException;
+import java.util.Arrays;
+
+import javax.crypto.Mac;
+import javax.crypto.ShortBufferException;
+import javax.crypto.spec.SecretKeySpec;
+
+/*
+ PBKDF2-HMAC-SHA512/SHA256 (RFC 8018) on top of a reusable Mac instance
+ NOTE: the Mac is keyed once per derivation, so the inner/outer pads are computed only once
+ and every iteration runs on preallocated buffers without any allocation
+ the output is byte identical to SecretKeyFactory "PBKDF2WithHmacSHA512"
+*/
+public class PBKDF2Engine {
+    public enum PRF {
+        HmacSHA512("HmacSHA512", 64),
+        HmacSHA256("HmacSHA256", 32);
+
+        private final String algorithm;
+        private final int hashLength;
+        // Mac instances are not thread-safe, keep one per thread and skip the provider lookup on every call
+        private final ThreadLocal<Mac> macInstance = new ThreadLocal<>();
+
+        PRF(String algorithm, int hashLength) {
+            this.algorithm = algorithm;
+            this.hashLength = hashLength;
+        }
+
+        @NonNull
+        private Mac getMac() throws NoSuchAlgorithmException {
+            Mac mac = macInstance.get();
+
+            if (mac == null) {
+                mac = Mac.getInstance(algorithm);
+                macInstance.set(mac);
+            }
+
+            return mac;
+        }
+    }
+
+    @NonNull
+    public static byte[] derive(@NonNull final byte[] password,
+                                @NonNull final byte[] salt,
+                                final int iterations,
+                                final int keyLength) throws NoSuchAlgorithmException, InvalidKeyException {
+        return derive(PRF.HmacSHA512, password, salt, iterations, keyLength);
+    }
+
+    @NonNull
+    public static byte[] derive(@NonNull final PRF prf,
+                                @NonNull final byte[] password,
+                                @NonNull final byte[] salt,
+                                final int iterations,
+                                final int keyLength) throws NoSuchAlgorithmException, InvalidKeyException {
+        if (iterations < 1) {
+            throw new IllegalArgumentException("Iteration count must be at least 1.");
+        }
+
+        if (keyLength < 1) {
+            throw new IllegalArgumentException("Key length must be at least 1.");
+        }
+
+        final String MAC_ALGORITHM = prf.algorithm;
+        final int HASH_LENGTH = prf.hashLength;
+
+        final Mac mac = prf.getMac();
+
+        // NOTE: HMAC pads the key with zero's to the block size, so an empty password is equal to a single zero byte
+        // we need this as SecretKeySpec does not accept empty keys
+        mac.init(new SecretKeySpec(password.length == 0 ? new byte[1] : password, MAC_ALGORITHM));
+
+        final byte[] output = new byte[keyLength];
+        final byte[] blockIndex = new byte[4];
+        final byte[] u = new byte[HASH_LENGTH];
+        final byte[] t = new byte[HASH_LENGTH];
+
+        try {
+            final int blocks = (keyLength + HASH_LENGTH - 1) / HASH_LENGTH;
+
+            for (int block = 1; block <= blocks; block++) {
+                // big-endian block index
+                blockIndex[0] = (byte) (block >>> 24);
+                blockIndex[1] = (byte) (block >>> 16);
+                blockIndex[2] = (byte) (block >>> 8);
+                blockIndex[3] = (byte) block;
+
+                // U1 = PRF(password, salt || INT(block))
+                mac.update(salt);
+                mac.update(blockIndex);
+                mac.doFinal(u, 0);
+                System.arraycopy(u, 0, t, 0, HASH_LENGTH);
+
+                // Un = PRF(password, Un-1) and T = U1 ^ U2 ^ ... ^ Un
+                for (int i = 1; i < iterations; i++) {
+                    mac.update(u, 0, HASH_LENGTH);
+                    mac.doFinal(u, 0);
+
+                    for (int j = 0; j < HASH_LENGTH; j++) {
+                        t[j] ^= u[j];
+                    }
+                }
+
+                final int offset = (block - 1) * HASH_LENGTH;
+                System.arraycopy(t, 0, output, offset, Math.min(HASH_LENGTH, keyLength - offset));
+            }
+        } catch (ShortBufferException e) {
+            // this should never happen as the buffers are allocated with the exact mac length
+            throw new IllegalStateException(e);
+        } finally {
+            Arrays.fill(u, (byte) 0);
+            Arrays.fill(t, (byte) 0);
+            // drop the password state from the reusable mac
+            mac.init(new SecretKeySpec(new byte[1], MAC_ALGORITHM));
+        }
+
+        return output;
+    }
+}
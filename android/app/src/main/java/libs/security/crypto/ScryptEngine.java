@@ -0,0 +1,213 @@
+package libs.security.crypto;
+
+import androidx.annotation.NonNull;
+
+import java.security.GeneralSecurityException;
+import java.util.Arrays;
+import java.util.concurrent.Semaphore;
+
+/*
+ scrypt memory-hard key derivation (RFC 7914)
+ NOTE: every derivation allocates 128 * r * N bytes, concurrent derivations are bounded
+ by a memory budget of a quarter of the max heap so parallel vault work can not run out of memory
+*/
+public class ScryptEngine {
+    private static final int MEMORY_BUDGET_KB = (int) Math.min(Integer.MAX_VALUE, Runtime.getRuntime().maxMemory() / 4 / 1024);
+    private static final Semaphore memoryBudget = new Semaphore(Math.max(1, MEMORY_BUDGET_KB), true);
+
+    /*
+     Memory needed for a derivation with given cost parameters in bytes
+    */
+    public static long getMemoryCost(final int N, final int r, final int p) {
+        return 128L * r * N + 256L * r + 128L * r * p;
+    }
+
+    /*
+     Check a derivation with given cost parameters fits in the memory budget
+     NOTE: a single derivation bigger than the budget would still be allocated, so parameters which are
+     not our own (e.g. from an imported file) should be checked before deriving
+    */
+    public static boolean fitsMemoryBudget(final int N, final int r, final int p) {
+        return getMemoryCost(N, r, p) <= (long) MEMORY_BUDGET_KB * 1024;
+    }
+
+    @NonNull
+    public static byte[] derive(@NonNull final byte[] password,
+                                @NonNull final byte[] salt,
+                                final int N,
+                                final int r,
+                                final int p,
+                                final int keyLength) throws GeneralSecurityException, InterruptedException {
+        if (N < 2 || (N & (N - 1)) != 0) {
+            throw new IllegalArgumentException("N must be a power of 2 greater than 1.");
+        }
+
+        if (r < 1 || p < 1 || (long) r * p >= (1 << 30)) {
+            throw new IllegalArgumentException("Invalid r or p parameter.");
+        }
+
+        if (N > Integer.MAX_VALUE / 128 / r) {
+            throw new IllegalArgumentException("N is too large.");
+        }
+
+        // wait for enough memory budget before allocating the work area
+        final int permits = (int) Math.min(
+                Math.max(1, MEMORY_BUDGET_KB),
+                Math.max(1, getMemoryCost(N, r, p) / 1024)
+        );
+
+        memoryBudget.acquire(permits);
+
+        try {
+            // B = PBKDF2-HMAC-SHA256(password, salt, 1, p * 128 * r)
+            final byte[] B = PBKDF2Engine.derive(PBKDF2Engine.PRF.HmacSHA256, password, salt, 1, p * 128 * r);
+
+            final int[] XY = new int[64 * r];
+            final int[] V = new int[32 * r * N];
+
+            try {
+                for (int i = 0; i < p; i++) {
+                    smix(B, i * 128 * r, r, N, V, XY);
+                }
+
+                return PBKDF2Engine.derive(PBKDF2Engine.PRF.HmacSHA256, password, B, 1, keyLength);
+            } finally {
+                Arrays.fill(B, (byte) 0);
+                Arrays.fill(XY, 0);
+                Arrays.fill(V, 0);
+            }
+        } finally {
+            memoryBudget.release(permits);
+        }
+    }
+
+    /*
+     scryptROMix
+    */
+    private static void smix(final byte[] B, final int Bi, final int r, final int N, final int[] V, final int[] XY) {
+        final int X = 0;
+        final int Y = 32 * r;
+        final int words = 32 * r;
+        final int[] T = new int[16];
+
+        // X = B (little-endian words)
+        for (int k = 0; k < words; k++) {
+            final int offset = Bi + k * 4;
+            XY[X + k] = (B[offset] & 0xff)
+                    | (B[offset + 1] & 0xff) << 8
+                    | (B[offset + 2] & 0xff) << 16
+                    | (B[offset + 3] & 0xff) << 24;
+        }
+
+        // V[i] = X, X = BlockMix(X)
+        for (int i = 0; i < N; i++) {
+            System.arraycopy(XY, X, V, i * words, words);
+            blockMixSalsa8(XY, X, Y, T, r);
+        }
+
+        // j = Integerify(X) mod N, X = BlockMix(X ^ V[j])
+        for (int i = 0; i < N; i++) {
+            final int j = XY[X + (2 * r - 1) * 16] & (N - 1);
+            final int Vj = j * words;
+            for (int k = 0; k < words; k++) {
+                XY[X + k] ^= V[Vj + k];
+            }
+            blockMixSalsa8(XY, X, Y, T, r);
+        }
+
+        // B = X
+        for (int k = 0; k < words; k++) {
+            final int value = XY[X + k];
+            final int offset = Bi + k * 4;
+            B[offset] = (byte) value;
+            B[offset + 1] = (byte) (value >>> 8);
+            B[offset + 2] = (byte) (value >>> 16);
+            B[offset + 3] = (byte) (value >>> 24);
+        }
+    }
+
+    /*
+     scryptBlockMix, X is replaced in place, Y is used as scratch area
+    */
+    private static void blockMixSalsa8(final int[] XY, final int Xi, final int Yi, final int[] T, final int r) {
+        // T = B[2r - 1]
+        System.arraycopy(XY, Xi + (2 * r - 1) * 16, T, 0, 16);
+
+        for (int i = 0; i < 2 * r; i++) {
+            for (int k = 0; k < 16; k++) {
+                T[k] ^= XY[Xi + i * 16 + k];
+            }
+            salsa20_8(T);
+
+            // even blocks go to the first half, odd blocks to the second half
+            System.arraycopy(T, 0, XY, Yi + (i / 2 + (i & 1) * r) * 16, 16);
+        }
+
+        System.arraycopy(XY, Yi, XY, Xi, 32 * r);
+    }
+
+    private static int R(final int a, final int b) {
+        return (a << b) | (a >>> (32 - b));
+    }
+
+    private static void salsa20_8(final int[] B) {
+        int x0 = B[0], x1 = B[1], x2 = B[2], x3 = B[3];
+        int x4 = B[4], x5 = B[5], x6 = B[6], x7 = B[7];
+        int x8 = B[8], x9 = B[9], x10 = B[10], x11 = B[11];
+        int x12 = B[12], x13 = B[13], x14 = B[14], x15 = B[15];
+
+        for (int i = 0; i < 8; i += 2) {
+            // columns
+            x4 ^= R(x0 + x12, 7);
+            x8 ^= R(x4 + x0, 9);
+            x12 ^= R(x8 + x4, 13);
+            x0 ^= R(x12 + x8, 18);
+            x9 ^= R(x5 + x1, 7);
+            x13 ^= R(x9 + x5, 9);
+            x1 ^= R(x13 + x9, 13);
+            x5 ^= R(x1 + x13, 18);
+            x14 ^= R(x10 + x6, 7);
+            x2 ^= R(x14 + x10, 9);
+            x6 ^= R(x2 + x14, 13);
+            x10 ^= R(x6 + x2, 18);
+            x3 ^= R(x15 + x11, 7);
+            x7 ^= R(x3 + x15, 9);
+            x11 ^= R(x7 + x3, 13);
+            x15 ^= R(x11 + x7, 18);
+            // rows
+            x1 ^= R(x0 + x3, 7);
+            x2 ^= R(x1 + x0, 9);
+            x3 ^= R(x2 + x1, 13);
+            x0 ^= R(x3 + x2, 18);
+            x6 ^= R(x5 + x4, 7);
+            x7 ^= R(x6 + x5, 9);
+            x4 ^= R(x7 + x6, 13);
+            x5 ^= R(x4 + x7, 18);
+            x11 ^= R(x10 + x9, 7);
+            x8 ^= R(x11 + x10, 9);
+            x9 ^= R(x8 + x11, 13);
+            x10 ^= R(x9 + x8, 18);
+            x12 ^= R(x15 + x14, 7);
+            x13 ^= R(x12 + x15, 9);
+            x14 ^= R(x13 + x12, 13);
+            x15 ^= R(x14 + x13, 18);
+        }
+
+        B[0] += x0;
+        B[1] += x1;
+        B[2] += x2;
+        B[3] += x3;
+        B[4] += x4;
+        B[5] += x5;
+        B[6] += x6;
+        B[7] += x7;
+        B[8] += x8;
+        B[9] += x9;
+        B[10] += x10;
+        B[11] += x11;
+        B[12] += x12;
+        B[13] += x13;
+        B[14] += x14;
+        B[15] += x15;
+    }
+}
@@ -16,18 +16,25 @@ import libs.security.crypto.Crypto;
 import libs.security.vault.storage.Keychain;
 
 public class UniqueIdProvider {
-    private static final String UNIQUE_DEVICE_ID_KEY = "device-unique-id";
+    public static final String UNIQUE_DEVICE_ID_KEY = "device-unique-id";
 
     private Context applicationContent;
     private Keychain keychain;
 
+    // resolved unique id and its bytes, the id never changes once stored in the keychain
+    // NOTE: read without lock on the hot path, only loading takes the lock
+    private volatile String cachedUniqueId;
+    private volatile byte[] cachedUniqueIdBytes;
+
     public synchronized UniqueIdProvider init(final ReactApplicationContext context) {
         if (context == null) {
             throw new IllegalArgumentException("Context is required");
         }
 
         applicationContent = context.getApplicationContext();
-        keychain = new Keychain(context);
+        keychain = Keychain.sharedInstance(context);
+        // NOTE: the device id stays on its own keystore key, it's not moved to the shared envelope master key
+        keychain.setKeyPolicy(UNIQUE_DEVICE_ID_KEY, Keychain.KeyPolicy.PER_ALIAS);
 
         return this;
     }
@@ -70,27 +77,80 @@ public class UniqueIdProvider {
     }
 
     @Nullable
-    public synchronized byte[] getDeviceUniqueIdBytes() {
-        String deviceUniqueId = getDeviceUniqueId();
-
-        if (deviceUniqueId == null) {
-            return null;
+    public byte[] getDeviceUniqueIdBytes() {
+        byte[] uniqueIdBytes = cachedUniqueIdBytes;
+
+        if (uniqueIdBytes == null) {
+            synchronized (this) {
+                // another thread may have resolved the bytes while we were waiting for the lock
+                if (cachedUniqueIdBytes != null) {
+                    return cachedUniqueIdBytes.clone();
+                }
+
+                String deviceUniqueId = getDeviceUniqueId();
+
+                if (deviceUniqueId == null) {
+                    return null;
+                }
+
+                StringBuilder uniqueId = new StringBuilder(deviceUniqueId);
+                // in some android devices the leading zero's in android id can be omitted
+                // as android id is represented as hex we can add leading zero's
+                // NOTE: leading zeros are absent from the value; it's supposed to be a 64-bit value
+                while (uniqueId.length() < 16) {
+                    uniqueId.insert(0, "0");
+                }
+
+                uniqueIdBytes = Crypto.HexToBytes(uniqueId.toString());
+
+                // only cache the bytes if the id itself is cached
+                if (deviceUniqueId.equals(cachedUniqueId)) {
+                    cachedUniqueIdBytes = uniqueIdBytes;
+                }
+            }
         }
 
-        StringBuilder uniqueId = new StringBuilder(getDeviceUniqueId());
-        // in some android devices the leading zero's in android id can be omitted
-        // as android id is represented as hex we can add leading zero's
-        // NOTE: leading zeros are absent from the value; it's supposed to be a 64-bit value
-        while (uniqueId.length() < 16) {
-            uniqueId.insert(0, "0");
+        // callers get their own copy, so they cannot change the cached value
+        return uniqueIdBytes.clone();
+    }
+
+    /*
+     Forget the resolved unique id, should be called when the keychain is cleared
+     NOTE: next access will load or store the id in the keychain again
+    */
+    public synchronized void invalidate() {
+        cachedUniqueId = null;
+        cachedUniqueIdBytes = null;
+    }
+
+    @SuppressLint("HardwareIds")
+    @Nullable
+    public String getDeviceUniqueId() {
+        final String resolved = cachedUniqueId;
+
+        if (resolved != null) {
+            return resolved;
         }
 
-        return Crypto.HexToBytes(uniqueId.toString());
+        synchronized (this) {
+            if (cachedUniqueId != null) {
+                return cachedUniqueId;
+            }
+
+            final String uniqueId = resolveDeviceUniqueId();
+
+            // only keep the id in memory when it's stored in the keychain
+            if (uniqueId != null && keychain.itemExist(UNIQUE_DEVICE_ID_KEY)) {
+                cachedUniqueId = uniqueId;
+            }
+
+            return uniqueId;
+        }
     }
 
     @SuppressLint("HardwareIds")
     @Nullable
-    public synchronized String getDeviceUniqueId() {
+    private String resolveDeviceUniqueId() {
         // check if context is already initiated
         if (applicationContent == null) {
             throw new RuntimeException("Context is required");
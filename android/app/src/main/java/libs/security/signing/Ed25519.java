@@ -0,0 +1,48 @@
+package libs.security.signing;
+
+import androidx.annotation.NonNull;
+
+/*
+ Ed25519 signatures (RFC 8032)
+ NOTE: the private key is the 32 bytes seed, the message is signed as is without prehash
+
+ the curve arithmetic is done by BouncyCastle (rfc8032), which is constant time
+*/
+final class Ed25519 {
+    static final int PRIVATE_KEY_LENGTH = org.bouncycastle.math.ec.rfc8032.Ed25519.SECRET_KEY_SIZE;
+    private static final int PUBLIC_KEY_LENGTH = org.bouncycastle.math.ec.rfc8032.Ed25519.PUBLIC_KEY_SIZE;
+    private static final int SIGNATURE_LENGTH = org.bouncycastle.math.ec.rfc8032.Ed25519.SIGNATURE_SIZE;
+
+    private Ed25519() {
+    }
+
+    /*
+     32 bytes public key for the seed
+    */
+    @NonNull
+    static byte[] publicKey(@NonNull final byte[] seed) {
+        checkPrivateKey(seed);
+
+        final byte[] publicKey = new byte[PUBLIC_KEY_LENGTH];
+        org.bouncycastle.math.ec.rfc8032.Ed25519.generatePublicKey(seed, 0, publicKey, 0);
+        return publicKey;
+    }
+
+    /*
+     64 bytes signature R | S of the message
+    */
+    @NonNull
+    static byte[] sign(@NonNull final byte[] message, @NonNull final byte[] seed) {
+        checkPrivateKey(seed);
+
+        final byte[] signature = new byte[SIGNATURE_LENGTH];
+        org.bouncycastle.math.ec.rfc8032.Ed25519.sign(seed, 0, message, 0, message.length, signature, 0);
+        return signature;
+    }
+
+    private static void checkPrivateKey(@NonNull final byte[] seed) {
+        if (seed.length != PRIVATE_KEY_LENGTH) {
+            throw new IllegalArgumentException("Invalid private key length!");
+        }
+    }
+}
@@ -0,0 +1,115 @@
+package libs.security.signing;
+
+import androidx.annotation.NonNull;
+
+import org.bouncycastle.asn1.ASN1EncodableVector;
+import org.bouncycastle.asn1.ASN1Encoding;
+import org.bouncycastle.asn1.ASN1Integer;
+import org.bouncycastle.asn1.DERSequence;
+import org.bouncycastle.asn1.x9.X9ECParameters;
+import org.bouncycastle.crypto.digests.SHA256Digest;
+import org.bouncycastle.crypto.ec.CustomNamedCurves;
+import org.bouncycastle.crypto.params.ECDomainParameters;
+import org.bouncycastle.crypto.params.ECPrivateKeyParameters;
+import org.bouncycastle.crypto.signers.ECDSASigner;
+import org.bouncycastle.crypto.signers.HMacDSAKCalculator;
+import org.bouncycastle.math.ec.FixedPointCombMultiplier;
+
+import java.io.IOException;
+import java.math.BigInteger;
+import java.security.GeneralSecurityException;
+import java.security.SignatureException;
+
+/*
+ ECDSA over secp256k1 with deterministic nonce (RFC 6979, HMAC-SHA256)
+ NOTE: signatures are always canonical (low S) and DER encoded, as required by the XRP ledger
+ public keys are compressed (33 bytes)
+
+ the curve arithmetic is done by BouncyCastle, the custom curve implementation is constant time
+ and the generator multiplication uses the precomputed comb table
+*/
+final class Secp256k1 {
+    private static final X9ECParameters CURVE_PARAMS = CustomNamedCurves.getByName("secp256k1");
+    private static final ECDomainParameters CURVE = new ECDomainParameters(
+            CURVE_PARAMS.getCurve(),
+            CURVE_PARAMS.getG(),
+            CURVE_PARAMS.getN(),
+            CURVE_PARAMS.getH()
+    );
+
+    static final BigInteger N = CURVE.getN();
+    private static final BigInteger HALF_N = N.shiftRight(1);
+
+    static final int PRIVATE_KEY_LENGTH = 32;
+
+    private Secp256k1() {
+    }
+
+    /*
+     Compressed public key for the private key
+    */
+    @NonNull
+    static byte[] publicKey(@NonNull final byte[] privateKey) {
+        final BigInteger d = toPrivateScalar(privateKey);
+
+        return new FixedPointCombMultiplier().multiply(CURVE.getG(), d).getEncoded(true);
+    }
+
+    /*
+     Sign the 32 bytes hash, returns the DER encoded canonical signature
+    */
+    @NonNull
+    static byte[] sign(@NonNull final byte[] hash, @NonNull final byte[] privateKey) throws GeneralSecurityException {
+        if (hash.length != 32) {
+            throw new IllegalArgumentException("Invalid hash length!");
+        }
+
+        final BigInteger d = toPrivateScalar(privateKey);
+
+        final ECDSASigner signer = new ECDSASigner(new HMacDSAKCalculator(new SHA256Digest()));
+        signer.init(true, new ECPrivateKeyParameters(d, CURVE));
+
+        final BigInteger[] signature = signer.generateSignature(hash);
+        final BigInteger r = signature[0];
+        BigInteger s = signature[1];
+
+        // canonical signature, use the low S form
+        if (s.compareTo(HALF_N) > 0) {
+            s = N.subtract(s);
+        }
+
+        return toDER(r, s);
+    }
+
+    //region Implementation
+
+    @NonNull
+    private static BigInteger toPrivateScalar(@NonNull final byte[] privateKey) {
+        if (privateKey.length != PRIVATE_KEY_LENGTH) {
+            throw new IllegalArgumentException("Invalid private key length!");
+        }
+
+        final BigInteger d = new BigInteger(1, privateKey);
+        if (d.signum() == 0 || d.compareTo(N) >= 0) {
+            throw new IllegalArgumentException("Invalid private key!");
+        }
+        return d;
+    }
+
+    /*
+     SEQUENCE { INTEGER r, INTEGER s }
+    */
+    @NonNull
+    private static byte[] toDER(@NonNull final BigInteger r, @NonNull final BigInteger s) throws SignatureException {
+        final ASN1EncodableVector vector = new ASN1EncodableVector(2);
+        vector.add(new ASN1Integer(r));
+        vector.add(new ASN1Integer(s));
+
+        try {
+            return new DERSequence(vector).getEncoded(ASN1Encoding.DER);
+        } catch (IOException e) {
+            throw new SignatureException("Unable to encode the signature!", e);
+        }
+    }
+    //endregion
+}
@@ -0,0 +1,76 @@
+package libs.security.signing;
+
+import androidx.annotation.NonNull;
+
+import com.facebook.react.bridge.Arguments;
+import com.facebook.react.bridge.Promise;
+import com.facebook.react.bridge.ReactApplicationContext;
+import com.facebook.react.bridge.ReactContextBaseJavaModule;
+import com.facebook.react.bridge.ReactMethod;
+import com.facebook.react.bridge.WritableMap;
+import com.facebook.react.module.annotations.ReactModule;
+
+import libs.security.crypto.Crypto;
+import libs.security.vault.VaultManagerModule;
+
+/*
+ Sign transactions with the private key stored in the vault
+ NOTE: the vault is opened natively and the private key never crosses into JS,
+ only the signature and the public key of the signer are resolved
+
+ every sign opens the vault, so it pays the vault key derivation like Vault.open in JS did before,
+ the derived passcode hash is cached for a short time (PasscodeHashCache), so signing right after the
+ vault is unlocked only pays the AES decryption and the curve operation (see SigningTest for the numbers)
+*/
+@ReactModule(name = SigningModule.NAME)
+public class SigningModule extends ReactContextBaseJavaModule {
+    static final String NAME = "SigningModule";
+
+    private final VaultManagerModule vaultManager;
+
+    public SigningModule(ReactApplicationContext reactContext, VaultManagerModule vaultManager) {
+        super(reactContext);
+        this.vaultManager = vaultManager;
+    }
+
+    @NonNull
+    @Override
+    public String getName() {
+        return NAME;
+    }
+
+    private static WritableMap getSignResultMap(TransactionSigner.SignResult result) {
+        final WritableMap map = Arguments.createMap();
+        map.putString("signature", result.signature);
+        map.putString("publicKey", result.publicKey);
+        return map;
+    }
+
+    /*
+     Sign the encoded transaction (hex, without signing prefix)
+     NOTE: pass the signer account address for multi signing, null for single signing
+    */
+    @ReactMethod
+    public void signTransaction(String vaultName, String key, String encodedTransaction, String multiSignAccount, Promise promise) {
+        vaultManager.useVault(vaultName, key, privateKey -> {
+            TransactionSigner.SignResult result = TransactionSigner.sign(
+                    privateKey,
+                    Crypto.HexToBytes(encodedTransaction),
+                    multiSignAccount
+            );
+            promise.resolve(getSignResultMap(result));
+        }, promise);
+    }
+
+    /*
+     Transaction id of the signed transaction blob (hex)
+    */
+    @ReactMethod
+    public void hashSignedTransaction(String signedTransaction, Promise promise) {
+        try {
+            promise.resolve(TransactionSigner.hashSignedTransaction(Crypto.HexToBytes(signedTransaction)));
+        } catch (Exception e) {
+            promise.reject("-1", e.getMessage());
+        }
+    }
+}
@@ -0,0 +1,208 @@
+package libs.security.signing;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+import java.math.BigInteger;
+import java.security.GeneralSecurityException;
+import java.util.Arrays;
+import java.util.Locale;
+
+import libs.security.crypto.Crypto;
+
+/*
+ Sign encoded XRPL transactions with the private key stored in the vault
+ NOTE: the private key is the hex string created by the account derivation,
+ "ED" prefixed for ed25519 keys, "00" prefixed (or plain 32 bytes) for secp256k1 keys
+
+ single sign:  STX prefix | encoded transaction
+ multi sign:   SMT prefix | encoded transaction | signer account id
+ id:           SHA-512Half(TXN prefix | signed transaction)
+
+ secp256k1 signs the SHA-512Half of the signing data, ed25519 signs the signing data itself
+*/
+public class TransactionSigner {
+    static final byte[] HASH_PREFIX_TRANSACTION_SIGN = {0x53, 0x54, 0x58, 0x00};
+    static final byte[] HASH_PREFIX_TRANSACTION_MULTISIGN = {0x53, 0x4D, 0x54, 0x00};
+    static final byte[] HASH_PREFIX_TRANSACTION_ID = {0x54, 0x58, 0x4E, 0x00};
+
+    private static final String ED25519_PREFIX = "ED";
+    private static final String SECP256K1_PREFIX = "00";
+
+    private static final String ACCOUNT_ALPHABET = "rpshnaf39wBUDNEGHJKLM4PQRST7VWXYZ2bcdeCg65jkm8oFqi1tuvAxyz";
+    private static final int ACCOUNT_ID_LENGTH = 20;
+    private static final BigInteger BASE = BigInteger.valueOf(58);
+
+    public static class SignResult {
+        @NonNull
+        public final String signature;
+        @NonNull
+        public final String publicKey;
+
+        SignResult(@NonNull final byte[] signature, @NonNull final String publicKey) {
+            this.signature = toHex(signature);
+            this.publicKey = publicKey;
+        }
+    }
+
+    /*
+     Sign the encoded transaction (without signing prefix)
+     NOTE: with the signer account provided the transaction is signed for multi signing
+    */
+    @NonNull
+    public static SignResult sign(@NonNull final String privateKey,
+                                  @NonNull final byte[] encodedTransaction,
+                                  @Nullable final String multiSignAccount) throws GeneralSecurityException {
+        final byte[] signingData = multiSignAccount == null
+                ? concat(HASH_PREFIX_TRANSACTION_SIGN, encodedTransaction)
+                : concat(HASH_PREFIX_TRANSACTION_MULTISIGN, encodedTransaction, decodeAccountID(multiSignAccount));
+
+        return signData(privateKey, signingData);
+    }
+
+    /*
+     Transaction id (hash) of the signed transaction blob
+     id = SHA-512Half(TXN prefix | signed transaction)
+    */
+    @NonNull
+    public static String hashSignedTransaction(@NonNull final byte[] signedTransaction) throws GeneralSecurityException {
+        return toHex(Crypto.SHA512Half(concat(HASH_PREFIX_TRANSACTION_ID, signedTransaction)));
+    }
+
+    /*
+     Public key for the private key, hex encoded as used in the ledger
+    */
+    @NonNull
+    public static String derivePublicKey(@NonNull final String privateKey) throws GeneralSecurityException {
+        final byte[] keyBytes = toKeyBytes(privateKey);
+
+        try {
+            if (isEd25519(privateKey)) {
+                return ED25519_PREFIX + toHex(Ed25519.publicKey(keyBytes));
+            }
+            return toHex(Secp256k1.publicKey(keyBytes));
+        } finally {
+            Arrays.fill(keyBytes, (byte) 0);
+        }
+    }
+
+    @NonNull
+    static SignResult signData(@NonNull final String privateKey, @NonNull final byte[] signingData)
+            throws GeneralSecurityException {
+        final byte[] keyBytes = toKeyBytes(privateKey);
+
+        try {
+            if (isEd25519(privateKey)) {
+                return new SignResult(
+                        Ed25519.sign(signingData, keyBytes),
+                        ED25519_PREFIX + toHex(Ed25519.publicKey(keyBytes))
+                );
+            }
+
+            return new SignResult(
+                    Secp256k1.sign(Crypto.SHA512Half(signingData), keyBytes),
+                    toHex(Secp256k1.publicKey(keyBytes))
+            );
+        } finally {
+            Arrays.fill(keyBytes, (byte) 0);
+        }
+    }
+
+    /*
+     Decode the classic address (base58 with the ripple alphabet) to the 20 bytes account id
+    */
+    @NonNull
+    static byte[] decodeAccountID(@NonNull final String address) throws GeneralSecurityException {
+        BigInteger value = BigInteger.ZERO;
+        int leadingZeros = 0;
+
+        for (int i = 0; i < address.length(); i++) {
+            final int digit = ACCOUNT_ALPHABET.indexOf(address.charAt(i));
+            if (digit < 0) {
+                throw new IllegalArgumentException("Invalid account address!");
+            }
+            if (digit == 0 && value.signum() == 0) {
+                leadingZeros++;
+            }
+            value = value.multiply(BASE).add(BigInteger.valueOf(digit));
+        }
+
+        // version (1) | account id (20) | checksum (4)
+        final byte[] magnitude = value.signum() == 0 ? new byte[0] : value.toByteArray();
+        final int offset = magnitude.length > 0 && magnitude[0] == 0 ? 1 : 0;
+        final int length = leadingZeros + magnitude.length - offset;
+
+        if (length != 1 + ACCOUNT_ID_LENGTH + 4) {
+            throw new IllegalArgumentException("Invalid account address!");
+        }
+
+        final byte[] decoded = new byte[length];
+        System.arraycopy(magnitude, offset, decoded, leadingZeros, magnitude.length - offset);
+
+        // account addresses use version 0, which is the leading "r"
+        if (decoded[0] != 0) {
+            throw new IllegalArgumentException("Invalid account address!");
+        }
+
+        final byte[] payload = Arrays.copyOf(decoded, 1 + ACCOUNT_ID_LENGTH);
+        final byte[] checksum = Crypto.SHA256Hash(Crypto.SHA256Hash(payload));
+
+        for (int i = 0; i < 4; i++) {
+            if (checksum[i] != decoded[1 + ACCOUNT_ID_LENGTH + i]) {
+                throw new IllegalArgumentException("Invalid account address checksum!");
+            }
+        }
+
+        return Arrays.copyOfRange(payload, 1, payload.length);
+    }
+
+    //region Implementation
+
+    private static boolean isEd25519(@NonNull final String privateKey) {
+        return privateKey.length() == 66 && privateKey.regionMatches(true, 0, ED25519_PREFIX, 0, 2);
+    }
+
+    @NonNull
+    private static byte[] toKeyBytes(@NonNull final String privateKey) {
+        final String key;
+
+        if (privateKey.length() == 66
+                && (isEd25519(privateKey) || privateKey.startsWith(SECP256K1_PREFIX))) {
+            key = privateKey.substring(2);
+        } else if (privateKey.length() == 64) {
+            key = privateKey;
+        } else {
+            throw new IllegalArgumentException("Invalid private key!");
+        }
+
+        for (int i = 0; i < key.length(); i++) {
+            if (Character.digit(key.charAt(i), 16) < 0) {
+                throw new IllegalArgumentException("Invalid private key!");
+            }
+        }
+
+        return Crypto.HexToBytes(key);
+    }
+
+    @NonNull
+    private static String toHex(@NonNull final byte[] data) {
+        return Crypto.BytesToHex(data).toUpperCase(Locale.ROOT);
+    }
+
+    @NonNull
+    private static byte[] concat(@NonNull final byte[]... parts) {
+        int length = 0;
+        for (byte[] part : parts) {
+            length += part.length;
+        }
+
+        final byte[] result = new byte[length];
+        int offset = 0;
+        for (byte[] part : parts) {
+            System.arraycopy(part, 0, result, offset, part.length);
+            offset += part.length;
+        }
+        return result;
+    }
+    //endregion
+}
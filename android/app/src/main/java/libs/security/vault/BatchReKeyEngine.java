@@ -0,0 +1,137 @@
+package libs.security.vault;
+
+import androidx.annotation.NonNull;
+
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/*
+ Re-key a batch of vaults on a bounded worker pool
+ NOTE: the work is split in two phases
+   1. open all vaults with the old key, nothing will be touched if any of them fails
+   2. re-key every vault in its own pipeline, keeping the recovery vault order for each vault
+      (create recovery -> purge vault -> create vault -> purge recovery), every step is journaled
+*/
+class BatchReKeyEngine {
+    static final String STAGE_OPEN = "OPEN";
+    static final String STAGE_REKEY = "REKEY";
+
+    interface ProgressListener {
+        void onProgress(@NonNull final String stage, @NonNull final String vaultName, final int completed, final int total);
+    }
+
+    private final VaultManagerModule vaultManager;
+    private final ProgressListener progressListener;
+
+    BatchReKeyEngine(@NonNull final VaultManagerModule vaultManager, final ProgressListener progressListener) {
+        this.vaultManager = vaultManager;
+        this.progressListener = progressListener;
+    }
+
+    public boolean reKey(@NonNull final List<String> vaultNames, @NonNull final String oldKey, @NonNull final String newKey)
+            throws Exception {
+        // remove any duplicate, we don't want two workers touching the same vault
+        final List<String> vaults = new ArrayList<>(new LinkedHashSet<>(vaultNames));
+
+        if (vaults.isEmpty()) {
+            return true;
+        }
+
+        final ThreadPoolExecutor executor = createExecutor(vaults.size());
+
+        try {
+            final Map<String, String> vaultsClearText = new ConcurrentHashMap<>();
+
+            // try to open all vaults with provided old key and get clear text
+            final AtomicInteger opened = new AtomicInteger(0);
+            final List<Callable<Void>> openTasks = new ArrayList<>();
+            for (final String vaultName : vaults) {
+                openTasks.add(() -> {
+                    vaultsClearText.put(vaultName, vaultManager.openVault(vaultName, oldKey, false));
+                    notifyProgress(STAGE_OPEN, vaultName, opened.incrementAndGet(), vaults.size());
+                    return null;
+                });
+            }
+            runAll(executor, openTasks);
+
+            // re-key every vault in its own pipeline
+            final AtomicInteger reKeyed = new AtomicInteger(0);
+            final List<Callable<Void>> reKeyTasks = new ArrayList<>();
+            for (final String vaultName : vaults) {
+                reKeyTasks.add(() -> {
+                    vaultManager.reKeyVault(vaultName, vaultsClearText.get(vaultName), oldKey, newKey);
+                    notifyProgress(STAGE_REKEY, vaultName, reKeyed.incrementAndGet(), vaults.size());
+                    return null;
+                });
+            }
+            runAll(executor, reKeyTasks);
+        } finally {
+            executor.shutdownNow();
+        }
+
+        return true;
+    }
+
+    /*
+     Run all tasks and wait for them to finish
+     NOTE: we never cancel a running task as it may be in the middle of a vault pipeline,
+     the first failure will be thrown after all tasks are settled
+    */
+    private static void runAll(@NonNull final ThreadPoolExecutor executor, @NonNull final List<Callable<Void>> tasks)
+            throws Exception {
+        final List<Future<Void>> futures = executor.invokeAll(tasks);
+
+        Exception failure = null;
+
+        for (Future<Void> future : futures) {
+            try {
+                future.get();
+            } catch (ExecutionException e) {
+                if (failure == null) {
+                    failure = e.getCause() instanceof Exception ? (Exception) e.getCause() : e;
+                }
+            }
+        }
+
+        if (failure != null) {
+            throw failure;
+        }
+    }
+
+    @NonNull
+    private static ThreadPoolExecutor createExecutor(final int tasksCount) {
+        // bound the pool to the available cores, there is no point of more workers as the work is CPU bound
+        final int poolSize = Math.max(1, Math.min(tasksCount, Runtime.getRuntime().availableProcessors()));
+
+        final AtomicInteger threadCount = new AtomicInteger(0);
+
+        return new ThreadPoolExecutor(
+                poolSize,
+                poolSize,
+                0L,
+                TimeUnit.MILLISECONDS,
+                new LinkedBlockingQueue<>(),
+                runnable -> {
+                    Thread thread = new Thread(runnable, "VaultReKey-" + threadCount.incrementAndGet());
+                    thread.setDaemon(true);
+                    return thread;
+                }
+        );
+    }
+
+    private void notifyProgress(@NonNull final String stage, @NonNull final String vaultName, final int completed, final int total) {
+        if (progressListener != null) {
+            progressListener.onProgress(stage, vaultName, completed, total);
+        }
+    }
+}
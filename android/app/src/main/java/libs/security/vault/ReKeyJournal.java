@@ -0,0 +1,79 @@
+package libs.security.vault;
+
+import android.content.Context;
+import android.content.SharedPreferences;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.StringDef;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/*
+ Write-ahead journal of re-key operations, stored next to the keychain prefs storage
+ NOTE: every phase is committed synchronously BEFORE we move to the next step,
+ so after a crash we know exactly which step was interrupted for every vault
+
+ journal = vaultName -> phase
+*/
+class ReKeyJournal {
+    static final String JOURNAL_DATA = "RN_KEYCHAIN_JOURNAL";
+
+    @StringDef({Phase.STARTED, Phase.RECOVERY_CREATED, Phase.VAULT_PURGED, Phase.VAULT_CREATED})
+    @interface Phase {
+        // re-key started, the vault is not touched yet
+        String STARTED = "STARTED";
+        // recovery vault created with the old key
+        String RECOVERY_CREATED = "RECOVERY_CREATED";
+        // original vault is (being) purged, only the recovery vault holds the data
+        String VAULT_PURGED = "VAULT_PURGED";
+        // vault created with the new key, only the recovery vault needs to be cleaned
+        String VAULT_CREATED = "VAULT_CREATED";
+    }
+
+    @NonNull
+    private final SharedPreferences prefs;
+
+    ReKeyJournal(@NonNull final Context context) {
+        this.prefs = context.getSharedPreferences(JOURNAL_DATA, Context.MODE_PRIVATE);
+    }
+
+    /*
+     Record the phase for the vault
+     NOTE: uses commit() instead of apply() as we cannot continue before the phase is on disk
+    */
+    void record(@NonNull final String vaultName, @Phase @NonNull final String phase) throws Exception {
+        if (!prefs.edit().putString(vaultName, phase).commit()) {
+            throw new Exception("UNABLE_TO_WRITE_REKEY_JOURNAL");
+        }
+    }
+
+    /*
+     Remove the vault from journal after the re-key is finished or recovered
+    */
+    void complete(@NonNull final String vaultName) throws Exception {
+        if (!prefs.edit().remove(vaultName).commit()) {
+            throw new Exception("UNABLE_TO_WRITE_REKEY_JOURNAL");
+        }
+    }
+
+    /*
+     Get all interrupted re-key operations
+    */
+    @NonNull
+    Map<String, String> getPending() {
+        final Map<String, String> pending = new HashMap<>();
+
+        for (Map.Entry<String, ?> entry : prefs.getAll().entrySet()) {
+            if (entry.getValue() instanceof String) {
+                pending.put(entry.getKey(), (String) entry.getValue());
+            }
+        }
+
+        return pending;
+    }
+
+    void clear() {
+        prefs.edit().clear().commit();
+    }
+}
@@ -1,8 +1,10 @@
 package libs.security.vault;
 
 import android.text.TextUtils;
+import android.util.Log;
 
 import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
 
 import com.facebook.react.bridge.Arguments;
 import com.facebook.react.bridge.Promise;
@@ -10,17 +12,41 @@ import com.facebook.react.bridge.ReactApplicationContext;
 import com.facebook.react.bridge.ReactContextBaseJavaModule;
 import com.facebook.react.bridge.ReactMethod;
 import com.facebook.react.bridge.ReadableArray;
+import com.facebook.react.bridge.ReadableMap;
+import com.facebook.react.bridge.ReadableMapKeySetIterator;
+import com.facebook.react.bridge.WritableArray;
 import com.facebook.react.bridge.WritableMap;
 import com.facebook.react.module.annotations.ReactModule;
-
+import com.facebook.react.modules.core.DeviceEventManagerModule;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
 import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
 import java.util.Map;
 import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import libs.security.crypto.Crypto;
+import libs.security.providers.UniqueIdProvider;
 import libs.security.vault.cipher.Cipher;
+import libs.security.vault.cipher.CipherStreamAesGcm;
+import libs.security.vault.cipher.KdfCalibrator;
+import libs.security.vault.cipher.PasscodeHashCache;
+import libs.security.vault.storage.FileKeychainStore;
 import libs.security.vault.storage.Keychain;
+import libs.security.vault.storage.cipherStorage.CipherStorage.BinaryDecryptionResult;
 
 @ReactModule(name = libs.security.vault.VaultManagerModule.NAME)
 public class VaultManagerModule extends ReactContextBaseJavaModule {
@@ -28,13 +54,51 @@ public class VaultManagerModule extends ReactContextBaseJavaModule {
     public static final String STORAGE_ENCRYPTION_KEY = "xumm-realm-key";
 
     static final String NAME = "VaultManagerModule";
+    private static final String LOG_TAG = VaultManagerModule.class.getSimpleName();
+    static final String REKEY_BATCH_PROGRESS_EVENT = "VaultManager.reKeyBatchProgress";
+    static final String MIGRATION_PROGRESS_EVENT = "VaultManager.migrationProgress";
+    // file exports do not touch any vault, they run on their own queue
+    static final String FILE_EXPORT_QUEUE = "VaultManager.fileExport";
+    // imported files end up in the keychain, so they are limited to what we store in a vault
+    static final long MAX_IMPORT_FILE_SIZE = 1024 * 1024;
+    // version header of keychain entries which are not readable as a vault, see VaultMigrationService
+    static final int NOT_A_VAULT_VERSION = -1;
     private final Keychain keychain;
+    private final ReKeyJournal reKeyJournal;
+    private final VaultTaskExecutor taskExecutor;
+    private final VaultMigrationService migrationService;
 
     public VaultManagerModule(ReactApplicationContext reactContext) {
         super(reactContext);
 
-        // initiate keychain
-        keychain = new Keychain(reactContext);
+        // application wide keychain
+        // NOTE: new vaults use data keys wrapped by a single keystore master key, so creating a vault
+        // does not need a keystore key generation, existing vaults keep their per alias keys until rewritten
+        keychain = Keychain.sharedInstance(reactContext);
+        // NOTE: the realm encryption key stays on its own keystore key, only vaults use the envelope policy
+        keychain.setKeyPolicy(STORAGE_ENCRYPTION_KEY, Keychain.KeyPolicy.PER_ALIAS);
+
+        // vault operations run on their own workers, not on the native modules thread
+        taskExecutor = new VaultTaskExecutor();
+
+        reKeyJournal = new ReKeyJournal(reactContext);
+
+        // migrate vaults with older ciphers when JS provides the vault keys
+        migrationService = new VaultMigrationService(this, keychain, taskExecutor, (vaultName, status) -> {
+            final WritableMap progress = getMigrationStatusMap(status);
+            progress.putString("vault", vaultName);
+            sendEvent(MIGRATION_PROGRESS_EVENT, progress);
+        });
+
+        // load or calibrate the device kdf profile before the first vault is created
+        KdfCalibrator.sharedInstance().init(reactContext);
+
+        // finish or roll back any interrupted re-key in background before vaults are used
+        // NOTE: scheduled last, the task can start right away and should see a fully constructed module
+        taskExecutor.executeGlobal(
+                this::recoverInterruptedReKeys,
+                e -> Log.e(LOG_TAG, "Unable to recover interrupted re-keys", e)
+        );
     }
 
     @NonNull
@@ -44,6 +108,16 @@ public class VaultManagerModule extends ReactContextBaseJavaModule {
     }
 
 
+    /*
+     Stop the vault workers when the catalyst instance is destroyed
+     NOTE: queued tasks still run, new tasks are rejected
+    */
+    @Override
+    public void invalidate() {
+        super.invalidate();
+        taskExecutor.shutdown();
+    }
+
     @Override
     public Map<String, Object> getConstants() {
         final Map<String, Object> constants = new HashMap<>();
@@ -51,20 +125,50 @@ public class VaultManagerModule extends ReactContextBaseJavaModule {
         return constants;
     }
 
-    private static void rejectWithError(Promise promise, Exception exception) {
+    private static String getErrorMessage(Exception exception) {
         StringBuilder error = new StringBuilder();
         error.append(exception.getMessage());
         if (exception.getCause() != null) {
             error.append(": ");
             error.append(exception.getCause().toString());
         }
-        promise.reject("-1", error.toString());
+        return error.toString();
+    }
+
+    private static void rejectWithError(Promise promise, Exception exception) {
+        promise.reject("-1", getErrorMessage(exception));
     }
 
-    private static String getRecoveryVaultName(@NonNull final String vaultName) {
+    static String getRecoveryVaultName(@NonNull final String vaultName) {
         return String.format("%s%s", vaultName, RECOVERY_SUFFIX);
     }
 
+    private static WritableMap getMigrationStatusMap(VaultMigrationService.Status status) {
+        final WritableMap result = Arguments.createMap();
+        result.putInt("pending", status.pending);
+        result.putInt("total", status.total);
+        result.putInt("migrated", status.migrated);
+        result.putInt("failed", status.failed);
+        result.putBoolean("running", status.running);
+        result.putInt("cipher_version", Cipher.getDefaultCipherVersion());
+
+        final WritableArray migratedVaults = Arguments.createArray();
+        for (String vaultName : status.migratedVaults) {
+            migratedVaults.pushString(vaultName);
+        }
+        result.putArray("migrated_vaults", migratedVaults);
+
+        return result;
+    }
+
+    private void sendEvent(String event, Object payload) {
+        if (getReactApplicationContext().hasActiveReactInstance()) {
+            getReactApplicationContext()
+                    .getJSModule(DeviceEventManagerModule.RCTDeviceEventEmitter.class)
+                    .emit(event, payload);
+        }
+    }
+
 
     //region VaultManager
 
@@ -98,7 +202,15 @@ public class VaultManagerModule extends ReactContextBaseJavaModule {
         }
 
         // store vault in the keychain
-        keychain.setItem(vaultName, derivedKeyString, cipher);
+        // NOTE: envelope ciphers are stored as raw bytes, without the Base64 text encoding
+        final byte[] envelope = (byte[]) cipherResult.get("envelope");
+        if (envelope != null) {
+            keychain.setItem(vaultName, derivedKeyString, envelope);
+        } else {
+            keychain.setItem(vaultName, derivedKeyString, cipher);
+        }
+        // store the cipher version as plain header, so we can check for migrations without decryption
+        keychain.setItemVersion(vaultName, derivedKeys.version);
 
         // try to open the vault once before passing the result
         // with this we make sure we are able to access the data
@@ -123,12 +235,12 @@ public class VaultManagerModule extends ReactContextBaseJavaModule {
         final String recoveryVaultName = VaultManagerModule.getRecoveryVaultName(vaultName);
 
         // try to get vault with provided  name
-        Map<String, String> item = keychain.getItem(vaultName);
+        BinaryDecryptionResult item = keychain.getBinaryItem(vaultName);
 
         // if no item found an recoverable, check if recovery vault available
         if (item == null && recoverable) {
             // try to fetch recovery vault
-            item = keychain.getItem(recoveryVaultName);
+            item = keychain.getBinaryItem(recoveryVaultName);
             // we were able to fetch from recovery vault
             if (item != null) {
                 isVaultRecovered = true;
@@ -136,15 +248,15 @@ public class VaultManagerModule extends ReactContextBaseJavaModule {
         }
 
         // no item found in the storage for the given name, reject
-        if (item == null || item.get("password") == null || item.get("username") == null) {
+        if (item == null || item.password == null || item.username == null) {
             throw new Exception("VAULT_NOT_EXIST");
         }
 
         // decrypt the Keychain data
         final String clearText = Cipher.decrypt(
-                Objects.requireNonNull(item.get("password")),
+                item.password,
                 key,
-                Objects.requireNonNull(item.get("username"))
+                new String(item.username, StandardCharsets.UTF_8)
         );
 
         // check if clear text is not empty
@@ -167,6 +279,64 @@ public class VaultManagerModule extends ReactContextBaseJavaModule {
         return clearText;
     }
 
+    public interface VaultConsumer {
+        void accept(@NonNull final String clearText) throws Exception;
+    }
+
+    /*
+     Open the vault on its queue and hand the clear data to the consumer
+     NOTE: lets other native modules use the vault data without passing it through JS,
+     the promise is rejected if the vault cannot be opened or the consumer fails
+    */
+    public void useVault(@NonNull final String vaultName, @NonNull final String key,
+                         @NonNull final VaultConsumer consumer, @NonNull final Promise promise) {
+        taskExecutor.execute(vaultName, () -> {
+            final String clearText = openVault(vaultName, key, true);
+            consumer.accept(clearText);
+        }, e -> rejectWithError(promise, e));
+    }
+
+    interface OpenVaultsListener {
+        void onComplete(@NonNull final Map<String, String> results, @NonNull final Map<String, Exception> errors);
+    }
+
+    /*
+     Open multiple vaults with the same key in one go
+     NOTE: every vault is opened on its own queue so vaults are decrypted in parallel,
+     a failing vault does not affect the others and is reported in the errors
+     vaults sharing the same salt will only derive the passcode hash once
+    */
+    public void openVaults(@NonNull final List<String> vaultNames, @NonNull final String key, @NonNull final OpenVaultsListener listener) {
+        // remove any duplicate, no need to open the same vault twice
+        final Set<String> vaults = new LinkedHashSet<>(vaultNames);
+
+        final Map<String, String> results = new ConcurrentHashMap<>();
+        final Map<String, Exception> errors = new ConcurrentHashMap<>();
+
+        if (vaults.isEmpty()) {
+            listener.onComplete(results, errors);
+            return;
+        }
+
+        final AtomicInteger remaining = new AtomicInteger(vaults.size());
+        final Runnable onVaultDone = () -> {
+            // last one finished, report back
+            if (remaining.decrementAndGet() == 0) {
+                listener.onComplete(results, errors);
+            }
+        };
+
+        for (final String vaultName : vaults) {
+            taskExecutor.execute(vaultName, () -> {
+                results.put(vaultName, openVault(vaultName, key, true));
+                onVaultDone.run();
+            }, e -> {
+                errors.put(vaultName, e);
+                onVaultDone.run();
+            });
+        }
+    }
+
     /*
     Re-key current vault with new key
     NOTE: in case of migration required this will create new vault with latest cipher
@@ -176,29 +346,137 @@ public class VaultManagerModule extends ReactContextBaseJavaModule {
         // try to open the vault with provided old key and get clear text
         final String clearText = openVault(vaultName, oldKey, false);
 
+        reKeyVault(vaultName, clearText, oldKey, newKey);
+
+        return true;
+    }
+
+    /*
+    Re-key already opened vault with new key
+    NOTE: every step is recorded in the journal, so an interrupted re-key can be finished or rolled back on next start
+    */
+    void reKeyVault(@NonNull final String vaultName,
+                    @NonNull final String clearText,
+                    @NonNull final String oldKey,
+                    @NonNull final String newKey) throws Exception {
         // try to create the new vault under a temp recovery name with the old key
         // with this we will make sure we are able to recover the key in case of failure
         final String recoveryVaultName = VaultManagerModule.getRecoveryVaultName(vaultName);
 
-        // check if a recovery vault is already exist, then remove it
-        // NOTE: removing recovery vault is safe as we could open the main vault
-        if(vaultExist(recoveryVaultName)){
+        reKeyJournal.record(vaultName, ReKeyJournal.Phase.STARTED);
+
+        try {
+            // check if a recovery vault is already exist, then remove it
+            // NOTE: removing recovery vault is safe as we could open the main vault
+            if (vaultExist(recoveryVaultName)) {
+                purgeVault(recoveryVaultName);
+            }
+
+            // create the recovery vault with the old key
+            createVault(recoveryVaultName, clearText, oldKey);
+            reKeyJournal.record(vaultName, ReKeyJournal.Phase.RECOVERY_CREATED);
+
+            // after we made sure we can store the data in a safe way, purge old vault
+            // NOTE: recorded before purging, from here on the vault can only be rolled back from recovery vault
+            reKeyJournal.record(vaultName, ReKeyJournal.Phase.VAULT_PURGED);
+            purgeVault(vaultName);
+
+            // create the vault again with the new key
+            createVault(vaultName, clearText, newKey);
+            reKeyJournal.record(vaultName, ReKeyJournal.Phase.VAULT_CREATED);
+
+            // finally remove the created recovery vault
             purgeVault(recoveryVaultName);
+        } catch (Exception e) {
+            // bring the vault back to a consistent state right away, don't wait for next start
+            try {
+                recoverInterruptedReKey(vaultName, reKeyJournal.getPending().get(vaultName), null);
+            } catch (Exception ignored) {
+                // journal entry is kept, will try again on next start
+            }
+            throw e;
         }
 
-        // create the recovery vault with the old key
-        createVault(recoveryVaultName, clearText, oldKey);
+        // make sure the new vault is on disk before we forget about the re-key
+        // NOTE: inside a batch this is where the grouped writes become durable
+        keychain.sync();
 
-        // after we made sure we can store the data in a safe way, purge old vault
-        purgeVault(vaultName);
+        reKeyJournal.complete(vaultName);
+    }
 
-        // create the vault again with the new key
-        createVault(vaultName, clearText, newKey);
+    /*
+    Finish or roll back re-key operations which are interrupted by a crash or kill
+    NOTE: this runs in a single pass on start and does not need the passcode,
+    vaults are restored by copying the recovery vault keychain item without decrypting the vault
+    */
+    void recoverInterruptedReKeys() {
+        final Map<String, String> pending = reKeyJournal.getPending();
 
-        // finally remove the created recovery vault
-        purgeVault(recoveryVaultName);
+        if (pending.isEmpty()) {
+            return;
+        }
 
-        return true;
+        // read all recovery vaults at once, keystore decryption of the items runs in parallel
+        Map<String, BinaryDecryptionResult> recoveryItems = null;
+        try {
+            final List<String> recoveryVaultNames = new ArrayList<>();
+            for (String vaultName : pending.keySet()) {
+                recoveryVaultNames.add(VaultManagerModule.getRecoveryVaultName(vaultName));
+            }
+            recoveryItems = keychain.getBinaryItems(recoveryVaultNames);
+        } catch (Exception e) {
+            // fall back to reading the recovery vaults one by one
+            Log.w(LOG_TAG, "Unable to read recovery vaults in batch", e);
+        }
+
+        for (Map.Entry<String, String> entry : pending.entrySet()) {
+            try {
+                recoverInterruptedReKey(entry.getKey(), entry.getValue(), recoveryItems);
+            } catch (Exception e) {
+                // keep the journal entry, we will try again on next start
+                // NOTE: openVault with recoverable will still be able to use the recovery vault
+                Log.e(LOG_TAG, "Unable to recover interrupted re-key", e);
+            }
+        }
+    }
+
+    private void recoverInterruptedReKey(@NonNull final String vaultName,
+                                         @NonNull final String phase,
+                                         @Nullable final Map<String, BinaryDecryptionResult> recoveryItems) throws Exception {
+        final String recoveryVaultName = VaultManagerModule.getRecoveryVaultName(vaultName);
+
+        // original vault was purged and new vault may be created partially, roll back from recovery vault
+        // NOTE: for other phases the vault itself is in a good state (old or new key), unless the keychain
+        // writes after the journal phase were not synced yet, then the vault may be missing while recovery exists
+        if (ReKeyJournal.Phase.VAULT_PURGED.equals(phase) || !vaultExist(vaultName)) {
+            // NOTE: batch read result only contains the recovery vaults which exist
+            // the item is copied as bytes, so raw envelopes are kept as they are
+            final BinaryDecryptionResult recoveryItem = recoveryItems != null
+                    ? recoveryItems.get(recoveryVaultName)
+                    : keychain.getBinaryItem(recoveryVaultName);
+            if (recoveryItem != null) {
+                if (vaultExist(vaultName)) {
+                    purgeVault(vaultName);
+                }
+                keychain.setItem(
+                        vaultName,
+                        new String(recoveryItem.username, StandardCharsets.UTF_8),
+                        recoveryItem.password
+                );
+
+                final Integer recoveryVersion = keychain.getItemVersion(recoveryVaultName);
+                if (recoveryVersion != null) {
+                    keychain.setItemVersion(vaultName, recoveryVersion);
+                }
+            }
+        }
+
+        // recovery vault is not needed anymore as long as we have the vault
+        if (vaultExist(recoveryVaultName) && vaultExist(vaultName)) {
+            purgeVault(recoveryVaultName);
+        }
+
+        reKeyJournal.complete(vaultName);
     }
 
    /*
@@ -207,50 +485,125 @@ public class VaultManagerModule extends ReactContextBaseJavaModule {
    */
     public boolean reKeyBatchVaults(@NonNull final ArrayList<String> vaultNames, @NonNull final String oldKey, @NonNull final String newKey)
             throws Exception {
+        // run the re-key on the worker pool and report the progress to the JS
+        final BatchReKeyEngine engine = new BatchReKeyEngine(this, (stage, vaultName, completed, total) -> {
+            final WritableMap progress = Arguments.createMap();
+            progress.putString("stage", stage);
+            progress.putString("vault", vaultName);
+            progress.putInt("completed", completed);
+            progress.putInt("total", total);
+            sendEvent(REKEY_BATCH_PROGRESS_EVENT, progress);
+        });
+
+        // group keychain writes of all vaults, every vault is synced once before its journal entry is completed
+        // NOTE: runs as a global task, so no other keychain writes are mixed in the batch
+        keychain.beginBatch();
 
-        Map<String, String> vaultsClearText = new HashMap<>();
+        try {
+            return engine.reKey(vaultNames, oldKey, newKey);
+        } finally {
+            keychain.commitBatch();
+        }
+    }
 
-        // try to open all vaults with provided old key and get clear text
-        for (String vaultName: vaultNames){
-            String clearText = openVault(vaultName, oldKey, false);
-            vaultsClearText.put(vaultName, clearText);
+
+    /*
+    Resolve the path of a file for export/import, only files in the cache or files directory of the app are allowed
+    NOTE: the canonical path is checked, so relative segments and symlinks can not point outside of these directories
+    */
+    @NonNull
+    private File getAppFile(@NonNull final String path) throws Exception {
+        final File file = new File(path).getCanonicalFile();
+
+        for (File directory : new File[]{
+                getReactApplicationContext().getCacheDir(),
+                getReactApplicationContext().getFilesDir()
+        }) {
+            if (directory != null && file.getPath().startsWith(directory.getCanonicalPath() + File.separator)) {
+                return file;
+            }
         }
 
-        // try to create the new vault under a temp recovery name with the old key for all vaults
-        // with this we will make sure we are able to recover the key in case of failure
-        for (String vaultName: vaultNames){
-            // check if a recovery vault is already exist, then remove it
-            // NOTE: removing recovery vault is safe as we could open the main vault
-            if(vaultExist(VaultManagerModule.getRecoveryVaultName(vaultName))){
-                purgeVault(VaultManagerModule.getRecoveryVaultName(vaultName));
+        throw new Exception("INVALID_FILE_PATH");
+    }
+
+    /*
+    Encrypt a file (backup, export bundle) with the provided key to the output path
+    NOTE: the file is encrypted in chunks, so memory use does not grow with the file size
+    the key is not bound to this device and the output can be imported on other devices
+    input and output should be in the cache or files directory of the app
+    */
+    public boolean exportVaultFile(@NonNull final String inputPath, @NonNull final String outputPath, @NonNull final String key)
+            throws Exception {
+        final File inputFile = getAppFile(inputPath);
+        final File outputFile = getAppFile(outputPath);
+
+        if (!inputFile.isFile()) {
+            throw new Exception("FILE_NOT_EXIST");
+        }
+
+        writeFileAtomic(outputFile, output -> {
+            try (InputStream input = new BufferedInputStream(new FileInputStream(inputFile))) {
+                CipherStreamAesGcm.encrypt(input, output, key);
             }
-            createVault(
-                    VaultManagerModule.getRecoveryVaultName(vaultName),
-                    vaultsClearText.get(vaultName),
-                    oldKey
-            );
+        });
+
+        return true;
+    }
+
+    /*
+    Decrypt a file exported with exportVaultFile and store the content as a new vault with the same key
+    NOTE: the clear content never touches the disk, it's only kept in memory until the vault is created
+    the input should be in the cache or files directory of the app
+    */
+    public boolean importVaultFile(@NonNull final String inputPath, @NonNull final String vaultName, @NonNull final String key)
+            throws Exception {
+        final File inputFile = getAppFile(inputPath);
+
+        if (!inputFile.isFile()) {
+            throw new Exception("FILE_NOT_EXIST");
         }
 
-        // remove old vault and create one
-        for (String vaultName: vaultNames){
-            // after we made sure we can store the data in a safe way, purge old vault
-            purgeVault(vaultName);
-            // create the vault again with the new key
-            createVault(
-                    vaultName,
-                    vaultsClearText.get(vaultName),
-                    newKey
-            );
+        // clear content is never bigger than the encrypted file
+        if (inputFile.length() > MAX_IMPORT_FILE_SIZE) {
+            throw new Exception("FILE_TOO_LARGE");
         }
 
-        // finally remove the created recovery vaults
-        for (String vaultName: vaultNames){
-            purgeVault(VaultManagerModule.getRecoveryVaultName(vaultName));
+        final ByteArrayOutputStream output = new ByteArrayOutputStream((int) inputFile.length());
+        try (InputStream input = new BufferedInputStream(new FileInputStream(inputFile))) {
+            CipherStreamAesGcm.decrypt(input, output, key);
         }
 
-        return true;
+        return createVault(vaultName, new String(output.toByteArray(), StandardCharsets.UTF_8), key);
     }
 
+    private interface FileWriter {
+        void write(@NonNull final OutputStream output) throws Exception;
+    }
+
+    /*
+    Write to a temp file and move it in place after everything is written and synced
+    */
+    private static void writeFileAtomic(@NonNull final File file, @NonNull final FileWriter writer) throws Exception {
+        final File tempFile = new File(file.getPath() + ".tmp");
+
+        try {
+            try (FileOutputStream fileOutput = new FileOutputStream(tempFile);
+                 OutputStream output = new BufferedOutputStream(fileOutput)) {
+                writer.write(output);
+                output.flush();
+                fileOutput.getFD().sync();
+            }
+
+            if (!tempFile.renameTo(file)) {
+                throw new Exception("UNABLE_TO_WRITE_FILE");
+            }
+        } finally {
+            if (tempFile.exists()) {
+                tempFile.delete();
+            }
+        }
+    }
 
     /*
     Check vault is already exist with given name
@@ -266,6 +619,7 @@ public class VaultManagerModule extends ReactContextBaseJavaModule {
     */
     public boolean purgeVault(@NonNull final String vaultName) throws Exception {
         keychain.deleteItem(vaultName);
+        migrationService.onVaultUpdated(vaultName);
         return true;
     }
 
@@ -275,22 +629,55 @@ public class VaultManagerModule extends ReactContextBaseJavaModule {
     */
     public void clearStorage() throws Exception {
         keychain.clear();
+        // nothing left to recover
+        reKeyJournal.clear();
+        // drop any derived passcode hash we may hold in memory
+        PasscodeHashCache.sharedInstance().clear();
+        // unique id is removed from the keychain, make sure it's stored again on next use
+        UniqueIdProvider.sharedInstance().invalidate();
+        // nothing left to migrate
+        migrationService.invalidate();
     }
 
     /*
-    Check a vault is encrypted with the latest Cipher or it needs a migrations
+    Get the cipher version of the vault, returns null if vault does not exist
+    NOTE: the version is read from the plain header, for vaults created before we had the header
+    the entry is read (keystore decryption) to get the derived keys, the header is filled by the migration scan
     */
-    public WritableMap isMigrationRequired(@NonNull final String vaultName) throws Exception {
+    Integer getVaultCipherVersion(@NonNull final String vaultName) throws Exception {
+        final Integer version = keychain.getItemVersion(vaultName);
+
+        if (version != null && version != NOT_A_VAULT_VERSION) {
+            return version;
+        }
+
         // get the item from storage
         Map<String, String> item = keychain.getItem(vaultName);
 
+        if (item == null) {
+            return null;
+        }
+
         // calculate derived keys for this vault
         Cipher.DerivedKeys derivedKeys = Cipher.getDerivedKeys(
                 Objects.requireNonNull(item.get("username"))
         );
 
+        return derivedKeys.version;
+    }
+
+    /*
+    Check a vault is encrypted with the latest Cipher or it needs a migrations
+    */
+    public WritableMap isMigrationRequired(@NonNull final String vaultName) throws Exception {
+        final Integer version = getVaultCipherVersion(vaultName);
+
+        if (version == null) {
+            throw new Exception("VAULT_NOT_EXIST");
+        }
+
         int latestCipherVersion = Cipher.getLatestCipherVersion();
-        int currentCipherVersion = derivedKeys.version;
+        int currentCipherVersion = version;
 
         boolean isMigrationRequired = latestCipherVersion > currentCipherVersion;
 
@@ -343,22 +730,44 @@ public class VaultManagerModule extends ReactContextBaseJavaModule {
 
 
     //region JS interface
+    // NOTE: all vault methods are dispatched to the task executor and resolve the promise from there
 
     @ReactMethod
     public void createVault(String vaultName, String data, String key, Promise promise) {
-        try {
+        taskExecutor.execute(vaultName, () -> {
             boolean result = createVault(vaultName, data, key);
             promise.resolve(result);
-        } catch (Exception e) {
-            rejectWithError(promise, e);
-        }
+        }, e -> rejectWithError(promise, e));
     }
 
     @ReactMethod
     public void openVault(String vaultName, String key, Promise promise) {
-        try {
+        taskExecutor.execute(vaultName, () -> {
             String clearText = openVault(vaultName, key, true);
             promise.resolve(clearText);
+        }, e -> rejectWithError(promise, e));
+    }
+
+    @ReactMethod
+    public void openVaults(ReadableArray vaultNames, String key, Promise promise) {
+        try {
+            ArrayList<String> vaultsNamesList = (ArrayList<String>)(ArrayList<?>)(vaultNames.toArrayList());
+            openVaults(vaultsNamesList, key, (results, errors) -> {
+                final WritableMap clearTexts = Arguments.createMap();
+                for (Map.Entry<String, String> result : results.entrySet()) {
+                    clearTexts.putString(result.getKey(), result.getValue());
+                }
+
+                final WritableMap errorMessages = Arguments.createMap();
+                for (Map.Entry<String, Exception> error : errors.entrySet()) {
+                    errorMessages.putString(error.getKey(), getErrorMessage(error.getValue()));
+                }
+
+                final WritableMap response = Arguments.createMap();
+                response.putMap("results", clearTexts);
+                response.putMap("errors", errorMessages);
+                promise.resolve(response);
+            });
         } catch (Exception e) {
             rejectWithError(promise, e);
         }
@@ -366,60 +775,93 @@ public class VaultManagerModule extends ReactContextBaseJavaModule {
 
     @ReactMethod
     public void reKeyVault(String vaultName, String oldKey, String newKey, Promise promise) {
-        try {
+        taskExecutor.execute(vaultName, () -> {
             boolean result = reKeyVault(vaultName, oldKey, newKey);
             promise.resolve(result);
-        } catch (Exception e) {
-            rejectWithError(promise, e);
-        }
+        }, e -> rejectWithError(promise, e));
     }
 
     @ReactMethod
     public void reKeyBatchVaults(ReadableArray vaultNames, String oldKey, String newKey, Promise promise) {
-        try {
-            ArrayList<String> vaultsNamesList = (ArrayList<String>)(ArrayList<?>)(vaultNames.toArrayList());
+        ArrayList<String> vaultsNamesList = (ArrayList<String>)(ArrayList<?>)(vaultNames.toArrayList());
+        taskExecutor.executeGlobal(() -> {
             boolean result = reKeyBatchVaults(vaultsNamesList, oldKey, newKey);
             promise.resolve(result);
-        } catch (Exception e) {
-            rejectWithError(promise, e);
-        }
+        }, e -> rejectWithError(promise, e));
+    }
+
+    @ReactMethod
+    public void exportVaultFile(String inputPath, String outputPath, String key, Promise promise) {
+        taskExecutor.execute(FILE_EXPORT_QUEUE, () -> {
+            boolean result = exportVaultFile(inputPath, outputPath, key);
+            promise.resolve(result);
+        }, e -> rejectWithError(promise, e));
+    }
+
+    @ReactMethod
+    public void importVaultFile(String inputPath, String vaultName, String key, Promise promise) {
+        taskExecutor.execute(vaultName, () -> {
+            boolean result = importVaultFile(inputPath, vaultName, key);
+            promise.resolve(result);
+        }, e -> rejectWithError(promise, e));
     }
 
     @ReactMethod
     public void vaultExist(String vaultName, Promise promise) {
-        try {
+        taskExecutor.execute(vaultName, () -> {
             boolean exist = vaultExist(vaultName);
             promise.resolve(exist);
-        } catch (Exception e) {
-            rejectWithError(promise, e);
-        }
+        }, e -> rejectWithError(promise, e));
     }
 
     @ReactMethod
     public void purgeVault(String vaultName, Promise promise) {
-        try {
+        taskExecutor.execute(vaultName, () -> {
             purgeVault(vaultName);
             promise.resolve(true);
-        } catch (Exception e) {
-            rejectWithError(promise, e);
-        }
+        }, e -> rejectWithError(promise, e));
     }
 
     @ReactMethod
     public void clearStorage(Promise promise) {
-        try {
+        taskExecutor.executeGlobal(() -> {
             clearStorage();
             promise.resolve(true);
-        } catch (Exception e) {
-            rejectWithError(promise, e);
-        }
+        }, e -> rejectWithError(promise, e));
     }
 
     @ReactMethod
     public void isMigrationRequired(String vaultName, Promise promise) {
-        try {
+        taskExecutor.execute(vaultName, () -> {
             final WritableMap results = isMigrationRequired(vaultName);
             promise.resolve(results);
+        }, e -> rejectWithError(promise, e));
+    }
+
+    @ReactMethod
+    public void getMigrationStatus(Promise promise) {
+        taskExecutor.executeGlobal(() -> {
+            promise.resolve(getMigrationStatusMap(migrationService.getStatus()));
+        }, e -> rejectWithError(promise, e));
+    }
+
+    @ReactMethod
+    public void migrateVaults(ReadableMap keys, Promise promise) {
+        try {
+            // vault name -> key
+            final Map<String, String> vaultKeys = new HashMap<>();
+            final ReadableMapKeySetIterator iterator = keys.keySetIterator();
+            while (iterator.hasNextKey()) {
+                final String vaultName = iterator.nextKey();
+                vaultKeys.put(vaultName, keys.getString(vaultName));
+            }
+
+            // NOTE: resolves after all pending vaults are processed, progress is reported with events
+            boolean started = migrationService.start(vaultKeys, status -> promise.resolve(getMigrationStatusMap(status)));
+
+            if (!started) {
+                throw new Exception("MIGRATION_ALREADY_RUNNING");
+            }
         } catch (Exception e) {
             rejectWithError(promise, e);
         }
@@ -427,22 +869,36 @@ public class VaultManagerModule extends ReactContextBaseJavaModule {
 
     @ReactMethod
     public void isStorageEncryptionKeyExist(Promise promise) {
-        try {
+        taskExecutor.execute(STORAGE_ENCRYPTION_KEY, () -> {
             Boolean result = isStorageEncryptionKeyExist();
             promise.resolve(result);
-        } catch (Exception e) {
-            rejectWithError(promise, e);
-        }
+        }, e -> rejectWithError(promise, e));
     }
 
     @ReactMethod
     public void getStorageEncryptionKey(Promise promise) {
-        try {
+        taskExecutor.execute(STORAGE_ENCRYPTION_KEY, () -> {
             String encryptionKey = getStorageEncryptionKey();
             promise.resolve(encryptionKey);
-        } catch (Exception e) {
-            rejectWithError(promise, e);
-        }
+        }, e -> rejectWithError(promise, e));
+    }
+
+    @ReactMethod
+    public void enableFileKeychainStore(Promise promise) {
+        taskExecutor.executeGlobal(() -> {
+            FileKeychainStore.enable(getReactApplicationContext());
+            promise.resolve(FileKeychainStore.isEnabled(getReactApplicationContext()));
+        }, e -> rejectWithError(promise, e));
+    }
+
+    @ReactMethod
+    public void addListener(String eventName) {
+        // Keep: Required for RN built in Event Emitter Calls.
+    }
+
+    @ReactMethod
+    public void removeListeners(Integer count) {
+        // Keep: Required for RN built in Event Emitter Calls.
     }
 
     //endregion
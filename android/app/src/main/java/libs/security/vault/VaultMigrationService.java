@@ -0,0 +1,297 @@
+package libs.security.vault;
+
+import android.util.Log;
+
+import androidx.annotation.NonNull;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import libs.security.providers.UniqueIdProvider;
+import libs.security.vault.cipher.Cipher;
+import libs.security.vault.storage.Keychain;
+
+/*
+ Migrate vaults which are encrypted with an older cipher to the latest cipher
+ NOTE: pending vaults are found with the plain version header, entries which are stored before the header
+ existed are decrypted once by the scan to backfill it, entries which turn out not to be vaults get a negative
+ version, after that scanning does not need keystore decryption. The scan result is kept until vaults change
+
+ vaults can have different keys (passcode or passphrase), so migration is started by the JS with the key of
+ every vault it can open, pending vaults without a key are skipped and stay pending
+
+ vaults are migrated in small batches, every vault on its own queue of the task executor,
+ a vault which cannot be opened with the provided key is reported as failed and stays pending
+*/
+class VaultMigrationService {
+    private static final String LOG_TAG = VaultMigrationService.class.getSimpleName();
+
+    // number of vaults which are migrated at the same time
+    static final int BATCH_SIZE = 4;
+
+    static class Status {
+        int pending;
+        int total;
+        int migrated;
+        int failed;
+        boolean running;
+        // vaults which are migrated in the last run
+        List<String> migratedVaults = new ArrayList<>();
+    }
+
+    interface ProgressListener {
+        void onProgress(@NonNull final String vaultName, @NonNull final Status status);
+    }
+
+    interface CompletionListener {
+        void onComplete(@NonNull final Status status);
+    }
+
+    private final VaultManagerModule vaultManager;
+    private final Keychain keychain;
+    private final VaultTaskExecutor taskExecutor;
+    private final ProgressListener progressListener;
+
+    private final AtomicBoolean running = new AtomicBoolean(false);
+    private final AtomicInteger total = new AtomicInteger(0);
+    private final AtomicInteger migrated = new AtomicInteger(0);
+    private final AtomicInteger failed = new AtomicInteger(0);
+    private final List<String> migratedVaults = Collections.synchronizedList(new ArrayList<>());
+
+    // result of the last scan, null when the keychain needs to be scanned again
+    private List<String> pendingVaults;
+
+    VaultMigrationService(@NonNull final VaultManagerModule vaultManager,
+                          @NonNull final Keychain keychain,
+                          @NonNull final VaultTaskExecutor taskExecutor,
+                          final ProgressListener progressListener) {
+        this.vaultManager = vaultManager;
+        this.keychain = keychain;
+        this.taskExecutor = taskExecutor;
+        this.progressListener = progressListener;
+    }
+
+    /*
+     Get all vaults which are encrypted with an older cipher
+     NOTE: should run as a task of the executor, so the scan never races with a re-key of the same vault
+    */
+    @NonNull
+    synchronized List<String> getPendingVaults() {
+        if (pendingVaults == null) {
+            pendingVaults = scanPendingVaults();
+        }
+        return new ArrayList<>(pendingVaults);
+    }
+
+    /*
+     Drop the last scan result, next call will scan the keychain again
+    */
+    synchronized void invalidate() {
+        pendingVaults = null;
+    }
+
+    /*
+     Vault is removed or written again with the current cipher, it's not pending anymore
+    */
+    synchronized void onVaultUpdated(@NonNull final String vaultName) {
+        if (pendingVaults != null) {
+            pendingVaults.remove(vaultName);
+        }
+    }
+
+    @NonNull
+    private List<String> scanPendingVaults() {
+        final int latestCipherVersion = Cipher.getLatestCipherVersion();
+        final List<String> pending = new ArrayList<>();
+
+        for (String alias : keychain.getAllItems()) {
+            // not a vault or a recovery vault which will be removed anyway
+            if (alias.equals(VaultManagerModule.STORAGE_ENCRYPTION_KEY)
+                    || alias.equals(UniqueIdProvider.UNIQUE_DEVICE_ID_KEY)
+                    || alias.endsWith(VaultManagerModule.RECOVERY_SUFFIX)) {
+                continue;
+            }
+
+            Integer version = keychain.getItemVersion(alias);
+
+            if (version == null) {
+                version = backfillVersion(alias);
+            }
+
+            // negative version marks an entry which is not a vault
+            if (version > 0 && version < latestCipherVersion) {
+                pending.add(alias);
+            }
+        }
+
+        return pending;
+    }
+
+    /*
+     Read the entry once and store its cipher version as plain header
+     NOTE: entries we cannot read as a vault are marked, so they are not decrypted again on every scan,
+     the marker is replaced as soon as a vault is written with this name
+    */
+    private int backfillVersion(@NonNull final String alias) {
+        int version;
+
+        try {
+            final Integer vaultVersion = vaultManager.getVaultCipherVersion(alias);
+            version = vaultVersion != null ? vaultVersion : VaultManagerModule.NOT_A_VAULT_VERSION;
+        } catch (Exception e) {
+            Log.w(LOG_TAG, "Unable to read the cipher version of " + alias, e);
+            version = VaultManagerModule.NOT_A_VAULT_VERSION;
+        }
+
+        keychain.setItemVersion(alias, version);
+
+        return version;
+    }
+
+    /*
+     Run a call as global task of the executor and wait for the result
+     NOTE: only from a thread which is not a worker of the executor
+    */
+    private <T> T callOnExecutor(@NonNull final Callable<T> callable) throws Exception {
+        final CountDownLatch done = new CountDownLatch(1);
+        final List<T> result = new ArrayList<>(1);
+        final Exception[] error = new Exception[1];
+
+        taskExecutor.executeGlobal(() -> {
+            result.add(callable.call());
+            done.countDown();
+        }, e -> {
+            error[0] = e;
+            done.countDown();
+        });
+
+        done.await();
+
+        if (error[0] != null) {
+            throw error[0];
+        }
+
+        return result.get(0);
+    }
+
+    /*
+     Current status of the migration
+     NOTE: uses the last scan result, if the keychain needs a scan this should run as a task of the executor
+    */
+    @NonNull
+    Status getStatus() {
+        final Status status = new Status();
+        status.pending = getPendingVaults().size();
+        status.total = total.get();
+        status.migrated = migrated.get();
+        status.failed = failed.get();
+        status.running = running.get();
+        status.migratedVaults = getMigratedVaults();
+        return status;
+    }
+
+    @NonNull
+    private List<String> getMigratedVaults() {
+        synchronized (migratedVaults) {
+            return new ArrayList<>(migratedVaults);
+        }
+    }
+
+    /*
+     Start migrating pending vaults in background, keys contains the key for every vault name
+     NOTE: returns false if a migration is already running
+    */
+    boolean start(@NonNull final Map<String, String> keys, @NonNull final CompletionListener completionListener) {
+        if (!running.compareAndSet(false, true)) {
+            return false;
+        }
+
+        // NOTE: we wait for the scan and batches on our own thread, never on the task executor workers
+        final Thread thread = new Thread(() -> {
+            try {
+                migrate(keys);
+            } catch (Exception e) {
+                Log.e(LOG_TAG, "Vault migration failed", e);
+            } finally {
+                running.set(false);
+                completionListener.onComplete(getCompletedStatus());
+            }
+        }, "VaultMigration");
+        thread.setDaemon(true);
+        thread.start();
+
+        return true;
+    }
+
+    @NonNull
+    private Status getCompletedStatus() {
+        try {
+            return callOnExecutor(this::getStatus);
+        } catch (Exception e) {
+            Log.e(LOG_TAG, "Unable to get migration status", e);
+            return new Status();
+        }
+    }
+
+    private void migrate(@NonNull final Map<String, String> keys) throws Exception {
+        // only vaults which we have the key for
+        final List<String> vaults = new ArrayList<>();
+        for (String vaultName : callOnExecutor(this::getPendingVaults)) {
+            if (keys.get(vaultName) != null) {
+                vaults.add(vaultName);
+            }
+        }
+
+        total.set(vaults.size());
+        migrated.set(0);
+        failed.set(0);
+        migratedVaults.clear();
+
+        for (int offset = 0; offset < vaults.size(); offset += BATCH_SIZE) {
+            final List<String> batch = vaults.subList(offset, Math.min(offset + BATCH_SIZE, vaults.size()));
+            final CountDownLatch batchDone = new CountDownLatch(batch.size());
+
+            for (final String vaultName : batch) {
+                final String key = keys.get(vaultName);
+
+                taskExecutor.execute(vaultName, () -> {
+                    // re-key with the same key will create the vault with the latest cipher
+                    vaultManager.reKeyVault(vaultName, key, key);
+                    onVaultUpdated(vaultName);
+                    migratedVaults.add(vaultName);
+                    migrated.incrementAndGet();
+                    notifyProgress(vaultName);
+                    batchDone.countDown();
+                }, e -> {
+                    failed.incrementAndGet();
+                    notifyProgress(vaultName);
+                    batchDone.countDown();
+                });
+            }
+
+            batchDone.await();
+        }
+    }
+
+    private void notifyProgress(@NonNull final String vaultName) {
+        if (progressListener == null) {
+            return;
+        }
+
+        final Status status = new Status();
+        status.total = total.get();
+        status.migrated = migrated.get();
+        status.failed = failed.get();
+        status.pending = status.total - status.migrated - status.failed;
+        status.running = true;
+        status.migratedVaults = getMigratedVaults();
+
+        progressListener.onProgress(vaultName, status);
+    }
+}
@@ -0,0 +1,188 @@
+package libs.security.vault;
+
+import android.util.Log;
+
+import androidx.annotation.NonNull;
+
+import java.util.ArrayDeque;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/*
+ Run vault operations off the React Native native-modules thread
+ NOTE: tasks for the same vault are serialized, tasks for different vaults can overlap
+ a vault and its recovery vault share the same queue as they are always touched together
+
+ global tasks (clear storage, batch re-key) are exclusive and wait for all running vault tasks
+*/
+class VaultTaskExecutor {
+    private static final String LOG_TAG = VaultTaskExecutor.class.getSimpleName();
+
+    // keep idle worker threads around for a short time after the last task
+    private static final long KEEP_ALIVE_SECONDS = 30;
+
+    interface Task {
+        void run() throws Exception;
+    }
+
+    interface ErrorHandler {
+        void onError(@NonNull final Exception exception);
+    }
+
+    private final ThreadPoolExecutor executor;
+    private final ReentrantReadWriteLock storageLock = new ReentrantReadWriteLock(true);
+    // pending tasks per vault, a queue is removed as soon as it's drained
+    private final Map<String, SerialQueue> queues = new HashMap<>();
+
+    VaultTaskExecutor() {
+        final int workers = Math.max(2, Runtime.getRuntime().availableProcessors());
+        final AtomicInteger threadCount = new AtomicInteger(0);
+
+        executor = new ThreadPoolExecutor(
+                workers,
+                workers,
+                KEEP_ALIVE_SECONDS,
+                TimeUnit.SECONDS,
+                new LinkedBlockingQueue<>(),
+                runnable -> {
+                    Thread thread = new Thread(runnable, "VaultManager-" + threadCount.incrementAndGet());
+                    thread.setDaemon(true);
+                    return thread;
+                }
+        );
+        executor.allowCoreThreadTimeOut(true);
+    }
+
+    /*
+     Queue a task for the given vault
+    */
+    void execute(@NonNull final String vaultName, @NonNull final Task task, @NonNull final ErrorHandler errorHandler) {
+        final String queueName = getQueueName(vaultName);
+
+        synchronized (queues) {
+            SerialQueue queue = queues.get(queueName);
+            if (queue == null) {
+                queue = new SerialQueue(queueName);
+                queues.put(queueName, queue);
+            }
+            queue.add(() -> runLocked(storageLock.readLock(), task, errorHandler));
+        }
+    }
+
+    /*
+     Queue a task which touches the whole storage
+    */
+    void executeGlobal(@NonNull final Task task, @NonNull final ErrorHandler errorHandler) {
+        executor.execute(() -> runLocked(storageLock.writeLock(), task, errorHandler));
+    }
+
+    /*
+     Stop accepting new tasks and let the workers exit once the queued tasks are done
+    */
+    void shutdown() {
+        executor.shutdown();
+    }
+
+    /*
+     Wait for the queued tasks to finish after shutdown
+    */
+    boolean awaitTermination(final long timeout, @NonNull final TimeUnit unit) throws InterruptedException {
+        return executor.awaitTermination(timeout, unit);
+    }
+
+    /*
+     Run the task while holding the lock, every task either completes or is reported to the error handler
+     NOTE: errors are reported as well so the promise of the task never hangs, errors of the VM itself
+     are thrown again after reporting as the process state cannot be trusted anymore
+    */
+    private static void runLocked(@NonNull final Lock lock, @NonNull final Task task, @NonNull final ErrorHandler errorHandler) {
+        lock.lock();
+        try {
+            task.run();
+        } catch (Throwable throwable) {
+            reportError(errorHandler, throwable);
+
+            if (throwable instanceof VirtualMachineError) {
+                throw (VirtualMachineError) throwable;
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private static void reportError(@NonNull final ErrorHandler errorHandler, @NonNull final Throwable throwable) {
+        final Exception exception = throwable instanceof Exception
+                ? (Exception) throwable
+                : new Exception(throwable.toString(), throwable);
+
+        try {
+            errorHandler.onError(exception);
+        } catch (Throwable handlerError) {
+            Log.e(LOG_TAG, "Vault task error handler failed", handlerError);
+        }
+    }
+
+    /*
+     Strip the recovery suffix, so vault and recovery vault are serialized together
+    */
+    @NonNull
+    static String getQueueName(@NonNull final String vaultName) {
+        if (vaultName.endsWith(VaultManagerModule.RECOVERY_SUFFIX)) {
+            return vaultName.substring(0, vaultName.length() - VaultManagerModule.RECOVERY_SUFFIX.length());
+        }
+        return vaultName;
+    }
+
+    private class SerialQueue {
+        private final String name;
+        private final ArrayDeque<Runnable> tasks = new ArrayDeque<>();
+        private boolean running = false;
+
+        SerialQueue(@NonNull final String name) {
+            this.name = name;
+        }
+
+        // NOTE: should be called while holding the queues lock
+        void add(@NonNull final Runnable task) {
+            tasks.add(task);
+
+            if (!running) {
+                running = true;
+                executor.execute(this::runNext);
+            }
+        }
+
+        private void runNext() {
+            final Runnable task;
+
+            synchronized (queues) {
+                task = tasks.poll();
+
+                // nothing left, drop the queue
+                if (task == null) {
+                    running = false;
+                    queues.remove(name);
+                    return;
+                }
+            }
+
+            try {
+                task.run();
+            } finally {
+                // schedule the next task instead of looping, so other vaults get a fair share of workers
+                // NOTE: after shutdown the pool rejects new work, drain the rest of the queue on this worker
+                if (executor.isShutdown()) {
+                    runNext();
+                } else {
+                    executor.execute(this::runNext);
+                }
+            }
+        }
+    }
+}
@@ -1,10 +1,13 @@
 package libs.security.vault.cipher;
 
+import android.util.Base64;
+
 import androidx.annotation.NonNull;
 
 import org.json.JSONObject;
 import org.json.JSONException;
 
+import java.nio.charset.StandardCharsets;
 import java.util.Map;
 
 import libs.security.vault.exceptions.CryptoFailedException;
@@ -20,6 +23,12 @@ public class Cipher {
         public String toJSONString() throws JSONException {
             JSONObject jsonObject = new JSONObject();
             jsonObject.put("version", this.version);
+
+            // NOTE: after v2 the salts and iv are part of the cipher envelope
+            if (this.version > CipherV2AesGcm.CIPHER_VERSION) {
+                return jsonObject.toString();
+            }
+
             jsonObject.put("iv", this.iv);
             jsonObject.put("passcode_salt", this.passcode_salt);
             jsonObject.put("pre_key_salt", this.pre_key_salt);
@@ -30,11 +39,20 @@ public class Cipher {
 
     /**
      * get Latest supported ciper version
+     * NOTE: vaults below this version are reported as migration required, this stays on v2 until
+     * we deliberately decide to migrate existing vaults to the envelope cipher
      */
     public static int getLatestCipherVersion() {
         return CipherV2AesGcm.getCipherVersion();
     }
 
+    /**
+     * get cipher version used for encrypting new vaults and re-keys
+     */
+    public static int getDefaultCipherVersion() {
+        return CipherV4AesGcm.getCipherVersion();
+    }
+
 
     @NonNull
     public static DerivedKeys getDerivedKeys(@NonNull final String derivedKeysString) {
@@ -47,8 +65,14 @@ public class Cipher {
         try {
             JSONObject derivedKeysObject = new JSONObject(derivedKeysString);
 
-            // it's v2 encryption
             derivedKeys.version = derivedKeysObject.getInt("version");
+
+            // it's an envelope encryption, derived keys are part of the cipher envelope
+            if (derivedKeys.version > CipherV2AesGcm.CIPHER_VERSION) {
+                return derivedKeys;
+            }
+
+            // it's v2 encryption
             derivedKeys.iv = derivedKeysObject.getString("iv");
             derivedKeys.passcode_salt = derivedKeysObject.getString("passcode_salt");
             derivedKeys.pre_key_salt = derivedKeysObject.getString("pre_key_salt");
@@ -70,7 +94,7 @@ public class Cipher {
             @NonNull final String key
     ) throws CryptoFailedException {
         // use latest encryption method to encrypt data
-        return CipherV2AesGcm.encrypt(input, key);
+        return CipherV4AesGcm.encrypt(input, key);
     }
 
 
@@ -95,10 +119,58 @@ public class Cipher {
                 clearText = CipherV2AesGcm.decrypt(cipher, key, derivedKeys);
                 break;
             default:
-                throw new CryptoFailedException("No cipher for handling provider cipher version!", null);
+                // envelope versions, the text form is the Base64 encoded envelope
+                clearText = decryptEnvelope(derivedKeys.version, decodeEnvelope(cipher), key);
         }
 
         // return decrypted clearText
         return clearText;
     }
+
+    /*
+     Decrypt a cipher which is stored as bytes
+     NOTE: envelope versions are stored as the raw envelope, older versions as their text form,
+     envelopes stored before they were kept as raw bytes are still in the Base64 text form
+    */
+    @NonNull
+    public static String decrypt(
+            @NonNull final byte[] cipher,
+            @NonNull final String key,
+            @NonNull final String derivedKeysString
+    ) throws CryptoFailedException {
+        final DerivedKeys derivedKeys = getDerivedKeys(derivedKeysString);
+
+        if (derivedKeys.version <= CipherV2AesGcm.CIPHER_VERSION) {
+            return decrypt(new String(cipher, StandardCharsets.UTF_8), key, derivedKeysString);
+        }
+
+        // a raw envelope starts with the version byte, which is never a Base64 character
+        if (cipher.length > 0 && cipher[0] == derivedKeys.version) {
+            return decryptEnvelope(derivedKeys.version, cipher, key);
+        }
+
+        return decrypt(new String(cipher, StandardCharsets.UTF_8), key, derivedKeysString);
+    }
+
+    @NonNull
+    private static byte[] decodeEnvelope(@NonNull final String cipher) throws CryptoFailedException {
+        try {
+            return Base64.decode(cipher, Base64.NO_WRAP);
+        } catch (IllegalArgumentException e) {
+            throw new CryptoFailedException("Invalid cipher envelope encoding!", e);
+        }
+    }
+
+    @NonNull
+    private static String decryptEnvelope(final int version, @NonNull final byte[] envelope, @NonNull final String key)
+            throws CryptoFailedException {
+        switch (version) {
+            case 3:
+                return CipherV3AesGcm.decrypt(envelope, key);
+            case 4:
+                return CipherV4AesGcm.decrypt(envelope, key);
+            default:
+                throw new CryptoFailedException("No cipher for handling provider cipher version!", null);
+        }
+    }
 }
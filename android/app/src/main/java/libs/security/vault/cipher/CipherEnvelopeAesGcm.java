@@ -0,0 +1,184 @@
+package libs.security.vault.cipher;
+
+import android.util.Base64;
+
+import androidx.annotation.NonNull;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+import libs.security.crypto.Crypto;
+import libs.security.providers.UniqueIdProvider;
+import libs.security.vault.exceptions.CryptoFailedException;
+
+/*
+ Binary envelope shared by the AES GCM vault ciphers, every cipher version only brings its header
+ parameters and the passcode hash derivation
+
+ envelope = version (1) | kdf parameters (n) | passcode_salt (32) | pre_key_salt (32) | encr_key_salt (32) | iv (12) | ciphertext | tag (16)
+
+ NOTE: the envelope header (version, kdf parameters, salts and iv) is authenticated as part of the AAD
+*/
+final class CipherEnvelopeAesGcm {
+    // NOTE: using "33" as iteration count is a conscious choice to save performance.
+    private static final int ENCR_KEY_ITERATIONS = 33;
+
+    static final int SALT_LENGTH = 32;
+    static final int IV_LENGTH = 12;
+    static final int TAG_LENGTH = 16;
+
+    interface PasscodeKdf {
+        /*
+         Derive the passcode hash with the kdf parameters from the envelope header
+        */
+        @NonNull
+        byte[] derive(@NonNull final String key, @NonNull final byte[] envelope, @NonNull final byte[] passcodeSalt) throws Exception;
+    }
+
+    final int version;
+    final int saltsOffset;
+    final int headerLength;
+    private final PasscodeKdf passcodeKdf;
+
+    CipherEnvelopeAesGcm(final int version, final int kdfParamsLength, @NonNull final PasscodeKdf passcodeKdf) {
+        this.version = version;
+        this.saltsOffset = 1 + kdfParamsLength;
+        this.headerLength = saltsOffset + SALT_LENGTH * 3 + IV_LENGTH;
+        this.passcodeKdf = passcodeKdf;
+    }
+
+    /*
+     encrKey = PBKDF2(preKeySalt | passcodeHash | uniqueDeviceId, encrKeySalt, 33)
+    */
+    @NonNull
+    private byte[] getEncryptionKey(@NonNull final byte[] passcodeHash,
+                                    @NonNull final byte[] uniqueDeviceId,
+                                    @NonNull final byte[] envelope) throws Exception {
+        final byte[] preKey = new byte[SALT_LENGTH + passcodeHash.length + uniqueDeviceId.length];
+        System.arraycopy(envelope, saltsOffset + SALT_LENGTH, preKey, 0, SALT_LENGTH);
+        System.arraycopy(passcodeHash, 0, preKey, SALT_LENGTH, passcodeHash.length);
+        System.arraycopy(uniqueDeviceId, 0, preKey, SALT_LENGTH + passcodeHash.length, uniqueDeviceId.length);
+
+        final byte[] encrKeySalt = Arrays.copyOfRange(envelope, saltsOffset + SALT_LENGTH * 2, saltsOffset + SALT_LENGTH * 3);
+
+        try {
+            return Crypto.PBKDF2(preKey, encrKeySalt, ENCR_KEY_ITERATIONS);
+        } finally {
+            Arrays.fill(preKey, (byte) 0);
+        }
+    }
+
+    /*
+     aad = uniqueDeviceId | envelope header
+    */
+    @NonNull
+    private byte[] getAAD(@NonNull final byte[] uniqueDeviceId, @NonNull final byte[] envelope) {
+        final byte[] aad = new byte[uniqueDeviceId.length + headerLength];
+        System.arraycopy(uniqueDeviceId, 0, aad, 0, uniqueDeviceId.length);
+        System.arraycopy(envelope, 0, aad, uniqueDeviceId.length, headerLength);
+        return aad;
+    }
+
+    @NonNull
+    private static byte[] getUniqueDeviceId() throws CryptoFailedException {
+        // get device unique id for using in preKey and AAD
+        final byte[] uniqueDeviceId = UniqueIdProvider.sharedInstance().getDeviceUniqueIdBytes();
+
+        if (uniqueDeviceId == null) {
+            throw new CryptoFailedException("uniqueDeviceId is null!", null);
+        }
+
+        return uniqueDeviceId;
+    }
+
+    @NonNull
+    private byte[] getPasscodeHash(@NonNull final String key, @NonNull final byte[] envelope) throws Exception {
+        final byte[] passcodeSalt = Arrays.copyOfRange(envelope, saltsOffset, saltsOffset + SALT_LENGTH);
+        return passcodeKdf.derive(key, envelope, passcodeSalt);
+    }
+
+    /*
+     Encrypt the input in a new envelope with given kdf parameters and random salts and iv
+    */
+    @NonNull
+    Map<String, Object> encrypt(@NonNull final String input,
+                                @NonNull final String key,
+                                @NonNull final byte[] kdfParams) throws Exception {
+        final byte[] inputBytes = input.getBytes(StandardCharsets.UTF_8);
+
+        // build the envelope header with kdf parameters, random salts and iv
+        final byte[] envelope = new byte[headerLength + inputBytes.length + TAG_LENGTH];
+        envelope[0] = (byte) version;
+        System.arraycopy(kdfParams, 0, envelope, 1, saltsOffset - 1);
+        System.arraycopy(Crypto.RandomBytes(SALT_LENGTH * 3 + IV_LENGTH), 0, envelope, saltsOffset, SALT_LENGTH * 3 + IV_LENGTH);
+
+        final byte[] passcodeHash = getPasscodeHash(key, envelope);
+
+        final byte[] uniqueDeviceId = getUniqueDeviceId();
+
+        final byte[] encrKey = getEncryptionKey(passcodeHash, uniqueDeviceId, envelope);
+        final byte[] iv = Arrays.copyOfRange(envelope, headerLength - IV_LENGTH, headerLength);
+
+        // encrypt using AES GCM, the result is ciphertext | tag
+        final byte[] encryptedBytes = Crypto.AESEncrypt(
+                Crypto.AESAlgo.GCM,
+                inputBytes,
+                encrKey,
+                iv,
+                getAAD(uniqueDeviceId, envelope)
+        );
+
+        System.arraycopy(encryptedBytes, 0, envelope, headerLength, encryptedBytes.length);
+
+        Arrays.fill(passcodeHash, (byte) 0);
+        Arrays.fill(encrKey, (byte) 0);
+        Arrays.fill(inputBytes, (byte) 0);
+
+        // generate derived keys
+        // NOTE: salts and iv are part of the envelope, derived keys only carry the version
+        Cipher.DerivedKeys derivedKeys = new Cipher.DerivedKeys();
+        derivedKeys.version = version;
+
+        // NOTE: "envelope" is the raw form for storing as bytes, "cipher" is the text form of the same envelope
+        Map<String, Object> result = new HashMap<String, Object>();
+        result.put("cipher", Base64.encodeToString(envelope, Base64.NO_WRAP));
+        result.put("envelope", envelope);
+        result.put("derived_keys", derivedKeys);
+
+        return result;
+    }
+
+    @NonNull
+    String decrypt(@NonNull final byte[] envelope, @NonNull final String key) throws Exception {
+        if (envelope.length < headerLength + TAG_LENGTH) {
+            throw new CryptoFailedException("Invalid cipher envelope length!", null);
+        }
+
+        if (envelope[0] != version) {
+            throw new CryptoFailedException("Invalid cipher envelope version!", null);
+        }
+
+        final byte[] passcodeHash = getPasscodeHash(key, envelope);
+
+        final byte[] uniqueDeviceId = getUniqueDeviceId();
+
+        final byte[] encrKey = getEncryptionKey(passcodeHash, uniqueDeviceId, envelope);
+        final byte[] iv = Arrays.copyOfRange(envelope, headerLength - IV_LENGTH, headerLength);
+
+        // decrypt using AES GCM
+        final byte[] decryptedBytes = Crypto.AESDecrypt(
+                Crypto.AESAlgo.GCM,
+                Arrays.copyOfRange(envelope, headerLength, envelope.length),
+                encrKey,
+                iv,
+                getAAD(uniqueDeviceId, envelope)
+        );
+
+        Arrays.fill(passcodeHash, (byte) 0);
+        Arrays.fill(encrKey, (byte) 0);
+
+        return new String(decryptedBytes, StandardCharsets.UTF_8);
+    }
+}
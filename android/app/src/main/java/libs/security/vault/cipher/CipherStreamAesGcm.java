@@ -0,0 +1,320 @@
+package libs.security.vault.cipher;
+
+import androidx.annotation.NonNull;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.PushbackInputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+import javax.crypto.spec.GCMParameterSpec;
+import javax.crypto.spec.SecretKeySpec;
+
+import libs.security.crypto.Crypto;
+import libs.security.crypto.ScryptEngine;
+import libs.security.vault.exceptions.CryptoFailedException;
+
+/*
+ Chunked AES GCM for large payloads (backups, export bundles) with bounded memory
+ NOTE: the stream is split in chunks which are sealed separately (STREAM construction),
+ every chunk has its own nonce = nonce_prefix (7) | chunk counter (4) | last chunk flag (1)
+ with this reordering, dropping or truncating chunks will fail the authentication
+
+ header = magic (4) | version (1) | log2(N) (1) | r (1) | p (1) | salt (32) | nonce_prefix (7) | chunk_size (4)
+ stream = header | chunk_0 | ... | chunk_n    chunk = ciphertext (<= chunk_size) | tag (16)
+
+ NOTE: the key is derived only from the provided key with scrypt and is NOT bound to this device,
+ so exported files can be imported on another device
+
+ exported files can be attacked offline without any device secret, so the scrypt cost is a fixed export
+ profile far above the vault profiles instead of the device calibrated one, on decryption the cost from the
+ header must be at least the export cost and at most the memory we are willing to allocate
+*/
+public class CipherStreamAesGcm {
+    public static final int STREAM_VERSION = 1;
+    private static final byte[] MAGIC = "XVLT".getBytes(StandardCharsets.US_ASCII);
+
+    static final int DEFAULT_CHUNK_SIZE = 64 * 1024;
+    static final int MAX_CHUNK_SIZE = 1024 * 1024;
+
+    // export kdf cost, N = 2^16, r = 8, p = 8 (64 MB, 8 sequential rounds)
+    static final int EXPORT_LOG2_N = 16;
+    static final int EXPORT_BLOCK_SIZE = 8;
+    static final int EXPORT_PARALLELISM = 8;
+    // accepted bounds of the kdf parameters on decryption
+    // NOTE: N and r are fixed to the export cost, p only adds sequential rounds on the same work area
+    static final int MAX_LOG2_N = EXPORT_LOG2_N;
+    static final int MAX_PARALLELISM = 16;
+
+    static final int SALT_LENGTH = 32;
+    static final int NONCE_PREFIX_LENGTH = 7;
+    static final int IV_LENGTH = 12;
+    static final int TAG_LENGTH = 16;
+    static final int HEADER_LENGTH = MAGIC.length + 4 + SALT_LENGTH + NONCE_PREFIX_LENGTH + 4;
+
+    private static final String KEY_ALGORITHM = "AES";
+    private static final String CIPHER_ALGORITHM = "AES/GCM/NoPadding";
+
+    public static int getStreamVersion() {
+        return STREAM_VERSION;
+    }
+
+    public static void encrypt(@NonNull final InputStream input,
+                               @NonNull final OutputStream output,
+                               @NonNull final String key) throws CryptoFailedException {
+        encrypt(input, output, key, DEFAULT_CHUNK_SIZE);
+    }
+
+    public static void encrypt(@NonNull final InputStream input,
+                               @NonNull final OutputStream output,
+                               @NonNull final String key,
+                               final int chunkSize) throws CryptoFailedException {
+        if (chunkSize < 1 || chunkSize > MAX_CHUNK_SIZE) {
+            throw new CryptoFailedException("Invalid chunk size!", null);
+        }
+
+        byte[] encrKey = null;
+
+        try {
+            final KdfCalibrator.Profile profile = new KdfCalibrator.Profile(EXPORT_LOG2_N, EXPORT_BLOCK_SIZE, EXPORT_PARALLELISM);
+
+            // build the header
+            final byte[] header = new byte[HEADER_LENGTH];
+            System.arraycopy(MAGIC, 0, header, 0, MAGIC.length);
+            header[MAGIC.length] = (byte) STREAM_VERSION;
+            header[MAGIC.length + 1] = (byte) profile.log2N;
+            header[MAGIC.length + 2] = (byte) profile.r;
+            header[MAGIC.length + 3] = (byte) profile.p;
+            System.arraycopy(
+                    Crypto.RandomBytes(SALT_LENGTH + NONCE_PREFIX_LENGTH), 0,
+                    header, MAGIC.length + 4,
+                    SALT_LENGTH + NONCE_PREFIX_LENGTH
+            );
+            writeInt(header, HEADER_LENGTH - 4, chunkSize);
+
+            checkMemoryBudget(profile);
+            encrKey = getEncryptionKey(key, header, profile);
+
+            output.write(header);
+
+            final javax.crypto.Cipher cipher = javax.crypto.Cipher.getInstance(CIPHER_ALGORITHM);
+            final SecretKeySpec secretKey = new SecretKeySpec(encrKey, KEY_ALGORITHM);
+
+            // NOTE: we read ahead a single byte to know if the current chunk is the last one
+            final PushbackInputStream source = new PushbackInputStream(input, 1);
+            final byte[] chunk = new byte[chunkSize];
+            final byte[] sealed = new byte[chunkSize + TAG_LENGTH];
+
+            int counter = 0;
+            boolean last = false;
+
+            while (!last) {
+                final int read = readFully(source, chunk, chunkSize);
+
+                final int next = source.read();
+                last = next == -1;
+                if (!last) {
+                    source.unread(next);
+                }
+
+                cipher.init(javax.crypto.Cipher.ENCRYPT_MODE, secretKey, getNonce(header, counter, last));
+                cipher.updateAAD(header);
+                final int sealedLength = cipher.doFinal(chunk, 0, read, sealed, 0);
+                output.write(sealed, 0, sealedLength);
+
+                counter = nextCounter(counter);
+            }
+
+            Arrays.fill(chunk, (byte) 0);
+            output.flush();
+        } catch (CryptoFailedException e) {
+            throw e;
+        } catch (Exception e) {
+            throw new CryptoFailedException("CipherStreamAesGcm encryption error", e);
+        } finally {
+            if (encrKey != null) {
+                Arrays.fill(encrKey, (byte) 0);
+            }
+        }
+    }
+
+    /*
+     Decrypt the stream to the output
+     NOTE: the output may contain data of already verified chunks when this throws,
+     callers should discard the output in case of any error
+    */
+    public static void decrypt(@NonNull final InputStream input,
+                               @NonNull final OutputStream output,
+                               @NonNull final String key) throws CryptoFailedException {
+        byte[] encrKey = null;
+
+        try {
+            final byte[] header = new byte[HEADER_LENGTH];
+            if (readFully(input, header, HEADER_LENGTH) != HEADER_LENGTH) {
+                throw new CryptoFailedException("Invalid stream header length!", null);
+            }
+
+            if (!Arrays.equals(MAGIC, Arrays.copyOfRange(header, 0, MAGIC.length))) {
+                throw new CryptoFailedException("Invalid stream header!", null);
+            }
+
+            if (header[MAGIC.length] != STREAM_VERSION) {
+                throw new CryptoFailedException("Invalid stream version!", null);
+            }
+
+            final KdfCalibrator.Profile profile = new KdfCalibrator.Profile(
+                    header[MAGIC.length + 1] & 0xff,
+                    header[MAGIC.length + 2] & 0xff,
+                    header[MAGIC.length + 3] & 0xff
+            );
+
+            // validate the parameters before allocating anything
+            if (!isValidExportProfile(profile)) {
+                throw new CryptoFailedException("Invalid stream kdf parameters!", null);
+            }
+
+            final int chunkSize = readInt(header, HEADER_LENGTH - 4);
+            if (chunkSize < 1 || chunkSize > MAX_CHUNK_SIZE) {
+                throw new CryptoFailedException("Invalid stream chunk size!", null);
+            }
+
+            checkMemoryBudget(profile);
+            encrKey = getEncryptionKey(key, header, profile);
+
+            final javax.crypto.Cipher cipher = javax.crypto.Cipher.getInstance(CIPHER_ALGORITHM);
+            final SecretKeySpec secretKey = new SecretKeySpec(encrKey, KEY_ALGORITHM);
+
+            final PushbackInputStream source = new PushbackInputStream(input, 1);
+            final byte[] sealed = new byte[chunkSize + TAG_LENGTH];
+            final byte[] chunk = new byte[chunkSize];
+
+            int counter = 0;
+            boolean last = false;
+
+            while (!last) {
+                final int read = readFully(source, sealed, sealed.length);
+
+                if (read < TAG_LENGTH) {
+                    throw new CryptoFailedException("Stream is truncated!", null);
+                }
+
+                final int next = source.read();
+                last = next == -1;
+                if (!last) {
+                    source.unread(next);
+                }
+
+                // NOTE: a stream which is cut at chunk boundary fails here, as the chunk was not sealed as last
+                cipher.init(javax.crypto.Cipher.DECRYPT_MODE, secretKey, getNonce(header, counter, last));
+                cipher.updateAAD(header);
+                final int chunkLength = cipher.doFinal(sealed, 0, read, chunk, 0);
+                output.write(chunk, 0, chunkLength);
+
+                counter = nextCounter(counter);
+            }
+
+            Arrays.fill(chunk, (byte) 0);
+            output.flush();
+        } catch (CryptoFailedException e) {
+            throw e;
+        } catch (Exception e) {
+            throw new CryptoFailedException("CipherStreamAesGcm decryption error", e);
+        } finally {
+            if (encrKey != null) {
+                Arrays.fill(encrKey, (byte) 0);
+            }
+        }
+    }
+
+    /*
+     Check the kdf cost is not below the export cost and the memory use is bounded
+    */
+    static boolean isValidExportProfile(@NonNull final KdfCalibrator.Profile profile) {
+        return profile.log2N >= EXPORT_LOG2_N
+                && profile.log2N <= MAX_LOG2_N
+                && profile.r == EXPORT_BLOCK_SIZE
+                && profile.p >= 1
+                && profile.p <= MAX_PARALLELISM
+                && (long) profile.getN() * profile.p >= (1L << EXPORT_LOG2_N) * EXPORT_PARALLELISM;
+    }
+
+    /*
+     Check the derivation fits the scrypt memory budget of this device
+    */
+    private static void checkMemoryBudget(@NonNull final KdfCalibrator.Profile profile) throws CryptoFailedException {
+        if (!ScryptEngine.fitsMemoryBudget(profile.getN(), profile.r, profile.p)) {
+            throw new CryptoFailedException("Not enough memory for the stream kdf parameters!", null);
+        }
+    }
+
+    /*
+     encrKey = scrypt(key, salt, N, r, p)
+    */
+    @NonNull
+    private static byte[] getEncryptionKey(@NonNull final String key,
+                                           @NonNull final byte[] header,
+                                           @NonNull final KdfCalibrator.Profile profile) throws Exception {
+        final byte[] keyBytes = key.getBytes(StandardCharsets.UTF_8);
+        final byte[] salt = Arrays.copyOfRange(header, MAGIC.length + 4, MAGIC.length + 4 + SALT_LENGTH);
+
+        try {
+            return Crypto.Scrypt(keyBytes, salt, profile.getN(), profile.r, profile.p);
+        } finally {
+            Arrays.fill(keyBytes, (byte) 0);
+        }
+    }
+
+    /*
+     nonce = nonce_prefix (7) | counter (4) | last chunk flag (1)
+    */
+    @NonNull
+    private static GCMParameterSpec getNonce(@NonNull final byte[] header, final int counter, final boolean last) {
+        final byte[] nonce = new byte[IV_LENGTH];
+        System.arraycopy(header, MAGIC.length + 4 + SALT_LENGTH, nonce, 0, NONCE_PREFIX_LENGTH);
+        writeInt(nonce, NONCE_PREFIX_LENGTH, counter);
+        nonce[IV_LENGTH - 1] = (byte) (last ? 1 : 0);
+        return new GCMParameterSpec(TAG_LENGTH * 8, nonce);
+    }
+
+    private static int nextCounter(final int counter) throws CryptoFailedException {
+        // we never reuse a nonce
+        if (counter == Integer.MAX_VALUE) {
+            throw new CryptoFailedException("Stream is too large!", null);
+        }
+        return counter + 1;
+    }
+
+    /*
+     Read until buffer is full or end of the stream, returns number of bytes read
+    */
+    private static int readFully(@NonNull final InputStream input, @NonNull final byte[] buffer, final int length)
+            throws IOException {
+        int total = 0;
+
+        while (total < length) {
+            final int read = input.read(buffer, total, length - total);
+            if (read == -1) {
+                break;
+            }
+            total += read;
+        }
+
+        return total;
+    }
+
+    private static void writeInt(@NonNull final byte[] buffer, final int offset, final int value) {
+        buffer[offset] = (byte) (value >>> 24);
+        buffer[offset + 1] = (byte) (value >>> 16);
+        buffer[offset + 2] = (byte) (value >>> 8);
+        buffer[offset + 3] = (byte) value;
+    }
+
+    private static int readInt(@NonNull final byte[] buffer, final int offset) {
+        return (buffer[offset] & 0xff) << 24
+                | (buffer[offset + 1] & 0xff) << 16
+                | (buffer[offset + 2] & 0xff) << 8
+                | (buffer[offset + 3] & 0xff);
+    }
+}
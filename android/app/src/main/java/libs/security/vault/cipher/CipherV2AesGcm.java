@@ -13,18 +13,33 @@ import libs.security.vault.exceptions.CryptoFailedException;
 
 public class CipherV2AesGcm {
     public static final int CIPHER_VERSION = 2;
+    // NOTE: using "91337" as iteration count is a conscious choice to save performance.
+    private static final int PASSCODE_HASH_ITERATIONS = 91337;
+    private static final String PASSCODE_HASH_DERIVATION = "PBKDF2-SHA512/" + PASSCODE_HASH_ITERATIONS;
 
     public static int getCipherVersion() {
         return CIPHER_VERSION;
     }
 
+    /*
+     Derive the passcode hash, the result will be cached for the duration of unlock session
+    */
+    @NonNull
+    private static byte[] getPasscodeHash(@NonNull final String key, @NonNull final byte[] passcodeSalt) throws Exception {
+        return PasscodeHashCache.sharedInstance().getOrDerive(
+                key,
+                passcodeSalt,
+                PASSCODE_HASH_DERIVATION,
+                () -> Crypto.PBKDF2(key.toCharArray(), passcodeSalt, PASSCODE_HASH_ITERATIONS)
+        );
+    }
+
     @NonNull
     public static Map<String, Object> encrypt(@NonNull final String input, @NonNull final String key) throws CryptoFailedException {
         try {
             final byte[] passcodeSalt = Crypto.RandomBytes(32);
 
-            // NOTE: using "91337" as iteration count is a conscious choice to save performance.
-            final byte[] passcodeHash = Crypto.PBKDF2(key.toCharArray(), passcodeSalt, 91337);
+            final byte[] passcodeHash = getPasscodeHash(key, passcodeSalt);
 
             // get device unique id for using in preKey and AAD
             final byte[] uniqueDeviceId = UniqueIdProvider.sharedInstance().getDeviceUniqueIdBytes();
@@ -87,12 +102,7 @@ public class CipherV2AesGcm {
     public static String decrypt(@NonNull final String cipher, @NonNull final String key, @NonNull final Cipher.DerivedKeys derivedKeys) throws CryptoFailedException {
         try {
 
-            // NOTE: using "91337" as iteration count is a conscious choice to save performance.
-            final byte[] passcodeHash = Crypto.PBKDF2(
-                    key.toCharArray(),
-                    Crypto.HexToBytes(derivedKeys.passcode_salt),
-                    91337
-            );
+            final byte[] passcodeHash = getPasscodeHash(key, Crypto.HexToBytes(derivedKeys.passcode_salt));
 
             // get device unique id for using in preKey and AAD
             final byte[] uniqueDeviceId = UniqueIdProvider.sharedInstance().getDeviceUniqueIdBytes();
@@ -0,0 +1,69 @@
+package libs.security.vault.cipher;
+
+import androidx.annotation.NonNull;
+
+import java.util.Map;
+
+import libs.security.crypto.Crypto;
+import libs.security.vault.exceptions.CryptoFailedException;
+
+/*
+ Same key derivation as V2 with a compact binary envelope instead of hex strings and JSON derived keys
+
+ envelope = version (1) | passcode_salt (32) | pre_key_salt (32) | encr_key_salt (32) | iv (12) | ciphertext | tag (16)
+
+ NOTE: V3 is superseded by V4 and new vaults are never written with it,
+ it's kept so vaults written with V3 can still be opened and re-keyed
+*/
+public class CipherV3AesGcm {
+    public static final int CIPHER_VERSION = 3;
+    // NOTE: using "91337" as iteration count is a conscious choice to save performance.
+    private static final int PASSCODE_HASH_ITERATIONS = 91337;
+    private static final String PASSCODE_HASH_DERIVATION = "PBKDF2-SHA512/" + PASSCODE_HASH_ITERATIONS;
+
+    private static final CipherEnvelopeAesGcm ENVELOPE = new CipherEnvelopeAesGcm(
+            CIPHER_VERSION,
+            0,
+            CipherV3AesGcm::getPasscodeHash
+    );
+
+    public static int getCipherVersion() {
+        return CIPHER_VERSION;
+    }
+
+    /*
+     Derive the passcode hash, the result will be cached for the duration of unlock session
+    */
+    @NonNull
+    private static byte[] getPasscodeHash(@NonNull final String key,
+                                          @NonNull final byte[] envelope,
+                                          @NonNull final byte[] passcodeSalt) throws Exception {
+        return PasscodeHashCache.sharedInstance().getOrDerive(
+                key,
+                passcodeSalt,
+                PASSCODE_HASH_DERIVATION,
+                () -> Crypto.PBKDF2(key.toCharArray(), passcodeSalt, PASSCODE_HASH_ITERATIONS)
+        );
+    }
+
+    /*
+     NOTE: only used to write V3 envelopes in tests, Cipher.encrypt always uses the current cipher
+    */
+    @NonNull
+    public static Map<String, Object> encrypt(@NonNull final String input, @NonNull final String key) throws CryptoFailedException {
+        try {
+            return ENVELOPE.encrypt(input, key, new byte[0]);
+        } catch (Exception e) {
+            throw new CryptoFailedException("CipherV3AesGcm encryption error", e);
+        }
+    }
+
+    @NonNull
+    public static String decrypt(@NonNull final byte[] envelope, @NonNull final String key) throws CryptoFailedException {
+        try {
+            return ENVELOPE.decrypt(envelope, key);
+        } catch (Exception e) {
+            throw new CryptoFailedException("CipherV3AesGcm decryption error", e);
+        }
+    }
+}
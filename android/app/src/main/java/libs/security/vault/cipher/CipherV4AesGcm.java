@@ -0,0 +1,77 @@
+package libs.security.vault.cipher;
+
+import androidx.annotation.NonNull;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Map;
+
+import libs.security.crypto.Crypto;
+import libs.security.vault.exceptions.CryptoFailedException;
+
+/*
+ Compact binary envelope instead of hex strings and JSON derived keys, with a memory-hard passcode hash (scrypt)
+ calibrated per device
+
+ envelope = version (1) | log2(N) (1) | r (1) | p (1) | passcode_salt (32) | pre_key_salt (32) | encr_key_salt (32) | iv (12) | ciphertext | tag (16)
+
+ NOTE: the envelope layout and key schedule are shared in CipherEnvelopeAesGcm
+*/
+public class CipherV4AesGcm {
+    public static final int CIPHER_VERSION = 4;
+
+    static final int KDF_PARAMS_LENGTH = 3;
+
+    private static final CipherEnvelopeAesGcm ENVELOPE = new CipherEnvelopeAesGcm(
+            CIPHER_VERSION,
+            KDF_PARAMS_LENGTH,
+            CipherV4AesGcm::getPasscodeHash
+    );
+
+    public static int getCipherVersion() {
+        return CIPHER_VERSION;
+    }
+
+    /*
+     Derive the passcode hash with the kdf parameters from the envelope
+     NOTE: the result will be cached for the duration of unlock session
+    */
+    @NonNull
+    private static byte[] getPasscodeHash(@NonNull final String key,
+                                          @NonNull final byte[] envelope,
+                                          @NonNull final byte[] passcodeSalt) throws Exception {
+        final KdfCalibrator.Profile profile = new KdfCalibrator.Profile(envelope[1] & 0xff, envelope[2] & 0xff, envelope[3] & 0xff);
+
+        // validate the parameters before allocating anything
+        if (!profile.isValid()) {
+            throw new CryptoFailedException("Invalid cipher envelope kdf parameters!", null);
+        }
+
+        return PasscodeHashCache.sharedInstance().getOrDerive(
+                key,
+                passcodeSalt,
+                "SCRYPT/" + profile.getN() + "/" + profile.r + "/" + profile.p,
+                () -> Crypto.Scrypt(key.getBytes(StandardCharsets.UTF_8), passcodeSalt, profile.getN(), profile.r, profile.p)
+        );
+    }
+
+    @NonNull
+    public static Map<String, Object> encrypt(@NonNull final String input, @NonNull final String key) throws CryptoFailedException {
+        try {
+            // get the calibrated kdf parameters for this device
+            final KdfCalibrator.Profile profile = KdfCalibrator.sharedInstance().getProfile();
+
+            return ENVELOPE.encrypt(input, key, new byte[]{(byte) profile.log2N, (byte) profile.r, (byte) profile.p});
+        } catch (Exception e) {
+            throw new CryptoFailedException("CipherV4AesGcm encryption error", e);
+        }
+    }
+
+    @NonNull
+    public static String decrypt(@NonNull final byte[] envelope, @NonNull final String key) throws CryptoFailedException {
+        try {
+            return ENVELOPE.decrypt(envelope, key);
+        } catch (Exception e) {
+            throw new CryptoFailedException("CipherV4AesGcm decryption error", e);
+        }
+    }
+}
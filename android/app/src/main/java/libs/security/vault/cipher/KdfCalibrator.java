@@ -0,0 +1,198 @@
+package libs.security.vault.cipher;
+
+import android.content.Context;
+import android.content.SharedPreferences;
+import android.util.Log;
+
+import androidx.annotation.NonNull;
+
+import libs.security.crypto.Crypto;
+import libs.security.crypto.ScryptEngine;
+
+/*
+ Calibrate scrypt cost parameters once per device against a target unlock latency
+ NOTE: cheap devices get a lower cost to unlock in time, fast devices get more cost at the same latency
+ the chosen parameters are stored in every cipher envelope, so decryption never needs calibration
+*/
+public class KdfCalibrator {
+    private static final String LOG_TAG = KdfCalibrator.class.getSimpleName();
+    private static final String KDF_PROFILE_DATA = "RN_KEYCHAIN_KDF";
+
+    // target time for a single passcode derivation
+    static final long TARGET_LATENCY_MS = 400;
+
+    // bounds of the cost parameters
+    static final int BLOCK_SIZE = 8;
+    static final int MAX_BLOCK_SIZE = 16;
+    static final int MIN_LOG2_N = 13;
+    static final int MAX_LOG2_N = 15;
+    static final int MAX_PARALLELISM = 4;
+
+    // cost of the probe used for measuring the device
+    private static final int PROBE_LOG2_N = 12;
+
+    public static class Profile {
+        public final int log2N;
+        public final int r;
+        public final int p;
+
+        Profile(final int log2N, final int r, final int p) {
+            this.log2N = log2N;
+            this.r = r;
+            this.p = p;
+        }
+
+        public int getN() {
+            return 1 << log2N;
+        }
+
+        /*
+         Check the parameters are in the accepted bounds
+         NOTE: we check this before deriving anything to avoid huge allocations from a corrupted envelope
+         and to refuse envelopes with a cost below what we ever write
+        */
+        public boolean isValid() {
+            return log2N >= MIN_LOG2_N && log2N <= MAX_LOG2_N
+                    && r >= BLOCK_SIZE && r <= MAX_BLOCK_SIZE
+                    && p >= 1 && p <= MAX_PARALLELISM;
+        }
+    }
+
+    private SharedPreferences prefs;
+    private volatile Profile profile;
+
+    public static KdfCalibrator sharedInstance() {
+        return SingletonHolder.instance;
+    }
+
+    private static class SingletonHolder {
+        static final KdfCalibrator instance = new KdfCalibrator();
+    }
+
+
+    /*
+     Load the persisted profile, or calibrate in background if the device is not calibrated yet
+    */
+    public synchronized KdfCalibrator init(@NonNull final Context context) {
+        if (prefs != null) {
+            return this;
+        }
+
+        prefs = context.getSharedPreferences(KDF_PROFILE_DATA, Context.MODE_PRIVATE);
+
+        // device is already calibrated
+        final Profile stored = loadProfile();
+        if (stored != null) {
+            profile = stored;
+            return this;
+        }
+
+        // calibrated before init, just persist it
+        if (profile != null) {
+            storeProfile(profile);
+            return this;
+        }
+
+        Thread thread = new Thread(this::getProfile, "KdfCalibrator");
+        thread.setDaemon(true);
+        thread.start();
+
+        return this;
+    }
+
+    /*
+     Get device profile, calibrate if needed
+    */
+    @NonNull
+    public Profile getProfile() {
+        Profile current = profile;
+
+        if (current != null) {
+            return current;
+        }
+
+        synchronized (this) {
+            if (profile == null) {
+                profile = calibrate();
+                storeProfile(profile);
+            }
+            return profile;
+        }
+    }
+
+    @NonNull
+    private static Profile calibrate() {
+        try {
+            final byte[] password = Crypto.RandomBytes(32);
+            final byte[] salt = Crypto.RandomBytes(32);
+
+            // warm up, then take the best of two runs
+            long probeTime = Long.MAX_VALUE;
+            for (int i = 0; i < 3; i++) {
+                final long start = System.nanoTime();
+                ScryptEngine.derive(password, salt, 1 << PROBE_LOG2_N, BLOCK_SIZE, 1, 32);
+                final long elapsed = System.nanoTime() - start;
+                if (i > 0) {
+                    probeTime = Math.min(probeTime, elapsed);
+                }
+            }
+
+            final double probeMs = Math.max(0.01, probeTime / 1e6);
+
+            // never use more than 1/8 of the heap for a derivation
+            final long maxMemory = Runtime.getRuntime().maxMemory() / 8;
+
+            // scrypt cost is linear in N, pick the biggest N that fits the target latency
+            int log2N = MIN_LOG2_N;
+            while (log2N < MAX_LOG2_N
+                    && probeMs * (1 << (log2N + 1 - PROBE_LOG2_N)) <= TARGET_LATENCY_MS
+                    && ScryptEngine.getMemoryCost(1 << (log2N + 1), BLOCK_SIZE, 1) <= maxMemory) {
+                log2N++;
+            }
+
+            // spend the rest of the budget on the block size, cost and memory are both linear in r
+            // NOTE: p runs sequentially here and reuses the same work area, so it would add time without
+            // adding any memory hardness
+            final double estimatedMs = probeMs * (1 << (log2N - PROBE_LOG2_N));
+            int r = BLOCK_SIZE;
+            while (r < MAX_BLOCK_SIZE
+                    && estimatedMs * (r + 1) / BLOCK_SIZE <= TARGET_LATENCY_MS
+                    && ScryptEngine.getMemoryCost(1 << log2N, r + 1, 1) <= maxMemory) {
+                r++;
+            }
+
+            Log.d(LOG_TAG, "Calibrated scrypt profile N=2^" + log2N + " r=" + r + " p=1");
+
+            return new Profile(log2N, r, 1);
+        } catch (Exception e) {
+            Log.w(LOG_TAG, "Unable to calibrate, fallback to minimum profile", e);
+            return new Profile(MIN_LOG2_N, BLOCK_SIZE, 1);
+        }
+    }
+
+    private Profile loadProfile() {
+        if (prefs == null || !prefs.contains("log2n")) {
+            return null;
+        }
+
+        final Profile stored = new Profile(
+                prefs.getInt("log2n", MIN_LOG2_N),
+                prefs.getInt("r", BLOCK_SIZE),
+                prefs.getInt("p", 1)
+        );
+
+        return stored.isValid() ? stored : null;
+    }
+
+    private synchronized void storeProfile(@NonNull final Profile profile) {
+        if (prefs == null) {
+            return;
+        }
+
+        prefs.edit()
+                .putInt("log2n", profile.log2N)
+                .putInt("r", profile.r)
+                .putInt("p", profile.p)
+                .apply();
+    }
+}
@@ -0,0 +1,220 @@
+package libs.security.vault.cipher;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+import libs.security.crypto.Crypto;
+
+/*
+ Short lived cache of derived passcode hashes keyed by (passcode fingerprint, salt, derivation)
+ NOTE: with this, repeated vault operations in one unlock session only pay once for the expensive key derivation
+ entries are strictly expired after TTL and zeroized on eviction
+ concurrent requests for the same hash share a single derivation
+*/
+public class PasscodeHashCache {
+    // how long a derived hash can live in memory, entries are never extended on access
+    static final long TTL_MS = 30 * 1000;
+    // max number of hashes we keep at the same time
+    static final int MAX_ENTRIES = 16;
+
+    public interface Derivation {
+        @NonNull
+        byte[] derive() throws Exception;
+    }
+
+    private static class Entry {
+        final byte[] hash;
+        final long expiresAt;
+
+        Entry(@NonNull final byte[] hash, final long expiresAt) {
+            this.hash = hash;
+            this.expiresAt = expiresAt;
+        }
+
+        void zeroize() {
+            Arrays.fill(hash, (byte) 0);
+        }
+    }
+
+    // random key for fingerprinting the passcode, never leaves the memory
+    private final byte[] fingerprintKey = Crypto.RandomBytes(32);
+
+    private final LinkedHashMap<String, Entry> entries = new LinkedHashMap<String, Entry>(MAX_ENTRIES, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<String, Entry> eldest) {
+            if (size() > MAX_ENTRIES) {
+                eldest.getValue().zeroize();
+                return true;
+            }
+            return false;
+        }
+    };
+
+    // derivations in progress, other callers with the same key wait for these instead of deriving again
+    private final Map<String, FutureTask<byte[]>> inFlight = new HashMap<>();
+
+    private final ScheduledExecutorService cleaner = Executors.newSingleThreadScheduledExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "PasscodeHashCacheCleaner");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    public static PasscodeHashCache sharedInstance() {
+        return SingletonHolder.instance;
+    }
+
+    private static class SingletonHolder {
+        static final PasscodeHashCache instance = new PasscodeHashCache();
+    }
+
+
+    /*
+     Get the derived hash from cache or derive and cache it
+     NOTE: returned bytes are a copy and can be modified by the caller
+    */
+    @NonNull
+    public byte[] getOrDerive(@NonNull final String passcode,
+                              @NonNull final byte[] salt,
+                              @NonNull final String derivation,
+                              @NonNull final Derivation derive) throws Exception {
+        final String cacheKey = getCacheKey(passcode, salt, derivation);
+
+        while (true) {
+            final FutureTask<byte[]> flight;
+            final boolean isOwner;
+
+            synchronized (this) {
+                final byte[] cached = get(cacheKey);
+
+                if (cached != null) {
+                    return cached;
+                }
+
+                FutureTask<byte[]> running = inFlight.get(cacheKey);
+                isOwner = running == null;
+                if (isOwner) {
+                    running = new FutureTask<>(derive::derive);
+                    inFlight.put(cacheKey, running);
+                }
+                flight = running;
+            }
+
+            if (isOwner) {
+                try {
+                    // NOTE: derive outside of the lock, we don't want to block other derivations
+                    flight.run();
+                    final byte[] hash = getResult(flight);
+                    put(cacheKey, hash);
+                    return hash;
+                } finally {
+                    synchronized (this) {
+                        inFlight.remove(cacheKey);
+                    }
+                }
+            }
+
+            // wait for the running derivation and read the result from the cache
+            // NOTE: if the entry is already gone we just try again
+            getResult(flight);
+        }
+    }
+
+    @NonNull
+    private static byte[] getResult(@NonNull final FutureTask<byte[]> flight) throws Exception {
+        try {
+            return flight.get();
+        } catch (ExecutionException e) {
+            final Throwable cause = e.getCause();
+            if (cause instanceof Exception) {
+                throw (Exception) cause;
+            }
+            throw e;
+        }
+    }
+
+    /*
+     Zeroize and remove all cached hashes
+    */
+    public synchronized void clear() {
+        for (Entry entry : entries.values()) {
+            entry.zeroize();
+        }
+        entries.clear();
+    }
+
+    @Nullable
+    private synchronized byte[] get(@NonNull final String cacheKey) {
+        final Entry entry = entries.get(cacheKey);
+
+        if (entry == null) {
+            return null;
+        }
+
+        if (entry.expiresAt <= System.currentTimeMillis()) {
+            entries.remove(cacheKey);
+            entry.zeroize();
+            return null;
+        }
+
+        return entry.hash.clone();
+    }
+
+    private synchronized void put(@NonNull final String cacheKey, @NonNull final byte[] hash) {
+        final Entry previous = entries.put(cacheKey, new Entry(hash.clone(), System.currentTimeMillis() + TTL_MS));
+
+        if (previous != null) {
+            previous.zeroize();
+        }
+
+        // make sure the entry will be zeroized after expiry even if we never touch the cache again
+        cleaner.schedule(this::evictExpired, TTL_MS, TimeUnit.MILLISECONDS);
+    }
+
+    private synchronized void evictExpired() {
+        final long now = System.currentTimeMillis();
+
+        Iterator<Entry> iterator = entries.values().iterator();
+        while (iterator.hasNext()) {
+            Entry entry = iterator.next();
+            if (entry.expiresAt <= now) {
+                entry.zeroize();
+                iterator.remove();
+            }
+        }
+    }
+
+    /*
+     cacheKey = HMAC256(passcode | salt | derivation) with in memory random key
+     NOTE: we never keep the passcode itself or a plain hash of it as key
+    */
+    @NonNull
+    private String getCacheKey(@NonNull final String passcode, @NonNull final byte[] salt, @NonNull final String derivation)
+            throws Exception {
+        final byte[] passcodeBytes = passcode.getBytes(StandardCharsets.UTF_8);
+        final byte[] derivationBytes = derivation.getBytes(StandardCharsets.UTF_8);
+
+        final byte[] data = new byte[passcodeBytes.length + salt.length + derivationBytes.length + 2];
+        System.arraycopy(passcodeBytes, 0, data, 0, passcodeBytes.length);
+        System.arraycopy(salt, 0, data, passcodeBytes.length + 1, salt.length);
+        System.arraycopy(derivationBytes, 0, data, passcodeBytes.length + salt.length + 2, derivationBytes.length);
+
+        try {
+            return Crypto.BytesToHex(Crypto.HMAC256(data, fingerprintKey));
+        } finally {
+            Arrays.fill(passcodeBytes, (byte) 0);
+            Arrays.fill(data, (byte) 0);
+        }
+    }
+}
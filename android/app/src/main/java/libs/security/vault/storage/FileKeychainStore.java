@@ -0,0 +1,537 @@
+package libs.security.vault.storage;
+
+import android.content.Context;
+import android.util.Log;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.RandomAccessFile;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.zip.CRC32;
+
+import libs.security.vault.storage.cipherStorage.CipherStorage.EncryptionResult;
+
+/*
+ Append-only log file keychain store
+ NOTE: all entries are kept in memory, every change is appended to the log as a single checksummed record,
+ so a write never rewrites the whole storage like shared preferences do
+
+ log record = body length (4) | crc32 of body (4) | body
+ body = operation (1) | alias length (2) | alias | payload
+
+ - writes are synced to disk before returning, or once on commit when they are part of a batch
+ - a torn record at the end of the log (crash while writing) is dropped on load
+ - the log is compacted when it's mostly stale records, the snapshot is written to a temp file
+   and renamed over the log, so the log on disk is always complete
+*/
+public class FileKeychainStore implements KeychainStore {
+    private static final String LOG_TAG = FileKeychainStore.class.getSimpleName();
+    static final String LOG_FILE_NAME = "RN_KEYCHAIN.log";
+    private static final String SETTINGS_DATA = "RN_KEYCHAIN_STORE";
+    private static final String SETTINGS_ENABLED = "file_store_enabled";
+
+    private static final byte OP_PUT = 1;
+    private static final byte OP_REMOVE = 2;
+    private static final byte OP_VERSION = 3;
+
+    // max size of a single record, anything bigger is considered as corrupted log
+    private static final int MAX_RECORD_LENGTH = 16 * 1024 * 1024;
+    // don't bother compacting small logs
+    private static final long COMPACT_MIN_LOG_SIZE = 64 * 1024;
+
+    private final File logFile;
+    private final Map<String, ResultSet> entries = new HashMap<>();
+    private final Map<String, Integer> versions = new HashMap<>();
+
+    private FileOutputStream fileOutput;
+    private OutputStream output;
+    private long logSize = 0;
+    private int staleRecords = 0;
+
+    private int batchDepth = 0;
+    private boolean hasPendingWrites = false;
+
+    private static FileKeychainStore instance;
+    private static Boolean enabled;
+
+    /*
+     Check if the keychain should use the log store, decided once per process
+     NOTE: the log exists as soon as the import is committed, from then on the entries only live in the log,
+     so the log is used whatever the flag says
+    */
+    public static synchronized boolean isEnabled(@NonNull final Context context) {
+        if (enabled == null) {
+            enabled = getLogFile(context).exists()
+                    || context.getSharedPreferences(SETTINGS_DATA, Context.MODE_PRIVATE).getBoolean(SETTINGS_ENABLED, false);
+        }
+
+        return enabled;
+    }
+
+    /*
+     Switch the keychain to the log store, entries are moved from the shared preferences on next app start
+     NOTE: there is no way back, the shared preferences entries are removed after the import
+    */
+    public static void enable(@NonNull final Context context) {
+        context.getSharedPreferences(SETTINGS_DATA, Context.MODE_PRIVATE)
+                .edit()
+                .putBoolean(SETTINGS_ENABLED, true)
+                .commit();
+    }
+
+    /*
+     Get the process wide store
+     NOTE: on first use entries from the shared preferences storage are moved to the log
+    */
+    @NonNull
+    public static synchronized FileKeychainStore sharedInstance(@NonNull final Context context) {
+        if (instance == null) {
+            // NOTE: only assigned after the import is done, so a failed import is retried on next use
+            instance = open(getLogFile(context), new PrefsStorage(context));
+        }
+
+        return instance;
+    }
+
+    @NonNull
+    private static File getLogFile(@NonNull final Context context) {
+        return new File(context.getApplicationContext().getFilesDir(), LOG_FILE_NAME);
+    }
+
+    /*
+     Open the log, entries of the legacy store are moved to the log if the log does not exist yet
+     NOTE: the log file is only ever created by renaming a complete snapshot in place, so an existing log
+     means the import is committed, legacy entries are removed only after that, a crash at any point
+     either repeats the whole import or only the cleanup on next open
+    */
+    @NonNull
+    public static FileKeychainStore open(@NonNull final File logFile, @NonNull final KeychainStore legacyStore) {
+        final Set<String> aliases = legacyStore.getAllEntries();
+
+        try {
+            if (!logFile.exists()) {
+                final Map<String, ResultSet> legacyEntries = new HashMap<>();
+                final Map<String, Integer> legacyVersions = new HashMap<>();
+
+                for (String alias : aliases) {
+                    final ResultSet resultSet = legacyStore.getEncryptedEntry(alias);
+                    if (resultSet != null) {
+                        legacyEntries.put(alias, resultSet);
+                    }
+
+                    final Integer version = legacyStore.getVersion(alias);
+                    if (version != null) {
+                        legacyVersions.put(alias, version);
+                    }
+                }
+
+                writeSnapshot(logFile, legacyEntries, legacyVersions);
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+
+        final FileKeychainStore store = new FileKeychainStore(logFile);
+
+        // import is committed, legacy entries are not needed anymore
+        if (!aliases.isEmpty()) {
+            legacyStore.removeEntries(aliases);
+            legacyStore.sync();
+        }
+
+        return store;
+    }
+
+    public FileKeychainStore(@NonNull final File logFile) {
+        this.logFile = logFile;
+
+        try {
+            load();
+            openOutput();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    //region KeychainStore
+
+    @Override
+    public synchronized boolean hasEntry(@NonNull final String service) {
+        return entries.containsKey(service);
+    }
+
+    @Nullable
+    @Override
+    public synchronized String getEntryCipherStorageName(@NonNull final String service) {
+        final ResultSet resultSet = entries.get(service);
+        return resultSet != null ? resultSet.cipherStorageName : null;
+    }
+
+    @Nullable
+    @Override
+    public synchronized ResultSet getEncryptedEntry(@NonNull final String service) {
+        return entries.get(service);
+    }
+
+    @Override
+    public synchronized void storeEncryptedEntry(@NonNull final String service, @NonNull final EncryptionResult encryptionResult) {
+        final ResultSet resultSet = new ResultSet(encryptionResult.cipherName, encryptionResult.username, encryptionResult.password);
+
+        append(OP_PUT, service, Record.encode(resultSet.cipherStorageName, resultSet.username, resultSet.password));
+
+        if (entries.put(service, resultSet) != null) {
+            staleRecords++;
+        }
+
+        maybeCompact();
+    }
+
+    @Override
+    public synchronized void storeEncryptedEntries(@NonNull final Map<String, EncryptionResult> encryptionResults) {
+        beginBatch();
+
+        try {
+            for (Map.Entry<String, EncryptionResult> entry : encryptionResults.entrySet()) {
+                storeEncryptedEntry(entry.getKey(), entry.getValue());
+            }
+        } finally {
+            commitBatch();
+        }
+    }
+
+    @Override
+    public synchronized void removeEntry(@NonNull final String service) {
+        removeEntries(Collections.singletonList(service));
+    }
+
+    @Override
+    public synchronized void removeEntries(@NonNull final Collection<String> services) {
+        beginBatch();
+
+        try {
+            for (String service : services) {
+                if (!entries.containsKey(service) && !versions.containsKey(service)) {
+                    continue;
+                }
+
+                append(OP_REMOVE, service, new byte[0]);
+
+                // the remove record itself and the records it replaces are stale
+                staleRecords++;
+                if (entries.remove(service) != null) {
+                    staleRecords++;
+                }
+                if (versions.remove(service) != null) {
+                    staleRecords++;
+                }
+            }
+        } finally {
+            commitBatch();
+        }
+    }
+
+    @Override
+    public synchronized void storeVersion(@NonNull final String service, final int version) {
+        append(OP_VERSION, service, ByteBuffer.allocate(4).putInt(version).array());
+
+        if (versions.put(service, version) != null) {
+            staleRecords++;
+        }
+
+        maybeCompact();
+    }
+
+    @Nullable
+    @Override
+    public synchronized Integer getVersion(@NonNull final String service) {
+        return versions.get(service);
+    }
+
+    @NonNull
+    @Override
+    public synchronized Set<String> getAllEntries() {
+        return new HashSet<>(entries.keySet());
+    }
+
+    @NonNull
+    @Override
+    public synchronized Map<String, String> getAllEntriesWithCipherStorage() {
+        final Map<String, String> result = new HashMap<>();
+        for (Map.Entry<String, ResultSet> entry : entries.entrySet()) {
+            result.put(entry.getKey(), entry.getValue().cipherStorageName);
+        }
+        return result;
+    }
+
+    @Override
+    public synchronized void beginBatch() {
+        batchDepth++;
+    }
+
+    @Override
+    public synchronized void commitBatch() {
+        if (batchDepth == 0) {
+            throw new IllegalStateException("commitBatch without beginBatch");
+        }
+
+        batchDepth--;
+
+        if (batchDepth == 0) {
+            sync();
+            maybeCompact();
+        }
+    }
+
+    @Override
+    public synchronized void sync() {
+        if (!hasPendingWrites) {
+            return;
+        }
+
+        try {
+            output.flush();
+            fileOutput.getFD().sync();
+            hasPendingWrites = false;
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    //endregion
+
+    private void load() throws IOException {
+        if (!logFile.exists()) {
+            return;
+        }
+
+        long validLength = 0;
+
+        try (DataInputStream input = new DataInputStream(new BufferedInputStream(new FileInputStream(logFile)))) {
+            while (true) {
+                final int length;
+                final int checksum;
+                final byte[] body;
+
+                try {
+                    length = input.readInt();
+                    if (length <= 0 || length > MAX_RECORD_LENGTH) {
+                        break;
+                    }
+                    checksum = input.readInt();
+                    body = new byte[length];
+                    input.readFully(body);
+                } catch (EOFException e) {
+                    // torn record at the end of the log
+                    break;
+                }
+
+                if (getChecksum(body) != checksum || !replay(body)) {
+                    break;
+                }
+
+                validLength += 8 + length;
+            }
+        }
+
+        // drop anything after the last valid record, so new records are appended after a valid one
+        if (validLength < logFile.length()) {
+            Log.w(LOG_TAG, "Dropping corrupted keychain log tail.");
+            try (RandomAccessFile file = new RandomAccessFile(logFile, "rw")) {
+                file.setLength(validLength);
+                file.getFD().sync();
+            }
+        }
+
+        logSize = validLength;
+    }
+
+    private boolean replay(@NonNull final byte[] body) {
+        try {
+            final ByteBuffer buffer = ByteBuffer.wrap(body);
+            final byte operation = buffer.get();
+            final String alias = new String(Record.readBytes(buffer, buffer.getShort() & 0xffff), StandardCharsets.UTF_8);
+            final byte[] payload = Record.readBytes(buffer, buffer.remaining());
+
+            switch (operation) {
+                case OP_PUT:
+                    final ResultSet resultSet = Record.decode(payload);
+                    if (resultSet == null) {
+                        return false;
+                    }
+                    if (entries.put(alias, resultSet) != null) {
+                        staleRecords++;
+                    }
+                    return true;
+                case OP_REMOVE:
+                    staleRecords++;
+                    if (entries.remove(alias) != null) {
+                        staleRecords++;
+                    }
+                    if (versions.remove(alias) != null) {
+                        staleRecords++;
+                    }
+                    return true;
+                case OP_VERSION:
+                    if (versions.put(alias, ByteBuffer.wrap(payload).getInt()) != null) {
+                        staleRecords++;
+                    }
+                    return true;
+                default:
+                    return false;
+            }
+        } catch (RuntimeException e) {
+            return false;
+        }
+    }
+
+    private void append(final byte operation, @NonNull final String alias, @NonNull final byte[] payload) {
+        try {
+            logSize += writeRecord(output, operation, alias, payload);
+            hasPendingWrites = true;
+
+            // not part of a batch, make it durable right away
+            if (batchDepth == 0) {
+                sync();
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private static int writeRecord(@NonNull final OutputStream stream,
+                                   final byte operation,
+                                   @NonNull final String alias,
+                                   @NonNull final byte[] payload) throws IOException {
+        final byte[] aliasBytes = alias.getBytes(StandardCharsets.UTF_8);
+
+        if (aliasBytes.length > 0xffff) {
+            throw new IOException("Alias is too long.");
+        }
+
+        final ByteBuffer body = ByteBuffer.allocate(1 + 2 + aliasBytes.length + payload.length);
+        body.put(operation);
+        body.putShort((short) aliasBytes.length);
+        body.put(aliasBytes);
+        body.put(payload);
+
+        final ByteBuffer record = ByteBuffer.allocate(8 + body.capacity());
+        record.putInt(body.capacity());
+        record.putInt(getChecksum(body.array()));
+        record.put(body.array());
+
+        stream.write(record.array());
+
+        return record.capacity();
+    }
+
+    private void maybeCompact() {
+        // never compact in the middle of a batch
+        if (batchDepth > 0 || logSize < COMPACT_MIN_LOG_SIZE) {
+            return;
+        }
+
+        final int liveRecords = entries.size() + versions.size();
+
+        if (staleRecords <= liveRecords) {
+            return;
+        }
+
+        try {
+            compact();
+        } catch (IOException e) {
+            // not critical, the log is still valid and we will try again on next write
+            Log.w(LOG_TAG, "Unable to compact keychain log.", e);
+        }
+    }
+
+    /*
+     Write a snapshot of the live entries to a temp file and rename it over the log
+    */
+    private void compact() throws IOException {
+        // make sure all pending writes of the old log are done before we switch
+        closeOutput();
+
+        try {
+            logSize = writeSnapshot(logFile, entries, versions);
+            staleRecords = 0;
+            hasPendingWrites = false;
+        } finally {
+            openOutput();
+        }
+    }
+
+    /*
+     Write the entries to a temp file, sync and rename it to the log file, returns the size of the log
+    */
+    private static long writeSnapshot(@NonNull final File logFile,
+                                      @NonNull final Map<String, ResultSet> entries,
+                                      @NonNull final Map<String, Integer> versions) throws IOException {
+        final File tempFile = new File(logFile.getPath() + ".tmp");
+
+        long snapshotSize = 0;
+
+        try (FileOutputStream tempOutput = new FileOutputStream(tempFile);
+             OutputStream stream = new BufferedOutputStream(tempOutput)) {
+            for (Map.Entry<String, ResultSet> entry : entries.entrySet()) {
+                final ResultSet resultSet = entry.getValue();
+                snapshotSize += writeRecord(stream, OP_PUT, entry.getKey(), Record.encode(resultSet.cipherStorageName, resultSet.username, resultSet.password));
+            }
+
+            for (Map.Entry<String, Integer> version : versions.entrySet()) {
+                snapshotSize += writeRecord(stream, OP_VERSION, version.getKey(), ByteBuffer.allocate(4).putInt(version.getValue()).array());
+            }
+
+            stream.flush();
+            tempOutput.getFD().sync();
+        } catch (IOException e) {
+            tempFile.delete();
+            throw e;
+        }
+
+        if (!tempFile.renameTo(logFile)) {
+            tempFile.delete();
+            throw new IOException("Unable to replace keychain log.");
+        }
+
+        return snapshotSize;
+    }
+
+    private void openOutput() throws IOException {
+        fileOutput = new FileOutputStream(logFile, true);
+        output = new BufferedOutputStream(fileOutput);
+    }
+
+    private void closeOutput() throws IOException {
+        if (output != null) {
+            output.flush();
+            fileOutput.getFD().sync();
+            output.close();
+            output = null;
+            fileOutput = null;
+        }
+    }
+
+    private static int getChecksum(@NonNull final byte[] body) {
+        final CRC32 crc = new CRC32();
+        crc.update(body, 0, body.length);
+        return (int) crc.getValue();
+    }
+}
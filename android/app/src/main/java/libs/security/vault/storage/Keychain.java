@@ -1,23 +1,31 @@
 package libs.security.vault.storage;
 
+import android.content.Context;
+
 import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
 import androidx.annotation.StringDef;
 
-import com.facebook.react.bridge.ReactApplicationContext;
-
-import libs.security.vault.storage.PrefsStorage.ResultSet;
+import libs.security.vault.storage.KeychainStore.ResultSet;
 import libs.security.vault.storage.cipherStorage.CipherStorage;
-import libs.security.vault.storage.cipherStorage.CipherStorage.DecryptionResult;
+import libs.security.vault.storage.cipherStorage.CipherStorage.BinaryDecryptionResult;
 import libs.security.vault.storage.cipherStorage.CipherStorage.EncryptionResult;
 import libs.security.vault.storage.cipherStorage.CipherStorageKeystoreAesCbc;
 import libs.security.vault.exceptions.CryptoFailedException;
 import libs.security.vault.exceptions.KeyStoreAccessException;
 import libs.security.vault.storage.cipherStorage.CipherStorageKeystoreAesGcm;
+import libs.security.vault.storage.cipherStorage.CipherStorageKeystoreEnvelope;
 
+import java.nio.charset.StandardCharsets;
+import java.util.Collection;
 import java.util.HashMap;
 import java.util.Map;
 import java.util.Objects;
 import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
 
 public class Keychain {
     /**
@@ -31,7 +39,7 @@ public class Keychain {
     /**
      * Supported ciphers.
      */
-    @StringDef({KnownCiphers.AESCBC, KnownCiphers.AESGCM})
+    @StringDef({KnownCiphers.AESCBC, KnownCiphers.AESGCM, KnownCiphers.ENVELOPE})
     public @interface KnownCiphers {
         /**
          * AES encryption.
@@ -41,6 +49,19 @@ public class Keychain {
         String AESCBC = "KeystoreAESCBC";
         // GCM
         String AESGCM = "KeystoreAESGCM";
+        // GCM with data keys wrapped by a single keystore master key
+        String ENVELOPE = "KeystoreEnvelope";
+    }
+
+    /**
+     * Keystore key policy for new entries.
+     */
+    @StringDef({KeyPolicy.PER_ALIAS, KeyPolicy.ENVELOPE})
+    public @interface KeyPolicy {
+        // a hardware backed keystore key per alias
+        String PER_ALIAS = "PER_ALIAS";
+        // software data key per alias wrapped with a shared keystore master key
+        String ENVELOPE = "ENVELOPE";
     }
 
     /**
@@ -48,87 +69,313 @@ public class Keychain {
      */
     private final Map<String, CipherStorage> cipherStorageMap = new HashMap<>();
     /**
-     * Shared preferences storage.
+     * Encrypted entries storage.
+     */
+    private final KeychainStore store;
+    /**
+     * Key policy used for encryption, existing entries are always decrypted with the cipher they are stored with.
+     */
+    @KeyPolicy
+    private volatile String keyPolicy = KeyPolicy.PER_ALIAS;
+    /**
+     * Key policy pinned by alias, these aliases ignore the keychain key policy.
      */
-    private final PrefsStorage prefsStorage;
+    private final Map<String, String> aliasKeyPolicies = new ConcurrentHashMap<>();
     //endregion
 
     //region Initialization
 
+    private static Keychain instance;
+
+    /**
+     * Application wide keychain, shared by all native modules so they share the same caches.
+     * NOTE: new entries use the envelope key policy, unless the owner of the alias pins its policy
+     */
+    @NonNull
+    public static synchronized Keychain sharedInstance(@NonNull final Context context) {
+        if (instance == null) {
+            instance = new Keychain(context.getApplicationContext());
+            instance.setKeyPolicy(KeyPolicy.ENVELOPE);
+        }
+
+        return instance;
+    }
+
     /**
-     * Default constructor.
+     * Default constructor, entries are stored in the shared preferences, or in the shared log file store when enabled.
+     * NOTE: the log store is enabled at runtime with FileKeychainStore.enable and used from the next app start
      */
-    public Keychain(@NonNull final ReactApplicationContext reactContext) {
-        // create prefs storage
-        prefsStorage = new PrefsStorage(reactContext);
+    public Keychain(@NonNull final Context context) {
+        this(context, FileKeychainStore.isEnabled(context) ? FileKeychainStore.sharedInstance(context) : new PrefsStorage(context));
+    }
+
+    public Keychain(@NonNull final Context context, @NonNull final KeychainStore store) {
+        this.store = store;
 
         // add supported cipher storage
         addCipherStorageToMap(new CipherStorageKeystoreAesCbc());
         addCipherStorageToMap(new CipherStorageKeystoreAesGcm());
+        addCipherStorageToMap(new CipherStorageKeystoreEnvelope());
+    }
+
+    public void setKeyPolicy(@KeyPolicy @NonNull final String keyPolicy) {
+        this.keyPolicy = keyPolicy;
     }
 
+    /**
+     * Pin the key policy for new entries of the alias, no matter which policy the keychain uses.
+     */
+    public void setKeyPolicy(@NonNull final String alias, @KeyPolicy @NonNull final String keyPolicy) {
+        aliasKeyPolicies.put(alias, keyPolicy);
+    }
+
+    /*
+      NOTE: safe to call from multiple threads, cipher storages use a cipher instance per thread
+      and the store is thread-safe, operations on the same alias should still be serialized by the caller
+     */
     public void setItem(@NonNull final String alias,
                         @NonNull final String username,
                         @NonNull final String password) throws CryptoFailedException {
 
         // get latest cipher storage
-        final CipherStorage storage = getCipherStorageForEncryption();
+        final CipherStorage storage = getCipherStorageForEncryption(alias);
 
         // encrypt with cipher storage
         final EncryptionResult result = storage.encrypt(alias, username, password);
 
-        // set in prefs storage
-        prefsStorage.storeEncryptedEntry(alias, result);
+        // persist the encrypted entry
+        store.storeEncryptedEntry(alias, result);
+    }
+
+    /*
+      Store an item with a binary password
+      NOTE: the password is encrypted as it is, without any text encoding
+     */
+    public void setItem(@NonNull final String alias,
+                        @NonNull final String username,
+                        @NonNull final byte[] password) throws CryptoFailedException {
+
+        // get latest cipher storage
+        final CipherStorage storage = getCipherStorageForEncryption(alias);
+
+        // encrypt with cipher storage
+        final EncryptionResult result = storage.encrypt(alias, username.getBytes(StandardCharsets.UTF_8), password);
+
+        // persist the encrypted entry
+        store.storeEncryptedEntry(alias, result);
     }
 
     public Map<String, String> getItem(@NonNull final String alias) throws CryptoFailedException {
-        final ResultSet resultSet = prefsStorage.getEncryptedEntry(alias);
+        final BinaryDecryptionResult decryptionResult = getBinaryItem(alias);
 
         // no entry found for given name
-        if (resultSet == null) {
+        if (decryptionResult == null) {
             return null;
         }
 
-        final String storageName = resultSet.cipherStorageName;
+        return toItem(decryptionResult);
+    }
 
-        CipherStorage cipher = getCipherStorageByName(storageName);
+    /*
+      Get the item without converting username and password to strings
+     */
+    @Nullable
+    public BinaryDecryptionResult getBinaryItem(@NonNull final String alias) throws CryptoFailedException {
+        final ResultSet resultSet = store.getEncryptedEntry(alias);
 
-        final DecryptionResult decryptionResult = decryptToResult(alias, cipher, resultSet);
+        // no entry found for given name
+        if (resultSet == null) {
+            return null;
+        }
 
-        Map<String, String> item = new HashMap<>();
+        final String storageName = resultSet.cipherStorageName;
 
-        item.put(Maps.USERNAME, decryptionResult.username);
-        item.put(Maps.PASSWORD, decryptionResult.password);
+        CipherStorage cipher = getCipherStorageByName(storageName);
 
-        return item;
+        return decryptToResult(alias, cipher, resultSet);
     }
 
     public void deleteItem(@NonNull final String alias) throws KeyStoreAccessException {
         // First we clean up the cipher storage (using the cipher storage that was used to store the entry)
-        final ResultSet resultSet = prefsStorage.getEncryptedEntry(alias);
+        final String cipherStorageName = store.getEntryCipherStorageName(alias);
 
-        if (resultSet != null) {
-            final CipherStorage cipherStorage = getCipherStorageByName(resultSet.cipherStorageName);
+        if (cipherStorageName != null) {
+            final CipherStorage cipherStorage = getCipherStorageByName(cipherStorageName);
             cipherStorage.removeKey(alias);
         }
 
-        // And then we remove the entry in the shared preferences
-        prefsStorage.removeEntry(alias);
+        // And then we remove the entry from the store
+        store.removeEntry(alias);
+    }
+
+    /*
+      Batch variants of setItem/getItem/deleteItem
+      NOTE: keystore operations of the items run in parallel, the store is written once for all items.
+      aliases in a batch should be distinct and not be used by other operations at the same time
+     */
+    public void setItems(@NonNull final Map<String, Map<String, String>> items) throws CryptoFailedException {
+        final Map<String, EncryptionResult> results = runForItems(items.keySet(), alias -> {
+            final Map<String, String> item = Objects.requireNonNull(items.get(alias));
+            // get latest cipher storage
+            return getCipherStorageForEncryption(alias).encrypt(
+                    alias,
+                    Objects.requireNonNull(item.get(Maps.USERNAME)),
+                    Objects.requireNonNull(item.get(Maps.PASSWORD))
+            );
+        });
+
+        // persist all encrypted entries with a single write
+        store.storeEncryptedEntries(results);
+    }
+
+    /*
+      Returns the items which are found, missing aliases are not included in the result
+     */
+    @NonNull
+    public Map<String, Map<String, String>> getItems(@NonNull final Collection<String> aliases) throws CryptoFailedException {
+        final Map<String, Map<String, String>> items = new HashMap<>();
+
+        for (Map.Entry<String, BinaryDecryptionResult> entry : getBinaryItems(aliases).entrySet()) {
+            items.put(entry.getKey(), toItem(entry.getValue()));
+        }
+
+        return items;
+    }
+
+    @NonNull
+    public Map<String, BinaryDecryptionResult> getBinaryItems(@NonNull final Collection<String> aliases) throws CryptoFailedException {
+        final Map<String, ResultSet> resultSets = new HashMap<>();
+
+        for (String alias : aliases) {
+            final ResultSet resultSet = store.getEncryptedEntry(alias);
+            if (resultSet != null) {
+                resultSets.put(alias, resultSet);
+            }
+        }
+
+        return runForItems(resultSets.keySet(), alias -> {
+            final ResultSet resultSet = Objects.requireNonNull(resultSets.get(alias));
+            return decryptToResult(alias, getCipherStorageByName(resultSet.cipherStorageName), resultSet);
+        });
+    }
+
+    public void deleteItems(@NonNull final Collection<String> aliases) throws KeyStoreAccessException {
+        // clean up the keys with the cipher storage that was used to store the entry
+        for (String alias : aliases) {
+            final String cipherStorageName = store.getEntryCipherStorageName(alias);
+
+            if (cipherStorageName != null) {
+                getCipherStorageByName(cipherStorageName).removeKey(alias);
+            }
+        }
+
+        // and then remove all entries with a single write
+        store.removeEntries(aliases);
+    }
+
+    /*
+      Set plain version header for the item, can be read without decryption
+     */
+    public void setItemVersion(@NonNull final String alias, final int version) {
+        store.storeVersion(alias, version);
+    }
+
+    @Nullable
+    public Integer getItemVersion(@NonNull final String alias) {
+        return store.getVersion(alias);
+    }
+
+    @NonNull
+    public Set<String> getAllItems() {
+        return store.getAllEntries();
     }
 
     public boolean itemExist(@NonNull final String alias) {
-        final ResultSet resultSet = prefsStorage.getEncryptedEntry(alias);
-        return resultSet != null;
+        return store.hasEntry(alias);
     }
 
     /*
       Note: this will clear the entire keychain storage, including the generated keys
      */
     public void clear() throws KeyStoreAccessException {
-        final Set<String> entries = prefsStorage.getAllEntries();
+        final Map<String, String> entries = store.getAllEntriesWithCipherStorage();
 
-        for (String entry : entries) {
-            deleteItem(entry);
+        // remove the keys with the cipher storage that was used to store the entry
+        for (Map.Entry<String, String> entry : entries.entrySet()) {
+            getCipherStorageByName(entry.getValue()).removeKey(entry.getKey());
+        }
+
+        // and then remove all entries with a single write
+        store.removeEntries(entries.keySet());
+
+        // nothing is wrapped with the shared master key anymore, remove it as well
+        ((CipherStorageKeystoreEnvelope) getCipherStorageByName(KnownCiphers.ENVELOPE)).removeMasterKey();
+    }
+
+    /*
+      Group the following writes, they are made durable together on commitBatch
+     */
+    public void beginBatch() {
+        store.beginBatch();
+    }
+
+    public void commitBatch() {
+        store.commitBatch();
+    }
+
+    /*
+      Returns after all previous writes are on disk
+     */
+    public void sync() {
+        store.sync();
+    }
+
+    private interface ItemTask<T> {
+        T run(@NonNull final String alias) throws Exception;
+    }
+
+    /*
+      Run the task for every alias on the common fork join pool
+      NOTE: single items run on the calling thread, the first failure is thrown after all tasks are done
+     */
+    @NonNull
+    private static <T> Map<String, T> runForItems(@NonNull final Collection<String> aliases,
+                                                  @NonNull final ItemTask<T> task) throws CryptoFailedException {
+        final Map<String, T> results = new HashMap<>();
+
+        try {
+            if (aliases.size() <= 1) {
+                for (String alias : aliases) {
+                    results.put(alias, task.run(alias));
+                }
+                return results;
+            }
+
+            final Map<String, ForkJoinTask<T>> tasks = new HashMap<>();
+            for (String alias : aliases) {
+                tasks.put(alias, ForkJoinPool.commonPool().submit(() -> task.run(alias)));
+            }
+
+            Exception failure = null;
+            for (Map.Entry<String, ForkJoinTask<T>> entry : tasks.entrySet()) {
+                try {
+                    results.put(entry.getKey(), entry.getValue().get());
+                } catch (ExecutionException e) {
+                    if (failure == null) {
+                        failure = e.getCause() instanceof Exception ? (Exception) e.getCause() : e;
+                    }
+                }
+            }
+
+            if (failure != null) {
+                throw failure;
+            }
+
+            return results;
+        } catch (CryptoFailedException e) {
+            throw e;
+        } catch (Exception e) {
+            throw new CryptoFailedException("Keychain batch operation failed: " + e.getMessage(), e);
         }
     }
 
@@ -140,18 +387,33 @@ public class Keychain {
      * Try to decrypt with provided storage.
      */
     @NonNull
-    private DecryptionResult decryptToResult(@NonNull final String alias,
-                                             @NonNull final CipherStorage storage,
-                                             @NonNull final ResultSet resultSet)
+    private BinaryDecryptionResult decryptToResult(@NonNull final String alias,
+                                                   @NonNull final CipherStorage storage,
+                                                   @NonNull final ResultSet resultSet)
             throws CryptoFailedException {
-        return storage.decrypt(alias, resultSet.username, resultSet.password);
+        return storage.decryptToBytes(alias, resultSet.username, resultSet.password);
+    }
+
+    @NonNull
+    private static Map<String, String> toItem(@NonNull final BinaryDecryptionResult decryptionResult) {
+        final Map<String, String> item = new HashMap<>();
+
+        item.put(Maps.USERNAME, new String(decryptionResult.username, StandardCharsets.UTF_8));
+        item.put(Maps.PASSWORD, new String(decryptionResult.password, StandardCharsets.UTF_8));
+
+        return item;
     }
 
     /**
-     * use the most strong cipher storage encryption
+     * use the most strong cipher storage encryption for the key policy of the alias
      */
     @NonNull
-    CipherStorage getCipherStorageForEncryption() {
+    CipherStorage getCipherStorageForEncryption(@NonNull final String alias) {
+        final String policy = aliasKeyPolicies.getOrDefault(alias, keyPolicy);
+
+        if (KeyPolicy.ENVELOPE.equals(policy)) {
+            return getCipherStorageByName(KnownCiphers.ENVELOPE);
+        }
         return getCipherStorageByName(KnownCiphers.AESGCM);
     }
 
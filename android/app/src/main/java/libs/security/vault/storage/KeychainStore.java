@@ -0,0 +1,133 @@
+package libs.security.vault.storage;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Collection;
+import java.util.Map;
+import java.util.Set;
+
+import libs.security.vault.storage.Keychain.KnownCiphers;
+import libs.security.vault.storage.cipherStorage.CipherStorage;
+import libs.security.vault.storage.cipherStorage.CipherStorage.EncryptionResult;
+
+/*
+ Persistent storage of the encrypted keychain entries
+ NOTE: write methods throw UncheckedIOException if the store cannot be written
+*/
+public interface KeychainStore {
+    class ResultSet extends CipherStorage.CipherResult<byte[]> {
+        @KnownCiphers
+        public final String cipherStorageName;
+
+        public ResultSet(@KnownCiphers final String cipherStorageName, final byte[] usernameBytes, final byte[] passwordBytes) {
+            super(usernameBytes, passwordBytes);
+
+            this.cipherStorageName = cipherStorageName;
+        }
+    }
+
+    boolean hasEntry(@NonNull final String service);
+
+    @Nullable
+    @KnownCiphers
+    String getEntryCipherStorageName(@NonNull final String service);
+
+    @Nullable
+    ResultSet getEncryptedEntry(@NonNull final String service);
+
+    void storeEncryptedEntry(@NonNull final String service, @NonNull final EncryptionResult encryptionResult);
+
+    /*
+     Store multiple entries as a single write
+    */
+    void storeEncryptedEntries(@NonNull final Map<String, EncryptionResult> encryptionResults);
+
+    void removeEntry(@NonNull final String service);
+
+    void removeEntries(@NonNull final Collection<String> services);
+
+    void storeVersion(@NonNull final String service, final int version);
+
+    @Nullable
+    Integer getVersion(@NonNull final String service);
+
+    @NonNull
+    Set<String> getAllEntries();
+
+    @NonNull
+    Map<String, String> getAllEntriesWithCipherStorage();
+
+    /*
+     Group the following writes, they will be made durable together on commitBatch
+     NOTE: batches can be nested, only the outer commit writes
+    */
+    void beginBatch();
+
+    void commitBatch();
+
+    /*
+     Durability barrier, returns after all previous writes are on disk
+    */
+    void sync();
+
+    /*
+     Binary entry record shared between stores
+     record = format (1) | cipher storage name length (1) | cipher storage name | username length (4) | username | password length (4) | password
+    */
+    class Record {
+        private static final byte RECORD_FORMAT = 1;
+
+        @NonNull
+        static byte[] encode(@NonNull final String cipherStorageName,
+                             @NonNull final byte[] username,
+                             @NonNull final byte[] password) {
+            final byte[] cipherStorageNameBytes = cipherStorageName.getBytes(StandardCharsets.UTF_8);
+
+            final ByteBuffer record = ByteBuffer.allocate(2 + cipherStorageNameBytes.length + 4 + username.length + 4 + password.length);
+            record.put(RECORD_FORMAT);
+            record.put((byte) cipherStorageNameBytes.length);
+            record.put(cipherStorageNameBytes);
+            record.putInt(username.length);
+            record.put(username);
+            record.putInt(password.length);
+            record.put(password);
+
+            return record.array();
+        }
+
+        @Nullable
+        static ResultSet decode(@NonNull final byte[] bytes) {
+            try {
+                final ByteBuffer record = ByteBuffer.wrap(bytes);
+
+                if (record.get() != RECORD_FORMAT) {
+                    return null;
+                }
+
+                final byte[] cipherStorageNameBytes = readBytes(record, record.get() & 0xff);
+                final byte[] username = readBytes(record, record.getInt());
+                final byte[] password = readBytes(record, record.getInt());
+
+                return new ResultSet(new String(cipherStorageNameBytes, StandardCharsets.UTF_8), username, password);
+            } catch (RuntimeException e) {
+                // malformed record
+                return null;
+            }
+        }
+
+        @NonNull
+        static byte[] readBytes(@NonNull final ByteBuffer record, final int length) {
+            // check the length before allocating
+            if (length < 0 || length > record.remaining()) {
+                throw new IllegalArgumentException("Invalid record length.");
+            }
+
+            final byte[] bytes = new byte[length];
+            record.get(bytes);
+            return bytes;
+        }
+    }
+}
@@ -12,38 +12,132 @@ import android.util.Base64;
 import androidx.annotation.NonNull;
 import androidx.annotation.Nullable;
 
-import com.facebook.react.bridge.ReactApplicationContext;
-
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
 import java.util.HashSet;
+import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
 
 import libs.security.vault.storage.Keychain.KnownCiphers;
-import libs.security.vault.storage.cipherStorage.CipherStorage;
 import libs.security.vault.storage.cipherStorage.CipherStorage.EncryptionResult;
 
-public class PrefsStorage {
+public class PrefsStorage implements KeychainStore {
     public static final String KEYCHAIN_DATA = "RN_KEYCHAIN";
 
-    static public class ResultSet extends CipherStorage.CipherResult<byte[]> {
-        @KnownCiphers
-        public final String cipherStorageName;
+    /*
+     Index of all entries alias -> cipher storage name
+     NOTE: shared preferences are process wide, so the index is shared between all storage instances,
+     it's loaded once with a single scan and updated on every store/remove
+    */
+    private static final Map<String, String> entriesIndex = new ConcurrentHashMap<>();
+    private static volatile boolean isIndexLoaded = false;
 
-        public ResultSet(@KnownCiphers final String cipherStorageName, final byte[] usernameBytes, final byte[] passwordBytes) {
-            super(usernameBytes, passwordBytes);
+    @NonNull
+    private final SharedPreferences prefs;
 
-            this.cipherStorageName = cipherStorageName;
-        }
+    public PrefsStorage(@NonNull final Context context) {
+        this.prefs = context.getSharedPreferences(KEYCHAIN_DATA, Context.MODE_PRIVATE);
     }
 
     @NonNull
-    private final SharedPreferences prefs;
+    private Map<String, String> getIndex() {
+        if (isIndexLoaded) {
+            return entriesIndex;
+        }
+
+        synchronized (PrefsStorage.class) {
+            if (!isIndexLoaded) {
+                final Map<String, ?> all = prefs.getAll();
+
+                for (Map.Entry<String, ?> entry : all.entrySet()) {
+                    final String key = entry.getKey();
+
+                    if (!(entry.getValue() instanceof String)) {
+                        continue;
+                    }
+
+                    final String alias = key.substring(0, Math.max(0, key.length() - 2));
+
+                    if (isKeyForRecord(key)) {
+                        final ResultSet resultSet = decodeRecord((String) entry.getValue());
+                        if (resultSet != null) {
+                            entriesIndex.put(alias, resultSet.cipherStorageName);
+                        }
+                    } else if (isKeyForCipherStorage(key)
+                            && !all.containsKey(getKeyForRecord(alias))
+                            && all.containsKey(getKeyForUsername(alias))
+                            && all.containsKey(getKeyForPassword(alias))) {
+                        // legacy entry, only complete entries
+                        entriesIndex.put(alias, (String) entry.getValue());
+                    }
+                }
+
+                isIndexLoaded = true;
+            }
+        }
+
+        return entriesIndex;
+    }
 
-    public PrefsStorage(@NonNull final ReactApplicationContext reactContext) {
-        this.prefs = reactContext.getSharedPreferences(KEYCHAIN_DATA, Context.MODE_PRIVATE);
+    @Override
+    public boolean hasEntry(@NonNull final String service) {
+        return getIndex().containsKey(service);
     }
 
+    @Override
+    @Nullable
+    @KnownCiphers
+    public String getEntryCipherStorageName(@NonNull final String service) {
+        return getIndex().get(service);
+    }
+
+    @Override
     @Nullable
     public ResultSet getEncryptedEntry(@NonNull final String service) {
+        // not in the index, no need to look up the prefs
+        if (!hasEntry(service)) {
+            return null;
+        }
+
+        final String record = prefs.getString(getKeyForRecord(service), null);
+
+        if (record != null) {
+            final ResultSet resultSet = decodeRecord(record);
+
+            // damaged record, drop it from the index so hasEntry agrees with this result
+            if (resultSet == null) {
+                getIndex().remove(service);
+            }
+
+            return resultSet;
+        }
+
+        // entry stored in the legacy format, migrate it to a single record
+        final ResultSet resultSet = getLegacyEncryptedEntry(service);
+
+        if (resultSet == null) {
+            getIndex().remove(service);
+            return null;
+        }
+
+        // NOTE: written synchronously, the legacy keys are only removed together with the new record on disk
+        prefs.edit()
+                .putString(getKeyForRecord(service), encodeRecord(resultSet.cipherStorageName, resultSet.username, resultSet.password))
+                .remove(getKeyForUsername(service))
+                .remove(getKeyForPassword(service))
+                .remove(getKeyForCipherStorage(service))
+                .commit();
+
+        return resultSet;
+    }
+
+    /*
+     Entries stored before single record, every field in its own Base64 key
+    */
+    @Nullable
+    private ResultSet getLegacyEncryptedEntry(@NonNull final String service) {
         byte[] bytesForUsername = getBytesForUsername(service);
         byte[] bytesForPassword = getBytesForPassword(service);
         String cipherStorageName = getCipherStorageName(service);
@@ -61,42 +155,150 @@ public class PrefsStorage {
 
     }
 
+    @Override
     public void removeEntry(@NonNull final String service) {
         final String keyForUsername = getKeyForUsername(service);
         final String keyForPassword = getKeyForPassword(service);
         final String keyForCipherStorage = getKeyForCipherStorage(service);
+        final String keyForVersion = getKeyForVersion(service);
+        final String keyForRecord = getKeyForRecord(service);
 
         prefs.edit()
                 .remove(keyForUsername)
                 .remove(keyForPassword)
                 .remove(keyForCipherStorage)
+                .remove(keyForVersion)
+                .remove(keyForRecord)
                 .apply();
+
+        getIndex().remove(service);
     }
 
-    public void storeEncryptedEntry(@NonNull final String service, @NonNull final EncryptionResult encryptionResult) {
-        final String keyForUsername = getKeyForUsername(service);
-        final String keyForPassword = getKeyForPassword(service);
-        final String keyForCipherStorage = getKeyForCipherStorage(service);
+    /*
+     Remove multiple entries with a single prefs write
+    */
+    @Override
+    public void removeEntries(@NonNull final Collection<String> services) {
+        final SharedPreferences.Editor editor = prefs.edit();
+
+        for (String service : services) {
+            editor.remove(getKeyForUsername(service))
+                    .remove(getKeyForPassword(service))
+                    .remove(getKeyForCipherStorage(service))
+                    .remove(getKeyForVersion(service))
+                    .remove(getKeyForRecord(service));
+        }
 
+        editor.apply();
+
+        final Map<String, String> index = getIndex();
+        for (String service : services) {
+            index.remove(service);
+        }
+    }
+
+    /*
+     Store a plain version header next to the encrypted entry
+     NOTE: this is not a secret, with this we can read the entry version without keystore decryption
+    */
+    @Override
+    public void storeVersion(@NonNull final String service, final int version) {
         prefs.edit()
-                .putString(keyForUsername, Base64.encodeToString(encryptionResult.username, Base64.DEFAULT))
-                .putString(keyForPassword, Base64.encodeToString(encryptionResult.password, Base64.DEFAULT))
-                .putString(keyForCipherStorage, encryptionResult.cipherName)
+                .putInt(getKeyForVersion(service), version)
                 .apply();
     }
 
+    @Override
+    @Nullable
+    public Integer getVersion(@NonNull final String service) {
+        final String key = getKeyForVersion(service);
+
+        if (!prefs.contains(key)) {
+            return null;
+        }
+
+        return prefs.getInt(key, 0);
+    }
+
+    @Override
+    public void storeEncryptedEntry(@NonNull final String service, @NonNull final EncryptionResult encryptionResult) {
+        storeEncryptedEntries(Collections.singletonMap(service, encryptionResult));
+    }
 
-    public Set<String> getAllEntries() {
-        Set<String> result = new HashSet<>();
-        Set<String> keys = prefs.getAll().keySet();
-        for (String key : keys) {
-            if (isKeyForUsername(key)) {
-                String alias = getAliasForUsername(key);
-                result.add(alias);
-            }
+    /*
+     Store all entries with a single editor transaction
+    */
+    @Override
+    public void storeEncryptedEntries(@NonNull final Map<String, EncryptionResult> encryptionResults) {
+        final SharedPreferences.Editor editor = prefs.edit();
+
+        for (Map.Entry<String, EncryptionResult> entry : encryptionResults.entrySet()) {
+            final String service = entry.getKey();
+            final EncryptionResult encryptionResult = entry.getValue();
+
+            // NOTE: legacy keys are removed, in case the entry is overwritten before it was migrated
+            editor.putString(getKeyForRecord(service), encodeRecord(encryptionResult.cipherName, encryptionResult.username, encryptionResult.password))
+                    .remove(getKeyForUsername(service))
+                    .remove(getKeyForPassword(service))
+                    .remove(getKeyForCipherStorage(service));
+        }
+
+        editor.apply();
+
+        for (Map.Entry<String, EncryptionResult> entry : encryptionResults.entrySet()) {
+            getIndex().put(entry.getKey(), entry.getValue().cipherName);
         }
+    }
 
-        return result;
+    @NonNull
+    static String encodeRecord(@NonNull final String cipherStorageName,
+                               @NonNull final byte[] username,
+                               @NonNull final byte[] password) {
+        return Base64.encodeToString(Record.encode(cipherStorageName, username, password), Base64.NO_WRAP);
+    }
+
+    @Nullable
+    static ResultSet decodeRecord(@NonNull final String value) {
+        try {
+            return Record.decode(Base64.decode(value, Base64.NO_WRAP));
+        } catch (IllegalArgumentException e) {
+            // invalid Base64
+            return null;
+        }
+    }
+
+    /*
+     NOTE: every prefs write is a single editor apply, there is nothing to group
+    */
+    @Override
+    public void beginBatch() {
+    }
+
+    @Override
+    public void commitBatch() {
+    }
+
+    /*
+     apply() writes to disk in background, an empty commit waits for the pending writes
+    */
+    @Override
+    public void sync() {
+        prefs.edit().commit();
+    }
+
+    @Override
+    @NonNull
+    public Set<String> getAllEntries() {
+        return new HashSet<>(getIndex().keySet());
+    }
+
+    /*
+     All entries with their cipher storage name, alias -> cipher storage name
+    */
+    @Override
+    @NonNull
+    public Map<String, String> getAllEntriesWithCipherStorage() {
+        return new HashMap<>(getIndex());
     }
 
     @Nullable
@@ -134,6 +336,24 @@ public class PrefsStorage {
         return service + ":" + "c";
     }
 
+    @NonNull
+    public static String getKeyForVersion(@NonNull final String service) {
+        return service + ":" + "v";
+    }
+
+    @NonNull
+    public static String getKeyForRecord(@NonNull final String service) {
+        return service + ":" + "r";
+    }
+
+    public static boolean isKeyForRecord(@NonNull final String key) {
+        return key.endsWith(":r");
+    }
+
+    public static boolean isKeyForCipherStorage(@NonNull final String key) {
+        return key.endsWith(":c");
+    }
+
     public static boolean isKeyForUsername(@NonNull final String key) {
         return key.endsWith(":u");
     }
@@ -7,6 +7,7 @@ package libs.security.vault.storage.cipherStorage;
 
 import androidx.annotation.NonNull;
 
+import java.nio.charset.StandardCharsets;
 import java.util.Set;
 
 import libs.security.vault.exceptions.CryptoFailedException;
@@ -50,22 +51,54 @@ public interface CipherStorage {
     }
   }
 
+  /** Credentials in bytes array, result of decryption without string conversion. */
+  class BinaryDecryptionResult extends CipherResult<byte[]> {
+    public BinaryDecryptionResult(final byte[] username, final byte[] password) {
+      super(username, password);
+    }
+  }
+
   //region API
 
   /** Encrypt credentials with provided key (by alias) */
   @NonNull
+  default EncryptionResult encrypt(@NonNull final String alias,
+                                   @NonNull final String username,
+                                   @NonNull final String password)
+    throws CryptoFailedException {
+    return encrypt(alias, username.getBytes(StandardCharsets.UTF_8), password.getBytes(StandardCharsets.UTF_8));
+  }
+
+  /** Encrypt binary credentials with provided key (by alias), stored as they are without any text encoding */
+  @NonNull
   EncryptionResult encrypt(@NonNull final String alias,
-                           @NonNull final String username,
-                           @NonNull final String password)
+                           @NonNull final byte[] username,
+                           @NonNull final byte[] password)
     throws CryptoFailedException;
 
   /**
    * Decrypt credentials with provided key (by alias)
    */
   @NonNull
-  DecryptionResult decrypt(@NonNull final String alias,
-                           @NonNull final byte[] username,
-                           @NonNull final byte[] password)
+  default DecryptionResult decrypt(@NonNull final String alias,
+                                   @NonNull final byte[] username,
+                                   @NonNull final byte[] password)
+    throws CryptoFailedException {
+    final BinaryDecryptionResult result = decryptToBytes(alias, username, password);
+
+    return new DecryptionResult(
+      new String(result.username, StandardCharsets.UTF_8),
+      new String(result.password, StandardCharsets.UTF_8)
+    );
+  }
+
+  /**
+   * Decrypt binary credentials with provided key (by alias)
+   */
+  @NonNull
+  BinaryDecryptionResult decryptToBytes(@NonNull final String alias,
+                                        @NonNull final byte[] username,
+                                        @NonNull final byte[] password)
     throws CryptoFailedException;
 
   /** Remove key (by alias) from storage. */
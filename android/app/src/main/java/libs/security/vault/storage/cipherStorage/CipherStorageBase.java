@@ -7,6 +7,7 @@ package libs.security.vault.storage.cipherStorage;
 
 import android.os.Build;
 import android.security.keystore.KeyGenParameterSpec;
+import android.security.keystore.KeyPermanentlyInvalidatedException;
 import android.util.Log;
 
 import androidx.annotation.NonNull;
@@ -27,8 +28,10 @@ import java.util.Collections;
 import java.util.Enumeration;
 import java.util.HashSet;
 import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
 
 import javax.crypto.Cipher;
 import javax.crypto.KeyGenerator;
@@ -46,13 +49,50 @@ abstract public class CipherStorageBase implements CipherStorage {
 
   //region Members
   /** Guard for {@link #isStrongboxAvailable} field assignment. */
-  protected final Object _syncStrongbox = new Object();
+  protected static final Object _syncStrongbox = new Object();
   /** Try to resolve support of the strongbox and cache result for future calls. */
-  protected transient AtomicBoolean isStrongboxAvailable;
-  /** Get cached instance of cipher. Get instance operation is slow. */
-  protected transient Cipher cachedCipher;
-  /** Cached instance of the Keystore. */
-  protected transient KeyStore cachedKeyStore;
+  protected static AtomicBoolean isStrongboxAvailable;
+  /**
+   * Cipher instance per thread. Get instance operation is slow and cipher instances are not thread-safe,
+   * with an instance per thread keychain operations can run in parallel.
+   */
+  protected final ThreadLocal<Cipher> cachedCipher = new ThreadLocal<>();
+  /** Cached instance of the Keystore, shared by all cipher storages. */
+  protected static volatile KeyStore cachedKeyStore;
+  /**
+   * Locks for key lookup/generation by alias, so a key is never generated twice for the same alias.
+   * NOTE: an entry lives as long as its key, see {@link #removeKey}
+   */
+  private static final ConcurrentHashMap<String, Object> aliasLocks = new ConcurrentHashMap<>();
+  /**
+   * Cached key handles by alias. Every keystore lookup is an IPC call to the keystore service,
+   * the handle itself does not hold the key material and stays valid until the key is deleted.
+   * NOTE: shared between all cipher storage instances, as the keystore aliases are process wide
+   */
+  protected static final ConcurrentHashMap<String, Key> cachedKeys = new ConcurrentHashMap<>();
+  /** Key handle cache metrics. */
+  protected static final AtomicLong keyCacheHits = new AtomicLong(0);
+  protected static final AtomicLong keyCacheMisses = new AtomicLong(0);
+  protected static final AtomicLong keyCacheEvictions = new AtomicLong(0);
+
+  /** Snapshot of the key handle cache metrics. */
+  public static class KeyCacheStats {
+    public final long hits;
+    public final long misses;
+    public final long evictions;
+
+    public KeyCacheStats(final long hits, final long misses, final long evictions) {
+      this.hits = hits;
+      this.misses = misses;
+      this.evictions = evictions;
+    }
+
+    /** Hit rate between 0 and 1, 0 if there was no lookup yet. */
+    public double getHitRate() {
+      final long total = hits + misses;
+      return total == 0 ? 0 : (double) hits / total;
+    }
+  }
 
 
   /** Remove key with provided name from security storage. */
@@ -60,15 +100,46 @@ abstract public class CipherStorageBase implements CipherStorage {
   public void removeKey(@NonNull final String alias) throws KeyStoreAccessException {
     final KeyStore ks = getKeyStoreAndLoad();
 
-    try {
-      if (ks.containsAlias(alias)) {
-        ks.deleteEntry(alias);
+    while (true) {
+      final Object lock = lockAlias(alias);
+
+      synchronized (lock) {
+        // lock was removed while we were waiting, take the new one
+        if (!isCurrentLock(alias, lock)) {
+          continue;
+        }
+
+        invalidateCachedKey(alias);
+
+        try {
+          if (ks.containsAlias(alias)) {
+            ks.deleteEntry(alias);
+          }
+        } catch (GeneralSecurityException ignored) {
+          /* only one exception can be raised by code: 'KeyStore is not loaded' */
+        }
+
+        // key is gone, so is its lock, threads waiting on this lock will take a new one
+        aliasLocks.remove(alias, lock);
+        return;
       }
-    } catch (GeneralSecurityException ignored) {
-      /* only one exception can be raised by code: 'KeyStore is not loaded' */
     }
   }
 
+  /**
+   * Get the current lock of the alias.
+   * NOTE: lock entries are removed with the key, after synchronizing on the returned lock
+   * the caller should check it's still the current one with {@link #isCurrentLock}
+   */
+  @NonNull
+  private static Object lockAlias(@NonNull final String alias) {
+    return aliasLocks.computeIfAbsent(alias, k -> new Object());
+  }
+
+  private static boolean isCurrentLock(@NonNull final String alias, @NonNull final Object lock) {
+    return aliasLocks.get(alias) == lock;
+  }
+
 
   @Override
   public Set<String> getAllKeys() throws KeyStoreAccessException {
@@ -82,6 +153,28 @@ abstract public class CipherStorageBase implements CipherStorage {
     }
   }
 
+  /** Drop the cached key handle, next access will lookup the key from the keystore again. */
+  public void invalidateCachedKey(@NonNull final String alias) {
+    if (cachedKeys.remove(alias) != null) {
+      keyCacheEvictions.incrementAndGet();
+    }
+  }
+
+  /**
+   * Drop the cached key handle only if the failure means the key itself is not usable anymore.
+   * NOTE: other failures, like a bad tag of a damaged entry, say nothing about the key and keep the handle
+   */
+  protected void invalidateCachedKeyOnFailure(@NonNull final String alias, @NonNull final GeneralSecurityException failure) {
+    if (failure instanceof KeyPermanentlyInvalidatedException || failure instanceof UnrecoverableKeyException) {
+      invalidateCachedKey(alias);
+    }
+  }
+
+  @NonNull
+  public static KeyCacheStats getKeyCacheStats() {
+    return new KeyCacheStats(keyCacheHits.get(), keyCacheMisses.get(), keyCacheEvictions.get());
+  }
+
   //endregion
 
   //region Abstract methods
@@ -102,18 +195,17 @@ abstract public class CipherStorageBase implements CipherStorage {
 
   //region Implementation
 
-  /** Get cipher instance and cache it for any next call. */
+  /** Get cipher instance of the calling thread and cache it for any next call on the same thread. */
   @NonNull
   public Cipher getCachedInstance() throws NoSuchAlgorithmException, NoSuchPaddingException {
-    if (null == cachedCipher) {
-      synchronized (this) {
-        if (null == cachedCipher) {
-          cachedCipher = Cipher.getInstance(getEncryptionTransformation());
-        }
-      }
+    Cipher cipher = cachedCipher.get();
+
+    if (null == cipher) {
+      cipher = Cipher.getInstance(getEncryptionTransformation());
+      cachedCipher.set(cipher);
     }
 
-    return cachedCipher;
+    return cipher;
   }
 
   /**
@@ -133,21 +225,43 @@ abstract public class CipherStorageBase implements CipherStorage {
   @NonNull
   protected Key extractGeneratedKey(@NonNull final String safeAlias, @NonNull final AtomicInteger retries)
     throws GeneralSecurityException {
-    Key key;
+    Key key = cachedKeys.get(safeAlias);
 
-    do {
-      final KeyStore keyStore = getKeyStoreAndLoad();
+    if (null != key) {
+      keyCacheHits.incrementAndGet();
+      return key;
+    }
 
-      // if key is not available yet, try to generate the strongest possible
-      if (!keyStore.containsAlias(safeAlias)) {
-        generateKeyAndStoreUnderAlias(safeAlias);
-      }
+    keyCacheMisses.incrementAndGet();
 
-      // throw exception if cannot extract key in several retries
-      key = extractKey(keyStore, safeAlias, retries);
-    } while (null == key);
+    // NOTE: without the lock two threads could both generate a key for the same alias,
+    // and data encrypted with the first key would be lost
+    while (true) {
+      final Object lock = lockAlias(safeAlias);
 
-    return key;
+      synchronized (lock) {
+        // lock was removed with the key while we were waiting, take the new one
+        if (!isCurrentLock(safeAlias, lock)) {
+          continue;
+        }
+
+        do {
+          final KeyStore keyStore = getKeyStoreAndLoad();
+
+          // if key is not available yet, try to generate the strongest possible
+          if (!keyStore.containsAlias(safeAlias)) {
+            generateKeyAndStoreUnderAlias(safeAlias);
+          }
+
+          // throw exception if cannot extract key in several retries
+          key = extractKey(keyStore, safeAlias, retries);
+        } while (null == key);
+
+        cachedKeys.put(safeAlias, key);
+
+        return key;
+      }
+    }
   }
 
   /** Try to extract key by alias from keystore, in case of 'known android bug' reduce retry counter. */
@@ -163,6 +277,8 @@ abstract public class CipherStorageBase implements CipherStorage {
     try {
       key = keyStore.getKey(safeAlias, null);
     } catch (final UnrecoverableKeyException ex) {
+      invalidateCachedKey(safeAlias);
+
       // try one more time
       if (retry.getAndDecrement() > 0) {
         keyStore.deleteEntry(safeAlias);
@@ -185,7 +301,7 @@ abstract public class CipherStorageBase implements CipherStorage {
   @NonNull
   public KeyStore getKeyStoreAndLoad() throws KeyStoreAccessException {
     if (null == cachedKeyStore) {
-      synchronized (this) {
+      synchronized (CipherStorageBase.class) {
         if (null == cachedKeyStore) {
           // initialize instance
           try {
@@ -203,6 +319,53 @@ abstract public class CipherStorageBase implements CipherStorage {
     return cachedKeyStore;
   }
 
+  /**
+   * Set the known StrongBox availability (e.g. persisted result of an earlier probe),
+   * so key generation does not need to try StrongBox first.
+   */
+  public static void setStrongboxAvailable(final boolean available) {
+    synchronized (_syncStrongbox) {
+      isStrongboxAvailable = new AtomicBoolean(available);
+    }
+  }
+
+  /** StrongBox availability, null if not known yet. */
+  @Nullable
+  public static Boolean getStrongboxAvailable() {
+    synchronized (_syncStrongbox) {
+      return null == isStrongboxAvailable ? null : isStrongboxAvailable.get();
+    }
+  }
+
+  /**
+   * Try to generate a throwaway key in StrongBox, the result is used for all next key generations.
+   */
+  public boolean probeStrongbox() {
+    final String probeAlias = "RN_KEYCHAIN_STRONGBOX_PROBE";
+
+    boolean available;
+
+    try {
+      tryGenerateStrongBoxSecurityKey(probeAlias);
+      available = true;
+    } catch (GeneralSecurityException | ProviderException ex) {
+      available = false;
+    }
+
+    try {
+      final KeyStore ks = getKeyStoreAndLoad();
+      if (ks.containsAlias(probeAlias)) {
+        ks.deleteEntry(probeAlias);
+      }
+    } catch (GeneralSecurityException ignored) {
+      /* probe key is not used anywhere */
+    }
+
+    setStrongboxAvailable(available);
+
+    return available;
+  }
+
   /** Get the most secured keystore */
   public void generateKeyAndStoreUnderAlias(@NonNull final String alias)
     throws GeneralSecurityException {
@@ -89,8 +89,8 @@ public class CipherStorageKeystoreAesGcm extends CipherStorageBase {
     @Override
     @NonNull
     public EncryptionResult encrypt(@NonNull final String alias,
-                                    @NonNull final String username,
-                                    @NonNull final String password)
+                                    @NonNull final byte[] username,
+                                    @NonNull final byte[] password)
             throws CryptoFailedException {
 
         final AtomicInteger retries = new AtomicInteger(1);
@@ -99,10 +99,12 @@ public class CipherStorageKeystoreAesGcm extends CipherStorageBase {
             final Key key = extractGeneratedKey(alias, retries);
 
             return new EncryptionResult(
-                    encryptString(key, username),
-                    encryptString(key, password),
+                    encryptBytes(key, username),
+                    encryptBytes(key, password),
                     this);
         } catch (GeneralSecurityException e) {
+            // only a key which is not usable anymore drops the cached handle, a damaged entry keeps it
+            invalidateCachedKeyOnFailure(alias, e);
             throw new CryptoFailedException("Could not encrypt data with alias: " + alias, e);
         } catch (Throwable fail) {
             throw new CryptoFailedException("Unknown error with alias: " + alias +
@@ -112,17 +114,19 @@ public class CipherStorageKeystoreAesGcm extends CipherStorageBase {
 
     @Override
     @NonNull
-    public DecryptionResult decrypt(@NonNull final String alias,
-                                    @NonNull final byte[] username,
-                                    @NonNull final byte[] password)
+    public BinaryDecryptionResult decryptToBytes(@NonNull final String alias,
+                                                 @NonNull final byte[] username,
+                                                 @NonNull final byte[] password)
             throws CryptoFailedException {
         final AtomicInteger retries = new AtomicInteger(1);
 
         try {
             final Key key = extractGeneratedKey(alias, retries);
 
-            return new DecryptionResult(decryptBytes(key, username), decryptBytes(key, password));
+            return new BinaryDecryptionResult(decryptBytes(key, username), decryptBytes(key, password));
         } catch (GeneralSecurityException e) {
+            // only a key which is not usable anymore drops the cached handle, a damaged entry keeps it
+            invalidateCachedKeyOnFailure(alias, e);
             throw new CryptoFailedException("Could not decrypt data with alias: " + alias, e);
         } catch (Throwable fail) {
             throw new CryptoFailedException("Unknown error with alias: " + alias +
@@ -149,7 +153,7 @@ public class CipherStorageKeystoreAesGcm extends CipherStorageBase {
     }
 
     @NonNull
-    public byte[] encryptString(@NonNull final Key key, @NonNull final String value)
+    public byte[] encryptBytes(@NonNull final Key key, @NonNull final byte[] value)
             throws GeneralSecurityException, IOException {
 
         final Cipher cipher = getCachedInstance();
@@ -163,7 +167,7 @@ public class CipherStorageKeystoreAesGcm extends CipherStorageBase {
             output.write(iv, 0, iv.length);
 
             try (final CipherOutputStream encrypt = new CipherOutputStream(output, cipher)) {
-                encrypt.write(value.getBytes(UTF8));
+                encrypt.write(value);
             }
 
             return output.toByteArray();
@@ -174,10 +178,10 @@ public class CipherStorageKeystoreAesGcm extends CipherStorageBase {
     }
 
     /**
-     * Decrypt provided bytes to a string.
+     * Decrypt provided bytes.
      */
     @NonNull
-    protected String decryptBytes(@NonNull final Key key, @NonNull final byte[] bytes)
+    protected byte[] decryptBytes(@NonNull final Key key, @NonNull final byte[] bytes)
             throws GeneralSecurityException {
         final Cipher cipher = getCachedInstance();
 
@@ -189,8 +193,7 @@ public class CipherStorageKeystoreAesGcm extends CipherStorageBase {
             // decrypt the bytes using cipher.doFinal(). Using a CipherInputStream for decryption has historically led to issues
             // on the Pixel family of devices.
             // see https://github.com/oblador/react-native-keychain/issues/383
-            byte[] decryptedBytes = cipher.doFinal(bytes, IV_SIZE, bytes.length - IV_SIZE);
-            return new String(decryptedBytes, UTF8);
+            return cipher.doFinal(bytes, IV_SIZE, bytes.length - IV_SIZE);
         } catch (Throwable fail) {
             Log.w(LOG_TAG, fail.getMessage(), fail);
             throw fail;
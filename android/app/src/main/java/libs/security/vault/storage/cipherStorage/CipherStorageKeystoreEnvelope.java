@@ -0,0 +1,451 @@
+package libs.security.vault.storage.cipherStorage;
+
+import android.security.keystore.KeyGenParameterSpec;
+import android.security.keystore.KeyProperties;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+import java.nio.ByteBuffer;
+import java.security.GeneralSecurityException;
+import java.security.Key;
+import java.security.SecureRandom;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import javax.crypto.Cipher;
+import javax.crypto.spec.GCMParameterSpec;
+import javax.crypto.spec.SecretKeySpec;
+
+import libs.security.vault.exceptions.CryptoFailedException;
+import libs.security.vault.exceptions.KeyStoreAccessException;
+import libs.security.vault.storage.Keychain;
+
+/*
+ Envelope encryption with a single keystore master key
+ NOTE: every entry is encrypted in software with its own random data key, only the data key is wrapped
+ with the keystore master key, so storing a new entry does not need a keystore key generation,
+ unwrapped data keys are cached in memory by alias for a short time, entries are strictly expired after TTL
+ and zeroized on eviction, callers always work on their own copy of the key
+
+ username = format (1) | wrapped data key length (2) | wrapped data key (iv | ct | tag) | iv (12) | ct | tag
+ password = iv (12) | ct | tag
+
+ the alias is used as additional authenticated data for the wrapped key and the entry,
+ so entries cannot be swapped between aliases
+*/
+public class CipherStorageKeystoreEnvelope extends CipherStorageBase {
+    /**
+     * Keystore alias of the master key.
+     */
+    public static final String MASTER_KEY_ALIAS = "RN_KEYCHAIN_MASTER_KEY";
+
+    private static final byte ENVELOPE_FORMAT = 1;
+
+    private static final String ALGORITHM_AES = KeyProperties.KEY_ALGORITHM_AES;
+    private static final String ENCRYPTION_TRANSFORMATION =
+            ALGORITHM_AES + "/" + KeyProperties.BLOCK_MODE_GCM + "/" + KeyProperties.ENCRYPTION_PADDING_NONE;
+
+    private static final int MASTER_KEY_SIZE = 256;
+    private static final int DATA_KEY_LENGTH = 32;
+    private static final int IV_SIZE = 12;
+    private static final int TAG_SIZE = 16 * Byte.SIZE;
+
+    // how long an unwrapped data key can live in memory, entries are never extended on access
+    static final long DATA_KEY_TTL_MS = 30 * 1000;
+    // max number of data keys we keep at the same time
+    static final int MAX_DATA_KEYS = 32;
+
+    private static final SecureRandom secureRandom = new SecureRandom();
+
+    /**
+     * Unwrapped data key with its wrapped form, the wrapped form identifies the stored key.
+     */
+    private static class DataKey {
+        final byte[] wrapped;
+        final byte[] key;
+        final long expiresAt;
+
+        DataKey(@NonNull final byte[] wrapped, @NonNull final byte[] key, final long expiresAt) {
+            this.wrapped = wrapped;
+            this.key = key;
+            this.expiresAt = expiresAt;
+        }
+
+        @NonNull
+        DataKey copy() {
+            return new DataKey(wrapped, key.clone(), expiresAt);
+        }
+
+        /**
+         * NOTE: the key spec keeps its own copy of the key which can not be zeroized, it only lives for one operation
+         */
+        @NonNull
+        SecretKeySpec getKeySpec() {
+            return new SecretKeySpec(key, ALGORITHM_AES);
+        }
+
+        void zeroize() {
+            Arrays.fill(key, (byte) 0);
+        }
+    }
+
+    /**
+     * Data keys by alias, shared by all instances as they are all wrapped with the same master key.
+     * NOTE: guarded by itself, least recently used keys are evicted first
+     */
+    private static final LinkedHashMap<String, DataKey> cachedDataKeys = new LinkedHashMap<String, DataKey>(MAX_DATA_KEYS, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<String, DataKey> eldest) {
+            if (size() > MAX_DATA_KEYS) {
+                eldest.getValue().zeroize();
+                return true;
+            }
+            return false;
+        }
+    };
+
+    private static final ScheduledExecutorService dataKeyCleaner = Executors.newSingleThreadScheduledExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "KeychainDataKeyCleaner");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    /**
+     * Software cipher instance per thread.
+     * NOTE: cannot share the instance with the keystore cipher, provider is selected on first init
+     */
+    private final ThreadLocal<Cipher> cachedSoftwareCipher = new ThreadLocal<>();
+
+    //region Configuration
+    @Override
+    public String getCipherStorageName() {
+        return Keychain.KnownCiphers.ENVELOPE;
+    }
+
+    @Override
+    @NonNull
+    protected String getEncryptionAlgorithm() {
+        return ALGORITHM_AES;
+    }
+
+    @NonNull
+    @Override
+    protected String getEncryptionTransformation() {
+        return ENCRYPTION_TRANSFORMATION;
+    }
+
+    @NonNull
+    @Override
+    protected KeyGenParameterSpec.Builder getKeyGenSpecBuilder(@NonNull final String alias) {
+        final int purposes = KeyProperties.PURPOSE_DECRYPT | KeyProperties.PURPOSE_ENCRYPT;
+
+        return new KeyGenParameterSpec.Builder(alias, purposes)
+                .setBlockModes(KeyProperties.BLOCK_MODE_GCM)
+                .setEncryptionPaddings(KeyProperties.ENCRYPTION_PADDING_NONE)
+                .setRandomizedEncryptionRequired(true)
+                .setKeySize(MASTER_KEY_SIZE);
+    }
+    //endregion
+
+    //region Overrides
+    @Override
+    @NonNull
+    public EncryptionResult encrypt(@NonNull final String alias,
+                                    @NonNull final byte[] username,
+                                    @NonNull final byte[] password)
+            throws CryptoFailedException {
+        DataKey dataKey = null;
+
+        try {
+            dataKey = getOrCreateDataKey(alias);
+            final SecretKeySpec key = dataKey.getKeySpec();
+            final byte[] aad = alias.getBytes(UTF8);
+
+            final byte[] encryptedUsername = seal(key, username, aad);
+
+            final ByteBuffer usernameEnvelope = ByteBuffer.allocate(1 + 2 + dataKey.wrapped.length + encryptedUsername.length);
+            usernameEnvelope.put(ENVELOPE_FORMAT);
+            usernameEnvelope.putShort((short) dataKey.wrapped.length);
+            usernameEnvelope.put(dataKey.wrapped);
+            usernameEnvelope.put(encryptedUsername);
+
+            return new EncryptionResult(
+                    usernameEnvelope.array(),
+                    seal(key, password, aad),
+                    this);
+        } catch (GeneralSecurityException e) {
+            // only a master key which is not usable anymore drops the cached handle
+            invalidateCachedKeyOnFailure(MASTER_KEY_ALIAS, e);
+            throw new CryptoFailedException("Could not encrypt data with alias: " + alias, e);
+        } catch (Throwable fail) {
+            throw new CryptoFailedException("Unknown error with alias: " + alias +
+                    ", error: " + fail.getMessage(), fail);
+        } finally {
+            if (dataKey != null) {
+                dataKey.zeroize();
+            }
+        }
+    }
+
+    @Override
+    @NonNull
+    public BinaryDecryptionResult decryptToBytes(@NonNull final String alias,
+                                                 @NonNull final byte[] username,
+                                                 @NonNull final byte[] password)
+            throws CryptoFailedException {
+        DataKey dataKey = null;
+
+        try {
+            final ByteBuffer usernameEnvelope = ByteBuffer.wrap(username);
+
+            if (usernameEnvelope.get() != ENVELOPE_FORMAT) {
+                throw new CryptoFailedException("Invalid envelope format with alias: " + alias, null);
+            }
+
+            final int wrappedLength = usernameEnvelope.getShort() & 0xffff;
+            if (wrappedLength > usernameEnvelope.remaining()) {
+                throw new CryptoFailedException("Invalid envelope with alias: " + alias, null);
+            }
+
+            final byte[] wrapped = new byte[wrappedLength];
+            usernameEnvelope.get(wrapped);
+
+            final byte[] encryptedUsername = new byte[usernameEnvelope.remaining()];
+            usernameEnvelope.get(encryptedUsername);
+
+            dataKey = getDataKey(alias, wrapped);
+            final SecretKeySpec key = dataKey.getKeySpec();
+            final byte[] aad = alias.getBytes(UTF8);
+
+            return new BinaryDecryptionResult(
+                    open(key, encryptedUsername, aad),
+                    open(key, password, aad)
+            );
+        } catch (CryptoFailedException e) {
+            throw e;
+        } catch (GeneralSecurityException e) {
+            // the stored entry may not match the cached data key anymore
+            removeCachedDataKey(alias);
+            invalidateCachedKeyOnFailure(MASTER_KEY_ALIAS, e);
+            throw new CryptoFailedException("Could not decrypt data with alias: " + alias, e);
+        } catch (Throwable fail) {
+            throw new CryptoFailedException("Unknown error with alias: " + alias +
+                    ", error: " + fail.getMessage(), fail);
+        } finally {
+            if (dataKey != null) {
+                dataKey.zeroize();
+            }
+        }
+    }
+
+    /**
+     * Entries do not own a keystore key, only the cached data key is dropped.
+     * NOTE: the master key is shared by all entries and is never removed here
+     */
+    @Override
+    public void removeKey(@NonNull final String alias) throws KeyStoreAccessException {
+        removeCachedDataKey(alias);
+    }
+
+    /**
+     * Remove the shared master key and drop all cached data keys and key handles.
+     * NOTE: entries stored with this cipher storage can not be decrypted anymore, only used when the keychain is
+     * cleared, the next encryption generates a new master key
+     */
+    public void removeMasterKey() throws KeyStoreAccessException {
+        clearDataKeys();
+        super.removeKey(MASTER_KEY_ALIAS);
+    }
+
+    /**
+     * Zeroize and remove all cached data keys.
+     */
+    public static void clearDataKeys() {
+        synchronized (cachedDataKeys) {
+            for (DataKey dataKey : cachedDataKeys.values()) {
+                dataKey.zeroize();
+            }
+            cachedDataKeys.clear();
+        }
+    }
+    //endregion
+
+    //region Implementation
+
+    /**
+     * Reuse the cached data key of the alias or create a new one, wrapping is the only keystore operation.
+     * NOTE: returns a copy, the caller should zeroize it after use
+     */
+    @NonNull
+    private DataKey getOrCreateDataKey(@NonNull final String alias) throws GeneralSecurityException {
+        final DataKey cached = getCachedDataKey(alias);
+        if (cached != null) {
+            return cached;
+        }
+
+        final byte[] keyBytes = new byte[DATA_KEY_LENGTH];
+        secureRandom.nextBytes(keyBytes);
+
+        final DataKey dataKey = new DataKey(wrapKey(alias, keyBytes), keyBytes, System.currentTimeMillis() + DATA_KEY_TTL_MS);
+        putCachedDataKey(alias, dataKey);
+        return dataKey;
+    }
+
+    /**
+     * Get the data key for the wrapped key, unwraps with the master key if not cached yet.
+     * NOTE: returns a copy, the caller should zeroize it after use
+     */
+    @NonNull
+    private DataKey getDataKey(@NonNull final String alias, @NonNull final byte[] wrapped) throws GeneralSecurityException {
+        final DataKey cached = getCachedDataKey(alias);
+        if (cached != null) {
+            if (Arrays.equals(cached.wrapped, wrapped)) {
+                return cached;
+            }
+            cached.zeroize();
+        }
+
+        final DataKey dataKey = new DataKey(wrapped, unwrapKey(alias, wrapped), System.currentTimeMillis() + DATA_KEY_TTL_MS);
+        putCachedDataKey(alias, dataKey);
+        return dataKey;
+    }
+
+    @Nullable
+    private static DataKey getCachedDataKey(@NonNull final String alias) {
+        synchronized (cachedDataKeys) {
+            final DataKey dataKey = cachedDataKeys.get(alias);
+
+            if (dataKey == null) {
+                return null;
+            }
+
+            if (dataKey.expiresAt <= System.currentTimeMillis()) {
+                cachedDataKeys.remove(alias);
+                dataKey.zeroize();
+                return null;
+            }
+
+            return dataKey.copy();
+        }
+    }
+
+    private static void putCachedDataKey(@NonNull final String alias, @NonNull final DataKey dataKey) {
+        synchronized (cachedDataKeys) {
+            final DataKey previous = cachedDataKeys.put(alias, dataKey.copy());
+
+            if (previous != null) {
+                previous.zeroize();
+            }
+        }
+
+        // make sure the key will be zeroized after expiry even if we never touch the cache again
+        dataKeyCleaner.schedule(CipherStorageKeystoreEnvelope::evictExpiredDataKeys, DATA_KEY_TTL_MS, TimeUnit.MILLISECONDS);
+    }
+
+    private static void removeCachedDataKey(@NonNull final String alias) {
+        synchronized (cachedDataKeys) {
+            final DataKey dataKey = cachedDataKeys.remove(alias);
+
+            if (dataKey != null) {
+                dataKey.zeroize();
+            }
+        }
+    }
+
+    private static void evictExpiredDataKeys() {
+        final long now = System.currentTimeMillis();
+
+        synchronized (cachedDataKeys) {
+            Iterator<DataKey> iterator = cachedDataKeys.values().iterator();
+            while (iterator.hasNext()) {
+                DataKey dataKey = iterator.next();
+                if (dataKey.expiresAt <= now) {
+                    dataKey.zeroize();
+                    iterator.remove();
+                }
+            }
+        }
+    }
+
+    /**
+     * wrapped = iv (12) | ct | tag
+     */
+    @NonNull
+    private byte[] wrapKey(@NonNull final String alias, @NonNull final byte[] keyBytes) throws GeneralSecurityException {
+        final Key masterKey = extractGeneratedKey(MASTER_KEY_ALIAS, new AtomicInteger(1));
+        final Cipher cipher = getCachedInstance();
+
+        cipher.init(Cipher.ENCRYPT_MODE, masterKey);
+        cipher.updateAAD(alias.getBytes(UTF8));
+        final byte[] sealed = cipher.doFinal(keyBytes);
+        final byte[] iv = cipher.getIV();
+
+        final byte[] wrapped = new byte[iv.length + sealed.length];
+        System.arraycopy(iv, 0, wrapped, 0, iv.length);
+        System.arraycopy(sealed, 0, wrapped, iv.length, sealed.length);
+        return wrapped;
+    }
+
+    @NonNull
+    private byte[] unwrapKey(@NonNull final String alias, @NonNull final byte[] wrapped) throws GeneralSecurityException {
+        final Key masterKey = extractGeneratedKey(MASTER_KEY_ALIAS, new AtomicInteger(1));
+        final Cipher cipher = getCachedInstance();
+
+        cipher.init(Cipher.DECRYPT_MODE, masterKey, new GCMParameterSpec(TAG_SIZE, wrapped, 0, IV_SIZE));
+        cipher.updateAAD(alias.getBytes(UTF8));
+        return cipher.doFinal(wrapped, IV_SIZE, wrapped.length - IV_SIZE);
+    }
+
+    /**
+     * sealed = iv (12) | ct | tag
+     */
+    @NonNull
+    private byte[] seal(@NonNull final SecretKeySpec key, @NonNull final byte[] data, @NonNull final byte[] aad)
+            throws GeneralSecurityException {
+        final byte[] iv = new byte[IV_SIZE];
+        secureRandom.nextBytes(iv);
+
+        final Cipher cipher = getSoftwareCipher();
+        cipher.init(Cipher.ENCRYPT_MODE, key, new GCMParameterSpec(TAG_SIZE, iv));
+        cipher.updateAAD(aad);
+
+        final byte[] sealed = new byte[IV_SIZE + cipher.getOutputSize(data.length)];
+        System.arraycopy(iv, 0, sealed, 0, IV_SIZE);
+        final int length = cipher.doFinal(data, 0, data.length, sealed, IV_SIZE);
+
+        return length + IV_SIZE == sealed.length ? sealed : Arrays.copyOf(sealed, IV_SIZE + length);
+    }
+
+    @NonNull
+    private byte[] open(@NonNull final SecretKeySpec key, @NonNull final byte[] sealed, @NonNull final byte[] aad)
+            throws GeneralSecurityException {
+        if (sealed.length < IV_SIZE) {
+            throw new CryptoFailedException("Invalid sealed data length!", null);
+        }
+
+        final Cipher cipher = getSoftwareCipher();
+        cipher.init(Cipher.DECRYPT_MODE, key, new GCMParameterSpec(TAG_SIZE, sealed, 0, IV_SIZE));
+        cipher.updateAAD(aad);
+        return cipher.doFinal(sealed, IV_SIZE, sealed.length - IV_SIZE);
+    }
+
+    @NonNull
+    private Cipher getSoftwareCipher() throws GeneralSecurityException {
+        Cipher cipher = cachedSoftwareCipher.get();
+
+        if (null == cipher) {
+            cipher = Cipher.getInstance(ENCRYPTION_TRANSFORMATION);
+            cachedSoftwareCipher.set(cipher);
+        }
+
+        return cipher;
+    }
+    //endregion
+}
@@ -0,0 +1,335 @@
+package libs.codec;
+
+import org.json.JSONArray;
+import org.json.JSONException;
+import org.json.JSONObject;
+import org.junit.Assert;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.math.BigDecimal;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.Set;
+
+/*
+ NOTE: runs on the JVM, definitions.json and codec-fixtures.json of the pinned JS codec are vendored
+ in the test resources by the updateCodecFixtures gradle task
+*/
+public class BinaryCodecTest {
+    // pinned ripple-binary-codec version in package.json, resources are vendored by version
+    private static final String JS_CODEC_VERSION = "1.4.3";
+    private static final String JS_CODEC_RESOURCES = "ripple-binary-codec-" + JS_CODEC_VERSION + "/";
+
+    // OfferCreate example of the binary format documentation
+    private static final String OFFER_CREATE_BINARY = "120007220008000024001AB6D82A2380BF2C2019001AB6D764D55920AC939140000000000000000000" +
+            "0000000055534400000000000A20B3C85F482532A9578DBB3950B85CA06594D165400000037E11D60068400000000000000A732103EE" +
+            "83BB432547885C219634A1BC407A9DB0474145D69737D09CCDC63E1DEE7FE3744630440220143759437C04F7B61F012563AFE90D8DAF" +
+            "C46E86035E1D965A9CED282C97D4CE02204CFD241E86F17E011298FC1A39B63386C74306A5DE047E213B0F29EFA4571C2C8114DD764" +
+            "83FACDEE26E60D8A586BB58D09F27045C46";
+
+    private static final String OFFER_CREATE_JSON = "{" +
+            "\"Account\":\"rMBzp8CgpE441cp5PVyA9rpVV7oT8hP3ys\"," +
+            "\"Expiration\":595640108," +
+            "\"Fee\":\"10\"," +
+            "\"Flags\":524288," +
+            "\"OfferSequence\":1750743," +
+            "\"Sequence\":1750744," +
+            "\"SigningPubKey\":\"03EE83BB432547885C219634A1BC407A9DB0474145D69737D09CCDC63E1DEE7FE3\"," +
+            "\"TakerGets\":\"15000000000\"," +
+            "\"TakerPays\":{\"currency\":\"USD\",\"issuer\":\"rvYAfWj5gh67oV6fW32ZzP3Aw4Eubs59B\",\"value\":\"7072.8\"}," +
+            "\"TransactionType\":\"OfferCreate\"," +
+            "\"TxnSignature\":\"30440220143759437C04F7B61F012563AFE90D8DAFC46E86035E1D965A9CED282C97D4CE02204CFD241E86F17E011298FC1A39B63386C74306A5DE047E213B0F29EFA4571C2C\"" +
+            "}";
+
+    private static final String PAYMENT_JSON = "{" +
+            "\"TransactionType\":\"Payment\"," +
+            "\"Account\":\"rMBzp8CgpE441cp5PVyA9rpVV7oT8hP3ys\"," +
+            "\"Destination\":\"rvYAfWj5gh67oV6fW32ZzP3Aw4Eubs59B\"," +
+            "\"DestinationTag\":4294967295," +
+            "\"Amount\":{\"currency\":\"0158415500000000C1F76FF6ECB0BAC600000000\",\"issuer\":\"rvYAfWj5gh67oV6fW32ZzP3Aw4Eubs59B\",\"value\":\"-1.5e-20\"}," +
+            "\"Fee\":\"12\"," +
+            "\"Flags\":0," +
+            "\"Sequence\":1," +
+            "\"OwnerNode\":\"00000000000000FF\"," +
+            "\"AccountTxnID\":\"E08D6E9754025BA2534A78707605E0601F03ACE063687A0CA1BDDACFCD1698C7\"," +
+            "\"Paths\":[[{\"currency\":\"USD\",\"issuer\":\"rvYAfWj5gh67oV6fW32ZzP3Aw4Eubs59B\"}],[{\"account\":\"rMBzp8CgpE441cp5PVyA9rpVV7oT8hP3ys\"},{\"currency\":\"XRP\"}]]," +
+            "\"Memos\":[{\"Memo\":{\"MemoType\":\"74657374\",\"MemoData\":\"\"}},{\"Memo\":{\"MemoData\":\"" + repeat("AB", 300) + "\"}}]," +
+            "\"SigningPubKey\":\"\"," +
+            "\"TxnSignature\":\"DEADBEEF\"" +
+            "}";
+
+    private static BinaryCodec codec;
+
+    @BeforeClass
+    public static void beforeAll() throws Exception {
+        try (InputStream stream = BinaryCodecTest.class.getResourceAsStream(JS_CODEC_RESOURCES + "definitions.json")) {
+            codec = new BinaryCodec(new Definitions(read(stream)));
+        }
+    }
+
+    @Test
+    public void DecodeTest() throws Exception {
+        final STObjectView view = codec.decode(fromHex(OFFER_CREATE_BINARY));
+
+        assertJSONEquals(new JSONObject(OFFER_CREATE_JSON), view.toJSON());
+        Assert.assertEquals(11, view.size());
+    }
+
+    @Test
+    public void EncodeTest() throws Exception {
+        Assert.assertEquals(OFFER_CREATE_BINARY, toHex(codec.encode(new JSONObject(OFFER_CREATE_JSON))));
+
+        // unknown and not serialized fields are ignored
+        final JSONObject json = new JSONObject(OFFER_CREATE_JSON);
+        json.put("hash", "E08D6E9754025BA2534A78707605E0601F03ACE063687A0CA1BDDACFCD1698C7");
+        json.put("UnknownField", 1);
+        Assert.assertEquals(OFFER_CREATE_BINARY, toHex(codec.encode(json)));
+    }
+
+    @Test
+    public void RoundTripTest() throws Exception {
+        final JSONObject json = new JSONObject(PAYMENT_JSON);
+        final byte[] binary = codec.encode(json);
+
+        assertJSONEquals(json, codec.decode(binary).toJSON());
+
+        // encoding again reuses the buffer and gives the same result
+        Assert.assertArrayEquals(binary, codec.encode(json));
+    }
+
+    @Test
+    public void LazyViewTest() throws Exception {
+        final byte[] binary = codec.encode(new JSONObject(PAYMENT_JSON));
+
+        // decode from a position inside a larger buffer
+        final ByteBuffer buffer = ByteBuffer.allocate(binary.length + 8);
+        buffer.position(4);
+        buffer.put(binary);
+        buffer.position(4);
+        buffer.limit(4 + binary.length);
+
+        final STObjectView view = codec.decode(buffer);
+
+        Assert.assertTrue(view.has("Memos"));
+        Assert.assertFalse(view.has("TakerPays"));
+        Assert.assertNull(view.get("TakerPays"));
+        Assert.assertEquals("Payment", view.get("TransactionType"));
+        Assert.assertEquals(4294967295L, ((Number) view.get("DestinationTag")).longValue());
+        Assert.assertEquals("00000000000000FF", view.get("OwnerNode"));
+
+        final JSONArray memos = (JSONArray) view.get("Memos");
+        Assert.assertNotNull(memos);
+        Assert.assertEquals(2, memos.length());
+        Assert.assertEquals(600, memos.getJSONObject(1).getJSONObject("Memo").getString("MemoData").length());
+
+        final JSONObject partial = view.toJSON(Arrays.asList("TransactionType", "Fee", "TakerPays"));
+        Assert.assertEquals(2, partial.length());
+        Assert.assertEquals("12", partial.getString("Fee"));
+    }
+
+    @Test
+    public void AmountTest() throws Exception {
+        final String[][] values = {
+                {"7072.8", "7072.8"},
+                {"0", "0"},
+                {"-2.5", "-2.5"},
+                {"0.000001", "0.000001"},
+                {"0.0000001", "1e-7"},
+                {"1000000000000000000000", "1e+21"},
+                {"100000000000000000000", "100000000000000000000"},
+                {"1234567890123456", "1234567890123456"},
+                {"9999999999999999e80", "9.999999999999999e+95"},
+        };
+
+        for (String[] value : values) {
+            final JSONObject json = new JSONObject();
+            json.put("Amount", new JSONObject()
+                    .put("currency", "USD")
+                    .put("issuer", "rvYAfWj5gh67oV6fW32ZzP3Aw4Eubs59B")
+                    .put("value", value[0]));
+
+            final JSONObject amount = (JSONObject) codec.decode(codec.encode(json)).get("Amount");
+            Assert.assertNotNull(amount);
+            Assert.assertEquals(value[1], amount.getString("value"));
+        }
+
+        // zero issued currency amount has only the not XRP bit set
+        final JSONObject zero = new JSONObject().put("Amount", new JSONObject()
+                .put("currency", "USD")
+                .put("issuer", "rvYAfWj5gh67oV6fW32ZzP3Aw4Eubs59B")
+                .put("value", "0"));
+        Assert.assertTrue(toHex(codec.encode(zero)).startsWith("618000000000000000"));
+
+        // invalid amounts
+        for (String invalid : new String[]{"1.2345678901234567", "1e-100", "1e97"}) {
+            final JSONObject json = new JSONObject().put("Amount", new JSONObject()
+                    .put("currency", "USD")
+                    .put("issuer", "rvYAfWj5gh67oV6fW32ZzP3Aw4Eubs59B")
+                    .put("value", invalid));
+            try {
+                codec.encode(json);
+                Assert.fail(invalid + " should be rejected");
+            } catch (IllegalArgumentException ignored) {
+            }
+        }
+
+        for (String invalid : new String[]{"-1", "1.5", "100000000000000001"}) {
+            try {
+                codec.encode(new JSONObject().put("Amount", invalid));
+                Assert.fail(invalid + " should be rejected");
+            } catch (IllegalArgumentException ignored) {
+            }
+        }
+    }
+
+    @Test
+    public void SigningDataTest() throws Exception {
+        final JSONObject json = new JSONObject(OFFER_CREATE_JSON);
+
+        // prefix and signing fields only
+        final String signing = toHex(codec.encodeForSigning(json));
+        final JSONObject withoutSignature = new JSONObject(OFFER_CREATE_JSON);
+        withoutSignature.remove("TxnSignature");
+        Assert.assertEquals("53545800" + toHex(codec.encode(withoutSignature)), signing);
+
+        // multi signing needs an empty SigningPubKey and ends with the signer account id
+        try {
+            codec.encodeForMultisigning(json, "rMBzp8CgpE441cp5PVyA9rpVV7oT8hP3ys");
+            Assert.fail("SigningPubKey should be empty for multi signing");
+        } catch (IllegalArgumentException ignored) {
+        }
+
+        withoutSignature.put("SigningPubKey", "");
+        final String multiSigning = toHex(codec.encodeForMultisigning(withoutSignature, "rMBzp8CgpE441cp5PVyA9rpVV7oT8hP3ys"));
+        Assert.assertEquals(
+                "534D5400" + toHex(codec.encode(withoutSignature)) + "DD76483FACDEE26E60D8A586BB58D09F27045C46",
+                multiSigning
+        );
+    }
+
+    @Test
+    public void AddressCodecTest() {
+        final byte[] accountId = fromHex("DD76483FACDEE26E60D8A586BB58D09F27045C46");
+
+        Assert.assertEquals("rMBzp8CgpE441cp5PVyA9rpVV7oT8hP3ys", AddressCodec.encodeAccountID(accountId));
+        Assert.assertArrayEquals(accountId, AddressCodec.decodeAccountID("rMBzp8CgpE441cp5PVyA9rpVV7oT8hP3ys"));
+
+        // account zero
+        Assert.assertEquals("rrrrrrrrrrrrrrrrrrrrrhoLvTp", AddressCodec.encodeAccountID(new byte[20]));
+        Assert.assertArrayEquals(new byte[20], AddressCodec.decodeAccountID("rrrrrrrrrrrrrrrrrrrrrhoLvTp"));
+
+        // invalid checksum
+        try {
+            AddressCodec.decodeAccountID("rMBzp8CgpE441cp5PVyA9rpVV7oT8hP3yt");
+            Assert.fail("invalid checksum should be rejected");
+        } catch (IllegalArgumentException ignored) {
+        }
+    }
+
+    /*
+     Encode and decode all transactions and ledger entries of the JS codec fixtures
+    */
+    @Test
+    public void CodecFixturesTest() throws Exception {
+        final JSONObject fixtures = new JSONObject(read(BinaryCodecTest.class.getResourceAsStream(JS_CODEC_RESOURCES + "codec-fixtures.json")));
+
+        int count = 0;
+        for (String suite : new String[]{"transactions", "accountState"}) {
+            final JSONArray entries = fixtures.getJSONArray(suite);
+
+            for (int i = 0; i < entries.length(); i++) {
+                final JSONObject entry = entries.getJSONObject(i);
+                final String binary = entry.getString("binary").toUpperCase();
+                final JSONObject json = entry.getJSONObject("json");
+
+                Assert.assertEquals(suite + "[" + i + "] encode", binary, toHex(codec.encode(json)));
+                assertJSONEquals(json, codec.decode(fromHex(binary)).toJSON());
+                count++;
+            }
+        }
+
+        Assert.assertTrue(count > 0);
+    }
+
+    //region Helpers
+
+    private static void assertJSONEquals(Object expected, Object actual) throws JSONException {
+        if (expected instanceof JSONObject) {
+            Assert.assertTrue("expected object but got " + actual, actual instanceof JSONObject);
+            final JSONObject expectedObject = (JSONObject) expected;
+            final JSONObject actualObject = (JSONObject) actual;
+
+            Assert.assertEquals(keys(expectedObject), keys(actualObject));
+            for (String key : keys(expectedObject)) {
+                assertJSONEquals(expectedObject.get(key), actualObject.get(key));
+            }
+        } else if (expected instanceof JSONArray) {
+            Assert.assertTrue("expected array but got " + actual, actual instanceof JSONArray);
+            final JSONArray expectedArray = (JSONArray) expected;
+            final JSONArray actualArray = (JSONArray) actual;
+
+            Assert.assertEquals(expectedArray.length(), actualArray.length());
+            for (int i = 0; i < expectedArray.length(); i++) {
+                assertJSONEquals(expectedArray.get(i), actualArray.get(i));
+            }
+        } else if (expected instanceof Number) {
+            Assert.assertTrue("expected number but got " + actual, actual instanceof Number);
+            Assert.assertEquals(0, new BigDecimal(expected.toString()).compareTo(new BigDecimal(actual.toString())));
+        } else {
+            Assert.assertEquals(expected, actual);
+        }
+    }
+
+    private static Set<String> keys(JSONObject json) {
+        final Set<String> keys = new HashSet<>();
+        final Iterator<String> iterator = json.keys();
+        while (iterator.hasNext()) {
+            keys.add(iterator.next());
+        }
+        return keys;
+    }
+
+    private static String read(InputStream stream) throws IOException {
+        try (InputStream input = stream) {
+            final ByteArrayOutputStream output = new ByteArrayOutputStream();
+            final byte[] buffer = new byte[8192];
+            int read;
+            while ((read = input.read(buffer)) != -1) {
+                output.write(buffer, 0, read);
+            }
+            return new String(output.toByteArray(), StandardCharsets.UTF_8);
+        }
+    }
+
+    private static String repeat(String value, int count) {
+        final StringBuilder builder = new StringBuilder();
+        for (int i = 0; i < count; i++) {
+            builder.append(value);
+        }
+        return builder.toString();
+    }
+
+    private static byte[] fromHex(String hex) {
+        final byte[] bytes = new byte[hex.length() / 2];
+        for (int i = 0; i < bytes.length; i++) {
+            bytes[i] = (byte) Integer.parseInt(hex.substring(i * 2, i * 2 + 2), 16);
+        }
+        return bytes;
+    }
+
+    private static String toHex(byte[] bytes) {
+        final StringBuilder builder = new StringBuilder();
+        for (byte b : bytes) {
+            builder.append(String.format("%02X", b));
+        }
+        return builder.toString();
+    }
+    //endregion
+}
@@ -2,6 +2,7 @@
 
 const ReactNative = require('react-native');
 const crypto = require('crypto');
+const codec = require('ripple-binary-codec');
 
 ReactNative.NativeModules.CryptoModule = {
     randomKeySync: jest.fn((len: number) => crypto.randomBytes(len).toString('hex').toUpperCase()),
@@ -91,6 +92,35 @@ ReactNative.NativeModules.VaultManagerModule = {
     openVault: jest.fn((vaultName: string, key: string) => Promise.resolve('clearText')),
     vaultExist: jest.fn((vaultName: string) => Promise.resolve(true)),
     purgeVault: jest.fn((vaultName: string) => Promise.resolve(true)),
+    getMigrationStatus: jest.fn(() =>
+        Promise.resolve({ pending: 0, total: 0, migrated: 0, failed: 0, running: false, cipher_version: 4 }),
+    ),
+    migrateVaults: jest.fn((keys: { [name: string]: string }) =>
+        Promise.resolve({ migrated_vaults: Object.keys(keys), cipher_version: 4 }),
+    ),
+};
+
+ReactNative.NativeModules.SigningModule = {
+    signTransaction: jest.fn((vaultName: string, key: string, encodedTransaction: string, multiSignAccount: string) =>
+        Promise.resolve({ signature: 'AABBCC', publicKey: vaultName }),
+    ),
+    hashSignedTransaction: jest.fn((signedTransaction: string) =>
+        Promise.resolve(
+            crypto
+                .createHash('sha512')
+                .update(Buffer.from(`54584E00${signedTransaction}`, 'hex'))
+                .digest('hex')
+                .slice(0, 64)
+                .toUpperCase(),
+        ),
+    ),
+};
+
+ReactNative.NativeModules.BinaryCodecModule = {
+    loadDefinitions: jest.fn((definitions: string) => Promise.resolve(true)),
+    encode: jest.fn((json: string) => Promise.resolve(codec.encode(JSON.parse(json)))),
+    encodeForSigning: jest.fn((json: string) => Promise.resolve(codec.encodeForSigning(JSON.parse(json)))),
+    decode: jest.fn((binary: string) => Promise.resolve(JSON.stringify(codec.decode(binary)))),
 };
 
 module.exports = ReactNative;
@@ -0,0 +1,32 @@
+/* eslint-disable spellcheck/spell-checker */
+/* eslint-disable max-len */
+import { NativeModules } from 'react-native';
+
+import BinaryCodec from '../codec';
+
+const { BinaryCodecModule } = NativeModules;
+
+describe('BinaryCodec', () => {
+    const txJson = {
+        TransactionType: 'Payment',
+        Account: 'rHb9CJAWyB4rj91VRWn96DkukG4bwdtyTh',
+        Destination: 'rPT1Sjq2YGrBMTttX4GZHjKu9dyfzbpAYe',
+        Amount: '1000000',
+        Fee: '12',
+        Sequence: 1,
+    };
+
+    it('should load the definitions only once', async () => {
+        await BinaryCodec.encode(txJson);
+        await BinaryCodec.encodeForSigning(txJson);
+
+        expect(BinaryCodecModule.loadDefinitions).toHaveBeenCalledTimes(1);
+    });
+
+    it('should pass json as string and decode the result', async () => {
+        const binary = await BinaryCodec.encode(txJson);
+
+        expect(BinaryCodecModule.encode).toHaveBeenCalledWith(JSON.stringify(txJson));
+        expect(await BinaryCodec.decode(binary)).toMatchObject(txJson);
+    });
+});
@@ -0,0 +1,67 @@
+/* eslint-disable spellcheck/spell-checker */
+/* eslint-disable max-len */
+import { NativeModules } from 'react-native';
+import { decode, encodeForSigning } from 'ripple-binary-codec';
+
+import Signing from '../signing';
+
+const { SigningModule } = NativeModules;
+
+describe('Signing', () => {
+    const signer = {
+        address: 'rHb9CJAWyB4rj91VRWn96DkukG4bwdtyTh',
+        publicKey: '030D58EB48B4420B1F7B9DF55087E0E29FEF0E8468F9A6825B01CA2C361042D435',
+    };
+    const key = 'myPassphrase';
+    const txJson = {
+        TransactionType: 'Payment',
+        Account: signer.address,
+        Destination: 'rPT1Sjq2YGrBMTttX4GZHjKu9dyfzbpAYe',
+        Amount: '1000000',
+        Fee: '12',
+        Sequence: 1,
+    };
+
+    it('should sign the encoded transaction without signing prefix', async () => {
+        const signedObject = await Signing.signTransaction(signer.publicKey, key, txJson, signer);
+
+        expect(SigningModule.signTransaction).toHaveBeenCalledWith(
+            signer.publicKey,
+            key,
+            encodeForSigning({ ...txJson, SigningPubKey: signer.publicKey }).slice(8),
+            null,
+        );
+        expect(signedObject.type).toEqual('SignedTx');
+        expect(signedObject.signerPubKey).toEqual(signer.publicKey);
+        expect(signedObject.id).toHaveLength(64);
+        expect(decode(signedObject.signedTransaction)).toMatchObject({
+            ...txJson,
+            SigningPubKey: signer.publicKey,
+            TxnSignature: 'AABBCC',
+        });
+    });
+
+    it('should sign as signer account for multi signing', async () => {
+        const signedObject = await Signing.signTransaction(signer.publicKey, key, txJson, signer, true);
+
+        expect(SigningModule.signTransaction).toHaveBeenLastCalledWith(
+            signer.publicKey,
+            key,
+            encodeForSigning({ ...txJson, SigningPubKey: '' }).slice(8),
+            signer.address,
+        );
+        expect(signedObject.type).toEqual('MultiSignedTx');
+        expect(signedObject.signers).toEqual([signer.address]);
+        expect(decode(signedObject.signedTransaction)).toMatchObject({
+            Signers: [{ Signer: { Account: signer.address, SigningPubKey: signer.publicKey, TxnSignature: 'AABBCC' } }],
+        });
+    });
+
+    it('should resolve undefined if the vault cannot be opened', async () => {
+        SigningModule.signTransaction.mockImplementationOnce(() => Promise.reject(new Error('Invalid key')));
+
+        const signedObject = await Signing.signTransaction(signer.publicKey, 'wrongKey', txJson, signer);
+
+        expect(signedObject).toBeUndefined();
+    });
+});
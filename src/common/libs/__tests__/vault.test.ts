@@ -27,6 +27,24 @@ describe('Vault', () => {
         });
     });
 
+    describe('Migration Status', () => {
+        it('should call getMigrationStatus method on VaultModule', async () => {
+            await Vault.getMigrationStatus().then((status) => {
+                expect(VaultManagerModule.getMigrationStatus).toHaveBeenCalled();
+                expect(status.pending).toEqual(0);
+            });
+        });
+    });
+
+    describe('Migrate', () => {
+        it('should call migrateVaults method on VaultModule', async () => {
+            await Vault.migrate({ [name]: key }).then((migrated) => {
+                expect(VaultManagerModule.migrateVaults).toHaveBeenCalledWith({ [name]: key });
+                expect(migrated).toEqual([name]);
+            });
+        });
+    });
+
     describe('Purge', () => {
         it('should call purgeVault method on VaultModule', async () => {
             await Vault.purge(name).then(() => {
@@ -0,0 +1,58 @@
+/**
+ * Binary Codec
+ *
+ * Encode/Decode ledger binary format natively
+ * NOTE: only available on android, the native codec uses the same definitions as the JS codec
+ *
+ */
+
+import { NativeModules } from 'react-native';
+import definitions from 'ripple-binary-codec/dist/enums/definitions.json';
+
+/* Module ==================================================================== */
+const { BinaryCodecModule } = NativeModules;
+
+/* Lib ==================================================================== */
+let definitionsLoaded: Promise<boolean>;
+
+const BinaryCodec = {
+    /**
+     * Pass the definitions of the JS codec to the native codec, only once
+     */
+    loadDefinitions: (): Promise<boolean> => {
+        if (!definitionsLoaded) {
+            definitionsLoaded = BinaryCodecModule.loadDefinitions(JSON.stringify(definitions)).catch((error: any) => {
+                // try again on next call
+                definitionsLoaded = undefined;
+                throw error;
+            });
+        }
+        return definitionsLoaded;
+    },
+
+    /**
+     * Encode the transaction json to hex
+     */
+    encode: async (json: object): Promise<string> => {
+        await BinaryCodec.loadDefinitions();
+        return BinaryCodecModule.encode(JSON.stringify(json));
+    },
+
+    /**
+     * Encode the transaction json for single signing, signing prefix and signing fields in hex
+     */
+    encodeForSigning: async (json: object): Promise<string> => {
+        await BinaryCodec.loadDefinitions();
+        return BinaryCodecModule.encodeForSigning(JSON.stringify(json));
+    },
+
+    /**
+     * Decode the hex binary to json
+     */
+    decode: async (binary: string): Promise<any> => {
+        await BinaryCodec.loadDefinitions();
+        return JSON.parse(await BinaryCodecModule.decode(binary));
+    },
+};
+
+export default BinaryCodec;
@@ -0,0 +1,91 @@
+/**
+ * Signing
+ *
+ * Sign transactions natively with the private key stored in the vault
+ * NOTE: the private key never crosses into JS, transactions are encoded with the native codec, only available on android
+ *
+ */
+
+import { NativeModules } from 'react-native';
+
+import LoggerService from '@services/LoggerService';
+
+import BinaryCodec from '@common/libs/codec';
+import { SignedObjectType } from '@common/libs/ledger/types';
+
+/* Module ==================================================================== */
+const { SigningModule } = NativeModules;
+
+/* Logger ==================================================================== */
+const logger = LoggerService.createLogger('Signing');
+
+/* Const ==================================================================== */
+// the native module adds the signing prefix itself (STX\0, 4 bytes in hex)
+const SIGNING_PREFIX_LENGTH = 8;
+
+/* Types ==================================================================== */
+type Signer = {
+    address: string;
+    publicKey: string;
+};
+
+/* Lib ==================================================================== */
+const Signing = {
+    /**
+     * Sign the transaction with the private key of the vault
+     * NOTE: resolves undefined if the vault cannot be opened with the provided key
+     */
+    signTransaction: async (
+        vaultName: string,
+        key: string,
+        txJson: any,
+        signer: Signer,
+        multiSign?: boolean,
+    ): Promise<SignedObjectType> => {
+        // multi signed transactions should not have a signing pub key, the signer carries its own
+        const txForSigning = { ...txJson, SigningPubKey: multiSign ? '' : signer.publicKey };
+        const encodedTransaction = (await BinaryCodec.encodeForSigning(txForSigning)).slice(SIGNING_PREFIX_LENGTH);
+
+        let signResult: { signature: string; publicKey: string };
+
+        try {
+            signResult = await SigningModule.signTransaction(
+                vaultName,
+                key,
+                encodedTransaction,
+                multiSign ? signer.address : null,
+            );
+        } catch (error: any) {
+            logger.error('Signing signTransaction error', error);
+            return undefined;
+        }
+
+        const { signature, publicKey } = signResult;
+
+        // this should never happen
+        if (publicKey.toUpperCase() !== signer.publicKey.toUpperCase()) {
+            throw new Error('Signed with unexpected public key!');
+        }
+
+        const signedTxJson = multiSign
+            ? {
+                  ...txForSigning,
+                  Signers: [{ Signer: { Account: signer.address, SigningPubKey: publicKey, TxnSignature: signature } }],
+              }
+            : { ...txForSigning, TxnSignature: signature };
+
+        const signedTransaction = await BinaryCodec.encode(signedTxJson);
+        const id = await SigningModule.hashSignedTransaction(signedTransaction);
+
+        return {
+            type: multiSign ? 'MultiSignedTx' : 'SignedTx',
+            id,
+            signedTransaction,
+            txJson: signedTxJson,
+            signers: multiSign ? [signer.address] : [],
+            signerPubKey: publicKey,
+        };
+    },
+};
+
+export default Signing;
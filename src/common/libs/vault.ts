@@ -92,6 +92,27 @@ const Vault = {
         });
     },
 
+    /**
+     *  switch the native keychain to the log file store, takes effect on next app start
+     *  NOTE: resolves with the store which is used in the current app session
+     */
+    enableFileKeychainStore: (): Promise<boolean> => {
+        return new Promise((resolve, reject) => {
+            // log file store is not available on every platform
+            if (typeof VaultManagerModule.enableFileKeychainStore !== 'function') {
+                resolve(false);
+                return;
+            }
+
+            VaultManagerModule.enableFileKeychainStore()
+                .then(resolve)
+                .catch((error: any) => {
+                    logger.error('Vault enableFileKeychainStore error', error);
+                    reject(error);
+                });
+        });
+    },
+
     /**
      *  get storage encryption key from vault
      *  NOTE: this method will generate/store new encryption key if not exist
@@ -137,6 +158,49 @@ const Vault = {
         });
     },
 
+    /**
+     *  get the number of vaults with an older cipher and the status of the last migration
+     */
+    getMigrationStatus: async (): Promise<{ pending: number; running: boolean }> => {
+        return new Promise((resolve, reject) => {
+            // background migration is not available on every platform
+            if (typeof VaultManagerModule.getMigrationStatus !== 'function') {
+                resolve({ pending: 0, running: false });
+                return;
+            }
+
+            VaultManagerModule.getMigrationStatus()
+                .then(resolve)
+                .catch((error: any) => {
+                    logger.error('Vault getMigrationStatus error', error);
+                    reject(error);
+                });
+        });
+    },
+
+    /**
+     *  migrate vaults with an older cipher to the latest cipher in background
+     *  NOTE: keys contains the key of every vault to migrate, resolves with the name of the migrated vaults
+     */
+    migrate: async (keys: { [name: string]: string }): Promise<string[]> => {
+        return new Promise((resolve, reject) => {
+            // background migration is not available on every platform
+            if (typeof VaultManagerModule.migrateVaults !== 'function') {
+                resolve([]);
+                return;
+            }
+
+            VaultManagerModule.migrateVaults(keys)
+                .then((result: any) => {
+                    resolve(result.migrated_vaults);
+                })
+                .catch((error: any) => {
+                    logger.error('Vault migrate error', error);
+                    reject(error);
+                });
+        });
+    },
+
     /**
      *  reKey the vault content
      */
@@ -4,7 +4,7 @@
  */
 
 import React, { Component } from 'react';
-import { Alert, Linking, BackHandler, InteractionManager, NativeEventSubscription } from 'react-native';
+import { Alert, Linking, BackHandler, InteractionManager, NativeEventSubscription, Platform } from 'react-native';
 
 import * as AccountLib from 'xrpl-accountlib';
 import RNTangemSdk from 'tangem-sdk-react-native';
@@ -21,6 +21,7 @@ import Flag from '@common/libs/ledger/parser/common/flag';
 import { SignedObjectType } from '@common/libs/ledger/types';
 
 import Vault from '@common/libs/vault';
+import Signing from '@common/libs/signing';
 
 import { GetSignOptions, GetWalletDerivedPublicKey } from '@common/utils/tangem';
 
@@ -230,6 +231,33 @@ class VaultModal extends Component<Props, State> {
                 throw new Error('No encryption key provided!');
             }
 
+            // on android ledger transactions are signed natively, the private key never crosses into JS
+            // NOTE: pseudo transactions (like payment channel claims) use other signing data and are signed in JS
+            if (Platform.OS === 'android' && transaction instanceof BaseTransaction) {
+                // populate transaction LastLedgerSequence before signing
+                // INGORE if multi signing
+                if (!multiSign) {
+                    transaction.populateLastLedgerSequence();
+                }
+
+                const signedObject = await Signing.signTransaction(
+                    signer.publicKey,
+                    encryptionKey,
+                    transaction.Json,
+                    signer,
+                    multiSign,
+                );
+
+                // unable to open the vault with the provided encryption key
+                if (!signedObject) {
+                    this.onInvalidAuth(method);
+                    return;
+                }
+
+                this.onSign({ ...signedObject, signMethod: method });
+                return;
+            }
+
             // fetch private key from vault
             const privateKey = await Vault.open(signer.publicKey, encryptionKey);
 
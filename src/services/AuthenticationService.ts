@@ -11,8 +11,9 @@ import { Biometric, BiometricErrors } from '@common/libs/biometric';
 import Vault from '@common/libs/vault';
 
 import DataStorage from '@store/storage';
-import { BiometryType } from '@store/types';
+import { BiometryType, EncryptionLevels } from '@store/types';
 import CoreRepository from '@store/repositories/core';
+import AccountRepository from '@store/repositories/account';
 
 import AppService, { AppStateStatus } from '@services/AppService';
 import NavigationService, { RootType } from '@services/NavigationService';
@@ -33,6 +34,7 @@ export enum LockStatus {
 class AuthenticationService {
     private lockStatus: LockStatus;
     private postSuccess: Array<() => void>;
+    private vaultMigrationChecked: boolean;
     private logger: any;
 
     constructor() {
@@ -41,6 +43,9 @@ class AuthenticationService {
         // track the status of app is locked
         this.lockStatus = LockStatus.UNLOCKED;
 
+        // vault migration is only checked once per app start
+        this.vaultMigrationChecked = false;
+
         // list of methods that needs to run after success auth
         this.postSuccess = [
             AppService.checkShowChangeLog,
@@ -265,6 +270,55 @@ class AuthenticationService {
 
         return 0;
     };
+
+    /**
+     * Migrate passcode protected vaults which are encrypted with an older cipher in background
+     * NOTE: passphrase protected vaults need their own key and are migrated in the cipher migration screen
+     * @param  {string} passcode hashed passcode
+     */
+    migrateVaults = async (passcode: string) => {
+        // nothing to do if there is no vault with an older cipher
+        try {
+            const { pending, running } = await Vault.getMigrationStatus();
+
+            if (!pending || running) {
+                return;
+            }
+        } catch {
+            return;
+        }
+
+        const latestCipherVersion = Vault.getLatestCipherVersion();
+
+        const keys = {} as { [vaultName: string]: string };
+        const addresses = {} as { [vaultName: string]: string };
+
+        AccountRepository.getAccounts({ encryptionLevel: EncryptionLevels.Passcode }).forEach((account) => {
+            if (account.encryptionVersion < latestCipherVersion) {
+                keys[account.publicKey] = passcode;
+                addresses[account.publicKey] = account.address;
+            }
+        });
+
+        if (Object.keys(keys).length === 0) {
+            return;
+        }
+
+        Vault.migrate(keys)
+            .then((migratedVaults: string[]) => {
+                // keep the encryption version of the accounts in sync with the vaults
+                migratedVaults.forEach((vaultName) => {
+                    AccountRepository.update({
+                        address: addresses[vaultName],
+                        encryptionVersion: latestCipherVersion,
+                    });
+                });
+            })
+            .catch((error: any) => {
+                this.logger.error('Unable to migrate vaults', error);
+            });
+    };
+
     /**
      * Authenticate with passcode
      * @param  {string} passcode clear passcode
@@ -290,6 +344,11 @@ class AuthenticationService {
 
             // check if entered passcode is correct
             if (hashedPasscode === coreSettings.passcode) {
+                // migrate passcode protected vaults with an older cipher once, after the unlock is done
+                if (!this.vaultMigrationChecked) {
+                    this.vaultMigrationChecked = true;
+                    this.postSuccess.push(() => this.migrateVaults(hashedPasscode));
+                }
                 // reset block timers and set status to unlocked
                 await this.onSuccessAuthentication(realTime);
                 // resolve
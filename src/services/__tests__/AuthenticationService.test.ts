@@ -1,3 +1,5 @@
+import Vault from '@common/libs/vault';
+
 import AppService, { AppStateStatus } from '../AppService';
 import BackendService from '../BackendService';
 import LinkingService from '../LinkingService';
@@ -44,6 +46,19 @@ describe('AuthenticationService', () => {
         spy2.mockRestore();
     });
 
+    it('should not migrate vaults when there is no pending vault', async () => {
+        const spy1 = jest.spyOn(Vault, 'getMigrationStatus').mockResolvedValueOnce({ pending: 0, running: false });
+        const spy2 = jest.spyOn(Vault, 'migrate');
+
+        await authenticationService.migrateVaults('hashedPasscode');
+
+        expect(spy1).toBeCalledTimes(1);
+        expect(spy2).not.toBeCalled();
+
+        spy1.mockRestore();
+        spy2.mockRestore();
+    });
+
     it('should run the required functions after success auth', async () => {
         jest.useFakeTimers();
 